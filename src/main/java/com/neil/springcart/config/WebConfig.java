@@ -2,6 +2,7 @@ package com.neil.springcart.config;
 
 import com.neil.springcart.util.converter.StringToProductCategoryConverter;
 import com.neil.springcart.util.converter.StringToProductGenderConverter;
+import com.neil.springcart.util.converter.StringToProductSortConverter;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.format.FormatterRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -12,5 +13,6 @@ public class WebConfig implements WebMvcConfigurer {
     public void addFormatters(FormatterRegistry registry) {
         registry.addConverter(new StringToProductGenderConverter());
         registry.addConverter(new StringToProductCategoryConverter());
+        registry.addConverter(new StringToProductSortConverter());
     }
 }
@@ -35,8 +35,9 @@ public class CartController {
     }
 
     /**
-     * Adds a product to a customer's cart.
-     * @param request A request containing the customer ID and product ID.
+     * Adds a quantity of a product size to a customer's cart.
+     * @param request A request containing the customer ID, product ID, size
+     *                and quantity.
      */
     @Operation(summary = "Adds a product to a customer's cart")
     @PostMapping("/add")
@@ -47,8 +48,9 @@ public class CartController {
     }
 
     /**
-     * Removes a product from a customer's cart.
-     * @param request A request containing the customer ID and product ID.
+     * Removes a product size from a customer's cart.
+     * @param request A request containing the customer ID, product ID and
+     *                size.
      */
     @Operation(summary = "Removes a product from a customer's cart")
     @PostMapping("/remove")
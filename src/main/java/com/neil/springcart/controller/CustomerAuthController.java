@@ -4,19 +4,24 @@ import com.neil.springcart.dto.CustomerResponse;
 import com.neil.springcart.dto.LoginRequest;
 import com.neil.springcart.dto.RegisterRequest;
 import com.neil.springcart.model.Customer;
+import com.neil.springcart.security.TokenDenylist;
 import com.neil.springcart.service.CustomerAuthService;
 import com.neil.springcart.util.HttpUtil;
 import com.neil.springcart.util.JwtUtil;
 import com.neil.springcart.util.mapper.CustomerMapper;
+import io.jsonwebtoken.Claims;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -31,6 +36,7 @@ public class CustomerAuthController {
     private final CustomerAuthService customerAuthService;
     private final JwtUtil jwtUtil;
     private final CustomerMapper customerMapper;
+    private final TokenDenylist tokenDenylist;
 
     /**
      * Handles incoming requests for the /register endpoint which registers a
@@ -78,4 +84,23 @@ public class CustomerAuthController {
                 .headers(HttpUtil.generateAuthorizationHeader(token))
                 .body(response);
     }
+
+    /**
+     * Handles incoming requests for the /logout endpoint which revokes the JWT
+     * token used to make the request until it expires.
+     * @param authHeader The Authorization header of the request.
+     * @throws com.neil.springcart.exception.ServiceUnavailableException If
+     * the token can't be revoked because the denylist is full.
+     */
+    @Operation(summary = "Revokes the JWT token used to make the request")
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void handleLogoutRequest(
+            @RequestHeader(HttpHeaders.AUTHORIZATION) String authHeader) {
+        log.info("POST {}", HttpUtil.getCurrentRequestPath());
+
+        Claims claims = jwtUtil.validateToken(authHeader.substring(7));
+        tokenDenylist.revoke(claims.getId(), claims.getExpiration());
+        log.info("Token revoked (ID: {})", claims.getId());
+    }
 }
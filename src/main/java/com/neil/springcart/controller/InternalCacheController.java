@@ -0,0 +1,40 @@
+package com.neil.springcart.controller;
+
+import com.neil.springcart.annotations.IsAdmin;
+import com.neil.springcart.util.HttpUtil;
+import com.neil.springcart.util.cache.CacheRegistry;
+import com.neil.springcart.util.cache.CacheStats;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * A controller to handle incoming requests for internal cache monitoring.
+ */
+@RestController
+@IsAdmin
+@RequestMapping("/internal/caches")
+@AllArgsConstructor
+@Slf4j
+public class InternalCacheController {
+    private final CacheRegistry cacheRegistry;
+
+    /**
+     * Handles incoming requests to get the stats of the in-memory caches.
+     * @return The size and hit/miss/eviction counts of each cache.
+     */
+    @Operation(summary = "Gets the stats of the in-memory caches")
+    @GetMapping
+    @ResponseStatus(HttpStatus.OK)
+    public Map<String, CacheStats> getCacheStats() {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        return cacheRegistry.getStats();
+    }
+}
@@ -3,17 +3,29 @@ package com.neil.springcart.controller;
 import com.neil.springcart.annotations.IsAdmin;
 import com.neil.springcart.dto.AddInventoryRequest;
 import com.neil.springcart.dto.NewProductRequest;
+import com.neil.springcart.dto.ProductExportFormat;
+import com.neil.springcart.dto.ProductImportProgress;
+import com.neil.springcart.dto.ProductImportReport;
 import com.neil.springcart.dto.UpdateProductRequest;
 import com.neil.springcart.model.Product;
 import com.neil.springcart.service.InternalProductService;
+import com.neil.springcart.service.ProductExportService;
+import com.neil.springcart.service.ProductImportService;
 import com.neil.springcart.util.HttpUtil;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * A controller to handle incoming requests for internal product requests (i.e.
  * product and inventory management).
@@ -25,6 +37,8 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class InternalProductController {
     private final InternalProductService internalProductService;
+    private final ProductImportService productImportService;
+    private final ProductExportService productExportService;
 
     /**
      * Handles incoming requests to create a product in the database.
@@ -40,6 +54,84 @@ public class InternalProductController {
         log.info("Product created (ID: {})", product.getId());
     }
 
+    /**
+     * Handles incoming requests to import products from a CSV upload. The
+     * upload is streamed rather than read into memory.
+     * @param request The incoming request with the CSV file as its body.
+     * @return A report of the rows imported and the rows that failed.
+     */
+    @Operation(summary = "Imports products from a CSV file")
+    @PostMapping(value = "/import", consumes = "text/csv")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductImportReport handleCsvImport(HttpServletRequest request)
+            throws IOException {
+        log.info("POST {}", HttpUtil.getCurrentRequestPath());
+        ProductImportReport report = productImportService.importCsv(
+                request.getInputStream());
+        log.info("Products imported from CSV ({} created, {} failed)",
+                report.productsCreated(), report.rowsFailed());
+        return report;
+    }
+
+    /**
+     * Handles incoming requests to import products from an NDJSON upload, with
+     * one new product request per line. The upload is streamed rather than
+     * read into memory.
+     * @param request The incoming request with the NDJSON file as its body.
+     * @return A report of the rows imported and the rows that failed.
+     */
+    @Operation(summary = "Imports products from an NDJSON file")
+    @PostMapping(value = "/import",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public ProductImportReport handleNdjsonImport(HttpServletRequest request)
+            throws IOException {
+        log.info("POST {}", HttpUtil.getCurrentRequestPath());
+        ProductImportReport report = productImportService.importNdjson(
+                request.getInputStream());
+        log.info("Products imported from NDJSON ({} created, {} failed)",
+                report.productsCreated(), report.rowsFailed());
+        return report;
+    }
+
+    /**
+     * Handles incoming requests for the progress of the running imports, so an
+     * import can be followed while its upload is still being processed.
+     * @return How far each running import has got, oldest first.
+     */
+    @Operation(summary = "Gets the progress of the running product imports")
+    @GetMapping("/import")
+    public List<ProductImportProgress> handleGetRunningImports() {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        return productImportService.getRunningImports();
+    }
+
+    /**
+     * Handles incoming requests to export the catalogue with the available
+     * stock of each product. The export is written to the response as it is
+     * read rather than built up in memory.
+     * @param format The format of the export, NDJSON by default.
+     * @param response The response to write the export to.
+     */
+    @Operation(summary = "Exports all products as NDJSON or CSV")
+    @GetMapping("/export")
+    public void handleExport(
+            @RequestParam(defaultValue = "NDJSON") ProductExportFormat format,
+            HttpServletResponse response) throws IOException {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        boolean csv = format == ProductExportFormat.CSV;
+        response.setStatus(HttpStatus.OK.value());
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType(csv ? "text/csv"
+                : MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"products." + (csv ? "csv" : "ndjson")
+                        + "\"");
+        long exported = productExportService.exportProducts(format,
+                response.getOutputStream());
+        log.info("Products exported as {} ({} products)", format, exported);
+    }
+
     /**
      * Handles incoming requests to update product details.
      * @param id The ID of the product.
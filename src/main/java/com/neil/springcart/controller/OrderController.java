@@ -1,5 +1,6 @@
 package com.neil.springcart.controller;
 
+import com.neil.springcart.dto.CheckoutRequest;
 import com.neil.springcart.dto.CreateOrderRequest;
 import com.neil.springcart.dto.OrderResponse;
 import com.neil.springcart.dto.OrderSummary;
@@ -39,6 +40,22 @@ public class OrderController {
         return orderService.createOrder(request);
     }
 
+    /**
+     * Creates an order from everything in the customer's cart and empties the
+     * cart.
+     * @param request An object containing the customer ID and the shipping
+     *                address.
+     * @return An order summary.
+     */
+    @Operation(summary = "Creates an order from a customer's cart")
+    @PostMapping("/from-cart")
+    @ResponseStatus(HttpStatus.CREATED)
+    public OrderSummary createOrderFromCart(
+            @RequestBody @Valid CheckoutRequest request) {
+        log.info("POST {}", HttpUtil.getCurrentRequestPath());
+        return orderService.createOrderFromCart(request);
+    }
+
     /**
      * Gets data on all of a customer's orders.
      * @param customerId The ID of a customer.
@@ -1,18 +1,32 @@
 package com.neil.springcart.controller;
 
 import com.neil.springcart.dto.DetailedProductResponse;
+import com.neil.springcart.dto.FacetedProductPage;
+import com.neil.springcart.dto.ProductFilter;
+import com.neil.springcart.dto.ProductPage;
 import com.neil.springcart.dto.ProductResponse;
+import com.neil.springcart.dto.ProductSort;
+import com.neil.springcart.dto.SerializedListing;
+import com.neil.springcart.model.PriceBand;
 import com.neil.springcart.model.ProductCategory;
 import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.model.ProductSize;
 import com.neil.springcart.service.ProductService;
 import com.neil.springcart.util.HttpUtil;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * A controller to handle incoming requests for product requests.
@@ -25,15 +39,22 @@ public class ProductController {
     private final ProductService productService;
 
     /**
-     * Handles incoming requests to get all active products.
+     * Handles incoming requests to get all active products. The response has
+     * an ETag, so a request with a matching If-None-Match header gets a 304.
      * @return A list of all the active products.
      */
     @Operation(summary = "Gets all the active products")
+    @ApiResponse(responseCode = "200", content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+                    schema = @Schema(implementation = ProductResponse.class)
+            )
+    ))
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public List<ProductResponse> getAllProducts() {
+    public ResponseEntity<byte[]> getAllProducts() {
         log.info("GET {}", HttpUtil.getCurrentRequestPath());
-        return productService.getAllProducts();
+        return buildListingResponse(productService.getSerializedProducts(null,
+                null));
     }
 
     /**
@@ -41,12 +62,18 @@ public class ProductController {
      * @return A list of all the active products for a gender.
      */
     @Operation(summary = "Gets all the active products for a gender")
+    @ApiResponse(responseCode = "200", content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+                    schema = @Schema(implementation = ProductResponse.class)
+            )
+    ))
     @GetMapping(params = "gender")
-    @ResponseStatus(HttpStatus.OK)
-    public List<ProductResponse> getAllProductsByGender(
+    public ResponseEntity<byte[]> getAllProductsByGender(
             @RequestParam ProductGender gender) {
         log.info("GET {}", HttpUtil.getCurrentRequestPath());
-        return productService.getProductsByGender(gender);
+        return buildListingResponse(productService.getSerializedProducts(
+                gender, null));
     }
 
     /**
@@ -57,13 +84,165 @@ public class ProductController {
     @Operation(
             summary = "Gets all the active products for a gender and category"
     )
+    @ApiResponse(responseCode = "200", content = @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+                    schema = @Schema(implementation = ProductResponse.class)
+            )
+    ))
     @GetMapping(params = { "gender", "category" })
-    @ResponseStatus(HttpStatus.OK)
-    public List<ProductResponse> getProductsByGenderAndCategory(
+    public ResponseEntity<byte[]> getProductsByGenderAndCategory(
             @RequestParam ProductGender gender,
             @RequestParam ProductCategory category) {
         log.info("GET {}", HttpUtil.getCurrentRequestPath());
-        return productService.getProductsByGenderAndCategory(gender, category);
+        return buildListingResponse(productService.getSerializedProducts(
+                gender, category));
+    }
+
+    /**
+     * Writes a serialized listing straight to the response. Spring compares
+     * the ETag with the request's If-None-Match header and responds with a
+     * 304 and no body if they match.
+     * @param listing The serialized listing.
+     * @return The response.
+     */
+    private ResponseEntity<byte[]> buildListingResponse(
+            SerializedListing listing) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(listing.etag())
+                .body(listing.body());
+    }
+
+    /**
+     * Handles incoming requests to get a page of active products. Only used
+     * when a limit is given, otherwise every product is returned as a list.
+     * @param limit The maximum number of products on the page.
+     * @param after The cursor from the previous page.
+     * @return A page of active products.
+     */
+    @Operation(summary = "Gets a page of the active products")
+    @GetMapping(params = "limit")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductPage getProductPage(@RequestParam int limit,
+            @RequestParam(required = false) Long after) {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        return productService.getProductPage(null, null, after, limit);
+    }
+
+    /**
+     * Handles incoming requests to get a page of active products for a gender.
+     * @param gender The gender of the products.
+     * @param limit The maximum number of products on the page.
+     * @param after The cursor from the previous page.
+     * @return A page of active products for a gender.
+     */
+    @Operation(summary = "Gets a page of the active products for a gender")
+    @GetMapping(params = { "gender", "limit" })
+    @ResponseStatus(HttpStatus.OK)
+    public ProductPage getProductPageByGender(
+            @RequestParam ProductGender gender, @RequestParam int limit,
+            @RequestParam(required = false) Long after) {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        return productService.getProductPage(gender, null, after, limit);
+    }
+
+    /**
+     * Handles incoming requests to get a page of active products for a gender
+     * and category.
+     * @param gender The gender of the products.
+     * @param category The category of the products.
+     * @param limit The maximum number of products on the page.
+     * @param after The cursor from the previous page.
+     * @return A page of active products for a gender and category.
+     */
+    @Operation(
+            summary = "Gets a page of the active products for a gender and "
+                    + "category"
+    )
+    @GetMapping(params = { "gender", "category", "limit" })
+    @ResponseStatus(HttpStatus.OK)
+    public ProductPage getProductPageByGenderAndCategory(
+            @RequestParam ProductGender gender,
+            @RequestParam ProductCategory category, @RequestParam int limit,
+            @RequestParam(required = false) Long after) {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        return productService.getProductPage(gender, category, after, limit);
+    }
+
+    /**
+     * Handles incoming requests to get a page of active products sorted by
+     * price, optionally within a price range.
+     * @param sort The order of the products, price_asc or price_desc.
+     * @param minPrice The minimum price, inclusive.
+     * @param maxPrice The maximum price, inclusive.
+     * @param limit The maximum number of products on the page.
+     * @param after The cursor from the previous page.
+     * @return A page of active products sorted by price.
+     */
+    @Operation(summary = "Gets a page of the active products sorted by price")
+    @GetMapping("/by-price")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductPage getProductPageByPrice(
+            @RequestParam(defaultValue = "PRICE_ASC") ProductSort sort,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Long after) {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        return productService.getProductPageByPrice(sort, minPrice, maxPrice,
+                after, limit);
+    }
+
+    /**
+     * Handles incoming requests to filter the active products by any number
+     * of values for each facet. Each facet parameter can be repeated to match
+     * any of the given values.
+     * @param gender The genders to match. Unisex products match any gender.
+     * @param category The categories to match.
+     * @param brand The brands to match.
+     * @param priceBand The price bands to match.
+     * @param size The sizes that have to be in stock.
+     * @param limit The maximum number of products on the page.
+     * @param after The cursor from the previous page.
+     * @return A page of matching products and the facet counts.
+     */
+    @Operation(summary = "Filters the active products by facet")
+    @GetMapping("/browse")
+    @ResponseStatus(HttpStatus.OK)
+    public FacetedProductPage browseProducts(
+            @RequestParam(required = false) Set<ProductGender> gender,
+            @RequestParam(required = false) Set<ProductCategory> category,
+            @RequestParam(required = false) Set<String> brand,
+            @RequestParam(required = false) Set<PriceBand> priceBand,
+            @RequestParam(required = false) Set<ProductSize> size,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Long after) {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        ProductFilter filter = ProductFilter.builder()
+                .genders(gender)
+                .categories(category)
+                .brands(brand)
+                .priceBands(priceBand)
+                .sizes(size)
+                .build();
+        return productService.getFacetedProductPage(filter, after, limit);
+    }
+
+    /**
+     * Handles incoming requests to search the active products by brand, name
+     * and description.
+     * @param q The search query.
+     * @param limit The maximum number of products to return.
+     * @return The matching products, best match first.
+     */
+    @Operation(summary = "Searches the active products")
+    @GetMapping("/search")
+    @ResponseStatus(HttpStatus.OK)
+    public List<ProductResponse> searchProducts(@RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        log.info("GET {}", HttpUtil.getCurrentRequestPath());
+        return productService.searchProducts(q, limit);
     }
 
     /**
@@ -0,0 +1,8 @@
+package com.neil.springcart.dto;
+
+import com.neil.springcart.model.ProductSize;
+import lombok.Builder;
+
+@Builder
+public record CartItemResponse(ProductResponse product, ProductSize size,
+                               int quantity) {}
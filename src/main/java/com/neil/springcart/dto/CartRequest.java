@@ -1,10 +1,23 @@
 package com.neil.springcart.dto;
 
+import com.neil.springcart.model.ProductSize;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 
 public record CartRequest(
    @NotNull(message = "Missing customer ID")
    Long customerId,
    @NotNull(message = "Missing product ID")
-   Long productId
-) {}
+   Long productId,
+   @NotNull(message = "Missing product size")
+   ProductSize size,
+   @Positive(message = "Invalid quantity")
+   Integer quantity
+) {
+    public CartRequest {
+        // Add one unit unless a quantity is given
+        if (quantity == null) {
+            quantity = 1;
+        }
+    }
+}
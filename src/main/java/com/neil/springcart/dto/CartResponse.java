@@ -5,4 +5,4 @@ import lombok.Builder;
 import java.util.List;
 
 @Builder
-public record CartResponse(Long cartId, List<ProductResponse> items) {}
+public record CartResponse(Long cartId, List<CartItemResponse> items) {}
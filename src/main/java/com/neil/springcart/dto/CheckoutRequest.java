@@ -0,0 +1,11 @@
+package com.neil.springcart.dto;
+
+import com.neil.springcart.model.Address;
+import jakarta.validation.constraints.NotNull;
+
+public record CheckoutRequest(
+        @NotNull(message = "Missing customer ID")
+        Long customerId,
+        @NotNull(message = "Missing shipping address")
+        Address shippingAddress
+) {}
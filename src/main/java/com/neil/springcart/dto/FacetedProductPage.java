@@ -0,0 +1,14 @@
+package com.neil.springcart.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * A page of filtered products with the facet counts for the filter.
+ * {@code nextCursor} is the value to pass as {@code after} to get the next
+ * page, or {@code null} if this is the last page.
+ */
+@Builder
+public record FacetedProductPage(List<ProductResponse> items, Long nextCursor,
+                                 int total, ProductFacets facets) {}
@@ -2,6 +2,7 @@ package com.neil.springcart.dto;
 
 import com.neil.springcart.model.ProductSize;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 
 public record OrderLineItemDto(
         @NotNull(message = "Missing product ID")
@@ -9,5 +10,6 @@ public record OrderLineItemDto(
         @NotNull(message = "Missing product size")
         ProductSize size,
         @NotNull(message = "Missing quantity")
+        @Positive(message = "Invalid quantity")
         int quantity
 ) {}
@@ -3,7 +3,6 @@ package com.neil.springcart.dto;
 import com.neil.springcart.model.ProductSize;
 import lombok.Builder;
 import lombok.Getter;
-import lombok.Setter;
 
 @Builder
 @Getter
@@ -14,6 +13,5 @@ public class OrderLineItemResponse {
     private String name;
     private ProductSize size;
     private double price;
-    @Setter
     private int quantity;
 }
@@ -0,0 +1,6 @@
+package com.neil.springcart.dto;
+
+public enum ProductExportFormat {
+    NDJSON,
+    CSV,
+}
@@ -0,0 +1,21 @@
+package com.neil.springcart.dto;
+
+import com.neil.springcart.model.PriceBand;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.model.ProductSize;
+import lombok.Builder;
+
+import java.util.Map;
+
+/**
+ * The number of products for each facet value. The counts for a facet take
+ * the filters on every other facet into account but not its own, so they show
+ * how many products selecting that value as well would add.
+ */
+@Builder
+public record ProductFacets(Map<ProductGender, Integer> gender,
+                            Map<ProductCategory, Integer> category,
+                            Map<String, Integer> brand,
+                            Map<PriceBand, Integer> priceBand,
+                            Map<ProductSize, Integer> size) {}
@@ -0,0 +1,29 @@
+package com.neil.springcart.dto;
+
+import com.neil.springcart.model.PriceBand;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.model.ProductSize;
+import lombok.Builder;
+
+import java.util.Set;
+
+/**
+ * The facet values to filter products by. A product has to match at least one
+ * of the values given for each facet, and an empty set doesn't filter on that
+ * facet at all. Unisex products match any gender.
+ */
+@Builder
+public record ProductFilter(Set<ProductGender> genders,
+                            Set<ProductCategory> categories,
+                            Set<String> brands,
+                            Set<PriceBand> priceBands,
+                            Set<ProductSize> sizes) {
+    public ProductFilter {
+        genders = genders == null ? Set.of() : Set.copyOf(genders);
+        categories = categories == null ? Set.of() : Set.copyOf(categories);
+        brands = brands == null ? Set.of() : Set.copyOf(brands);
+        priceBands = priceBands == null ? Set.of() : Set.copyOf(priceBands);
+        sizes = sizes == null ? Set.of() : Set.copyOf(sizes);
+    }
+}
@@ -0,0 +1,8 @@
+package com.neil.springcart.dto;
+
+/**
+ * A row of a product import that couldn't be imported.
+ * @param row The row number, starting from 1 for the first product.
+ * @param message Why the row couldn't be imported.
+ */
+public record ProductImportError(long row, String message) {}
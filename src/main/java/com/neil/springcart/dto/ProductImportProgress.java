@@ -0,0 +1,25 @@
+package com.neil.springcart.dto;
+
+import lombok.Builder;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * How far a running product import has got.
+ * @param id The ID of the import.
+ * @param startedAt When the import started.
+ * @param rowsRead The number of rows read so far.
+ * @param productsCreated The number of products saved so far.
+ * @param unitsAdded The number of units of stock saved so far.
+ * @param rowsFailed The number of rows that couldn't be imported so far.
+ */
+@Builder
+public record ProductImportProgress(
+        UUID id,
+        Date startedAt,
+        long rowsRead,
+        long productsCreated,
+        long unitsAdded,
+        long rowsFailed
+) {}
@@ -0,0 +1,14 @@
+package com.neil.springcart.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record ProductImportReport(
+        long rowsRead,
+        long productsCreated,
+        long unitsAdded,
+        long rowsFailed,
+        List<ProductImportError> errors
+) {}
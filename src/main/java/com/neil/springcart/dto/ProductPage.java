@@ -0,0 +1,12 @@
+package com.neil.springcart.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * A page of products. {@code nextCursor} is the value to pass as {@code after}
+ * to get the next page, or {@code null} if this is the last page.
+ */
+@Builder
+public record ProductPage(List<ProductResponse> items, Long nextCursor) {}
@@ -0,0 +1,9 @@
+package com.neil.springcart.dto;
+
+/**
+ * The orders a product listing can be sorted in.
+ */
+public enum ProductSort {
+    PRICE_ASC,
+    PRICE_DESC,
+}
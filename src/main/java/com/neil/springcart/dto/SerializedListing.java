@@ -0,0 +1,7 @@
+package com.neil.springcart.dto;
+
+/**
+ * A product listing already serialized to UTF-8 JSON, with a strong ETag
+ * derived from its bytes.
+ */
+public record SerializedListing(byte[] body, String etag) {}
@@ -0,0 +1,7 @@
+package com.neil.springcart.event;
+
+/**
+ * Published when a customer's cart is turned into an order and emptied.
+ * @param customerId The ID of the customer.
+ */
+public record CartCheckedOutEvent(Long customerId) {}
@@ -0,0 +1,8 @@
+package com.neil.springcart.event;
+
+/**
+ * Published once a bulk import has finished saving products, in place of a
+ * {@link ProductChangedEvent} for each product it created.
+ * @param productsCreated The number of products the import created.
+ */
+public record CatalogueImportedEvent(long productsCreated) {}
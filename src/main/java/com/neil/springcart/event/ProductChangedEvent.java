@@ -0,0 +1,8 @@
+package com.neil.springcart.event;
+
+/**
+ * Published when a product is created or its listing details change (including
+ * being archived or unarchived).
+ * @param productId The ID of the product.
+ */
+public record ProductChangedEvent(Long productId) {}
@@ -0,0 +1,8 @@
+package com.neil.springcart.event;
+
+/**
+ * Published when the available stock of a product changes, either from new
+ * inventory being added or from an order taking stock.
+ * @param productId The ID of the product.
+ */
+public record StockChangedEvent(Long productId) {}
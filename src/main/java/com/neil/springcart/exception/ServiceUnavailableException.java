@@ -0,0 +1,7 @@
+package com.neil.springcart.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.neil.springcart.model;
+
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * A user that can sign in to the application. The ID and role are written into
+ * the user's JWT token so requests can be authenticated without loading the
+ * user from the database.
+ */
+public interface AccountUser extends UserDetails {
+    Long getId();
+
+    UserRole getRole();
+}
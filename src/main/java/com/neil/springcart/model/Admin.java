@@ -1,10 +1,12 @@
 package com.neil.springcart.model;
 
+import com.neil.springcart.util.id.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.List;
@@ -16,26 +18,34 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class Admin implements UserDetails {
+public class Admin implements AccountUser {
     @Id
-    @SequenceGenerator(
-            name = "admin_sequence",
-            sequenceName = "admin_sequence",
-            allocationSize = 1
-    )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
             generator = "admin_sequence"
     )
+    @GenericGenerator(
+            name = "admin_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "admin_sequence"
+            )
+    )
     private Long id;
     @Column(nullable = false)
     private String email;
     @Column(nullable = false)
     private String password;
 
+    @Override
+    public UserRole getRole() {
+        return UserRole.ADMIN;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of(new SimpleGrantedAuthority(UserRole.ADMIN.name()));
+        return List.of(new SimpleGrantedAuthority(getRole().name()));
     }
 
     @Override
@@ -0,0 +1,51 @@
+package com.neil.springcart.model;
+
+import com.neil.springcart.util.id.PooledSequenceGenerator;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * A line in a customer's cart: a quantity of one size of a product. A cart has
+ * at most one line for each product size.
+ */
+@Entity(name = "CartItem")
+@Table(
+        name = "cart_item",
+        uniqueConstraints = @UniqueConstraint(
+                columnNames = { "cart_id", "product_id", "size" }
+        )
+)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartItem {
+    @Id
+    @GeneratedValue(
+            strategy = GenerationType.SEQUENCE,
+            generator = "cart_item_sequence"
+    )
+    @GenericGenerator(
+            name = "cart_item_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "cart_item_sequence"
+            )
+    )
+    private Long id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "cart_id", nullable = false)
+    private Cart cart;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    private Product product;
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ProductSize size;
+    @Column(nullable = false)
+    private int quantity;
+}
@@ -1,10 +1,12 @@
 package com.neil.springcart.model;
 
+import com.neil.springcart.util.id.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.List;
@@ -16,17 +18,20 @@ import java.util.List;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class Customer implements UserDetails {
+public class Customer implements AccountUser {
     @Id
-    @SequenceGenerator(
-            name = "customer_sequence",
-            sequenceName = "customer_sequence",
-            allocationSize = 1
-    )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
             generator = "customer_sequence"
     )
+    @GenericGenerator(
+            name = "customer_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "customer_sequence"
+            )
+    )
     private Long id;
     @Column(nullable = false)
     private String name;
@@ -41,9 +46,14 @@ public class Customer implements UserDetails {
     )
     private Cart cart;
 
+    @Override
+    public UserRole getRole() {
+        return UserRole.CUSTOMER;
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of(new SimpleGrantedAuthority(UserRole.CUSTOMER.name()));
+        return List.of(new SimpleGrantedAuthority(getRole().name()));
     }
 
     @Override
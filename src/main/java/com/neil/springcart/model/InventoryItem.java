@@ -1,7 +1,10 @@
 package com.neil.springcart.model;
 
+import com.neil.springcart.util.id.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @Entity(name = "InventoryItem")
 @Table(name = "inventory")
@@ -12,15 +15,18 @@ import lombok.*;
 @AllArgsConstructor
 public class InventoryItem {
     @Id
-    @SequenceGenerator(
-            name = "inventory_sequence",
-            sequenceName = "inventory_sequence",
-            allocationSize = 1
-    )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
             generator = "inventory_sequence"
     )
+    @GenericGenerator(
+            name = "inventory_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "inventory_sequence"
+            )
+    )
     private Long id;
     @ManyToOne
     @JoinColumn(name = "product_id", nullable = false)
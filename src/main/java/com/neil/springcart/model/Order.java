@@ -1,8 +1,11 @@
 package com.neil.springcart.model;
 
 import com.neil.springcart.util.converter.AddressConverter;
+import com.neil.springcart.util.id.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.util.Date;
 import java.util.List;
@@ -16,15 +19,18 @@ import java.util.List;
 @AllArgsConstructor
 public class Order {
     @Id
-    @SequenceGenerator(
-            name = "order_sequence",
-            sequenceName = "order_sequence",
-            allocationSize = 1
-    )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
             generator = "order_sequence"
     )
+    @GenericGenerator(
+            name = "order_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "order_sequence"
+            )
+    )
     private Long id;
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "customer_id")
@@ -43,9 +49,16 @@ public class Order {
     @Column(nullable = false)
     private boolean isCancelled;
 
+    public int getUnitCount() {
+        return this.items.stream()
+                .mapToInt(OrderLineItem::getQuantity)
+                .sum();
+    }
+
     public double getTotalAmount() {
         return this.items.stream()
-                .mapToDouble(item -> item.getProduct().getPrice())
+                .mapToDouble(item -> item.getProduct().getPrice()
+                        * item.getQuantity())
                 .sum();
     }
 }
@@ -1,8 +1,20 @@
 package com.neil.springcart.model;
 
+import com.neil.springcart.util.id.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
+import java.util.List;
+
+/**
+ * A line of an order: a quantity of one size of a product. Existing databases
+ * that stored one line per unit need db/order-line-item-quantity.sql run
+ * before deploying. The order_line_item_unit view in
+ * db/order-line-item-unit.sql has one row per unit for anything that still
+ * works with individual units, and is created along with new schemas.
+ */
 @Entity(name = "OrderLineItem")
 @Table(name = "order_line_item")
 @Getter
@@ -12,15 +24,18 @@ import lombok.*;
 @AllArgsConstructor
 public class OrderLineItem {
     @Id
-    @SequenceGenerator(
-            name = "order_line_item_sequence",
-            sequenceName = "order_line_item_sequence",
-            allocationSize = 1
-    )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
             generator = "order_line_item_sequence"
     )
+    @GenericGenerator(
+            name = "order_line_item_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "order_line_item_sequence"
+            )
+    )
     private Long id;
     @ManyToOne
     @JoinColumn(name = "order_id", nullable = false)
@@ -30,9 +45,12 @@ public class OrderLineItem {
     private Product product;
     @Column(nullable = false)
     private ProductSize size;
-    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
-    @JoinColumn(name = "inventory_item_id", unique = true)
-    private InventoryItem inventoryItem;
     @Column(nullable = false)
-    private boolean isReturned;
+    private int quantity;
+    // The inventory items sold on this line, if units are stored individually
+    @OneToMany(fetch = FetchType.LAZY)
+    @JoinColumn(name = "order_line_item_id")
+    private List<InventoryItem> inventoryItems;
+    @Column(nullable = false)
+    private int returnedQuantity;
 }
@@ -0,0 +1,38 @@
+package com.neil.springcart.model;
+
+import lombok.Getter;
+
+/**
+ * The price ranges products are grouped into for filtering. Each band includes
+ * its lower bound and excludes its upper bound.
+ */
+@Getter
+public enum PriceBand {
+    UNDER_25(0, 25),
+    FROM_25_TO_50(25, 50),
+    FROM_50_TO_100(50, 100),
+    FROM_100_TO_200(100, 200),
+    OVER_200(200, Double.POSITIVE_INFINITY);
+
+    private final double min;
+    private final double max;
+
+    PriceBand(double min, double max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Gets the band the given price falls in.
+     * @param price The price.
+     * @return The price band.
+     */
+    public static PriceBand of(double price) {
+        for (PriceBand band : values()) {
+            if (price < band.max) {
+                return band;
+            }
+        }
+        return OVER_200;
+    }
+}
@@ -1,13 +1,28 @@
 package com.neil.springcart.model;
 
+import com.neil.springcart.util.id.PooledSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.util.List;
 import java.util.UUID;
 
 @Entity(name = "Product")
-@Table(name = "product")
+@Table(
+        name = "product",
+        indexes = {
+                @Index(
+                        name = "product_active_gender_category_idx",
+                        columnList = "isActive, gender, category"
+                ),
+                @Index(
+                        name = "product_active_price_idx",
+                        columnList = "isActive, price, id"
+                )
+        }
+)
 @Getter
 @Setter
 @Builder
@@ -15,15 +30,18 @@ import java.util.UUID;
 @NoArgsConstructor
 public class Product {
     @Id
-    @SequenceGenerator(
-            name = "product_sequence",
-            sequenceName = "product_sequence",
-            allocationSize = 1
-    )
     @GeneratedValue(
             strategy = GenerationType.SEQUENCE,
             generator = "product_sequence"
     )
+    @GenericGenerator(
+            name = "product_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "product_sequence"
+            )
+    )
     private Long id;
     @Column(nullable = false, unique = true)
     private UUID sku;
@@ -0,0 +1,48 @@
+package com.neil.springcart.model;
+
+import com.neil.springcart.util.id.PooledSequenceGenerator;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * The on-hand stock counter for a single size of a product. Used when
+ * inventory is tracked as a stock ledger instead of one row per unit.
+ */
+@Entity(name = "ProductStock")
+@Table(
+        name = "product_stock",
+        uniqueConstraints = @UniqueConstraint(
+                columnNames = { "product_id", "size" }
+        )
+)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStock {
+    @Id
+    @GeneratedValue(
+            strategy = GenerationType.SEQUENCE,
+            generator = "product_stock_sequence"
+    )
+    @GenericGenerator(
+            name = "product_stock_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "product_stock_sequence"
+            )
+    )
+    private Long id;
+    @ManyToOne
+    @JoinColumn(name = "product_id", nullable = false)
+    private Product product;
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ProductSize size;
+    @Column(nullable = false)
+    private int onHand;
+}
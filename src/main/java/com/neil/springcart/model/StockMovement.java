@@ -0,0 +1,50 @@
+package com.neil.springcart.model;
+
+import com.neil.springcart.util.id.PooledSequenceGenerator;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import java.util.Date;
+
+/**
+ * An append-only record of a change to the on-hand stock of a product size.
+ */
+@Entity(name = "StockMovement")
+@Table(name = "stock_movement")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovement {
+    @Id
+    @GeneratedValue(
+            strategy = GenerationType.SEQUENCE,
+            generator = "stock_movement_sequence"
+    )
+    @GenericGenerator(
+            name = "stock_movement_sequence",
+            type = PooledSequenceGenerator.class,
+            parameters = @Parameter(
+                    name = "sequence_name",
+                    value = "stock_movement_sequence"
+            )
+    )
+    private Long id;
+    @ManyToOne
+    @JoinColumn(name = "product_id", nullable = false)
+    private Product product;
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private ProductSize size;
+    // Positive for stock coming in, negative for stock going out
+    @Column(nullable = false)
+    private int quantity;
+    @Column(nullable = false)
+    @Enumerated(EnumType.STRING)
+    private StockMovementReason reason;
+    @Column(nullable = false)
+    private Date date;
+}
@@ -0,0 +1,6 @@
+package com.neil.springcart.model;
+
+public enum StockMovementReason {
+    RESTOCK,
+    ORDER,
+}
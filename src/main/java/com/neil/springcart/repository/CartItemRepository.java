@@ -0,0 +1,79 @@
+package com.neil.springcart.repository;
+
+import com.neil.springcart.model.CartItem;
+import com.neil.springcart.model.ProductSize;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+    /**
+     * Finds the lines of a cart with their products fetched in the same query.
+     * @param cartId The ID of the cart.
+     * @return The lines of the cart in the order they were added.
+     */
+    @Query("SELECT i FROM CartItem i JOIN FETCH i.product WHERE i.cart.id = ?1 ORDER BY i.id")
+    List<CartItem> findAllByCartId(Long cartId);
+
+    /**
+     * Finds the lines of a customer's cart with their products fetched in the
+     * same query.
+     * @param customerId The ID of the customer.
+     * @return The lines of the cart in the order they were added.
+     */
+    @Query("SELECT i FROM CartItem i JOIN FETCH i.product WHERE i.cart.customer.id = ?1 ORDER BY i.id")
+    List<CartItem> findAllByCustomerId(Long customerId);
+
+    /**
+     * Adds to the quantity of the cart line for a product size.
+     * @param cartId The ID of the cart.
+     * @param productId The ID of the product.
+     * @param size The size of the product.
+     * @param quantity The quantity to add.
+     * @return The number of lines updated, which is 0 if the cart doesn't have
+     * a line for the product size yet.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE CartItem i SET i.quantity = i.quantity + ?4 WHERE i.cart.id = ?1 AND i.product.id = ?2 AND i.size = ?3")
+    int incrementQuantity(Long cartId, Long productId, ProductSize size,
+                          int quantity);
+
+    /**
+     * Sets the quantity of the cart line for a product size.
+     * @param cartId The ID of the cart.
+     * @param productId The ID of the product.
+     * @param size The size of the product.
+     * @param quantity The new quantity.
+     * @return The number of lines updated, which is 0 if the cart doesn't have
+     * a line for the product size yet.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE CartItem i SET i.quantity = ?4 WHERE i.cart.id = ?1 AND i.product.id = ?2 AND i.size = ?3")
+    int setQuantity(Long cartId, Long productId, ProductSize size,
+                    int quantity);
+
+    /**
+     * Deletes the cart line for a product size.
+     * @param cartId The ID of the cart.
+     * @param productId The ID of the product.
+     * @param size The size of the product.
+     * @return The number of lines deleted, which is 0 if the cart doesn't have
+     * a line for the product size.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM CartItem i WHERE i.cart.id = ?1 AND i.product.id = ?2 AND i.size = ?3")
+    int deleteItem(Long cartId, Long productId, ProductSize size);
+
+    /**
+     * Deletes every line of a cart.
+     * @param cartId The ID of the cart.
+     * @return The number of lines deleted.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM CartItem i WHERE i.cart.id = ?1")
+    int deleteAllByCartId(Long cartId);
+}
@@ -11,4 +11,7 @@ import java.util.Optional;
 public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c WHERE c.customer.id = ?1")
     Optional<Cart> findByCustomerId(Long customerId);
+
+    @Query("SELECT c.id FROM Cart c WHERE c.customer.id = ?1")
+    Optional<Long> findIdByCustomerId(Long customerId);
 }
@@ -3,9 +3,11 @@ package com.neil.springcart.repository;
 import com.neil.springcart.model.InventoryItem;
 import com.neil.springcart.model.ProductSize;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -29,4 +31,63 @@ public interface InventoryItemRepository extends JpaRepository<InventoryItem, Lo
     @Query("SELECT i FROM InventoryItem i WHERE i.product.id = ?1 AND i.size = ?2 AND i.isSold = false")
     List<InventoryItem> findAllByProductIdAndSize(Long productId,
                                                   ProductSize size);
+
+    /**
+     * Counts the available inventory items for the product with the given ID
+     * that match the given size.
+     * @param productId The ID of the product the inventory is for.
+     * @param size The size of the inventory items being counted.
+     * @return The number of available inventory items.
+     */
+    @Query("SELECT COUNT(i) FROM InventoryItem i WHERE i.product.id = ?1 AND i.size = ?2 AND i.isSold = false")
+    long countAvailableByProductIdAndSize(Long productId, ProductSize size);
+
+    /**
+     * Counts the available inventory items for each size of the product with
+     * the given ID. Sizes with no available items are left out.
+     * @param productId The ID of the product the inventory is for.
+     * @return The number of available inventory items for each size.
+     */
+    @Query("SELECT i.size AS size, COUNT(i) AS stock FROM InventoryItem i WHERE i.product.id = ?1 AND i.isSold = false GROUP BY i.size")
+    List<SizeStockCount> countAvailableByProductIdGroupBySize(Long productId);
+
+    /**
+     * Counts the available inventory items for each size of the products with
+     * the given IDs in a single query. Sizes with no available items are left
+     * out.
+     * @param productIds The IDs of the products.
+     * @return The number of available inventory items for each product size.
+     */
+    @Query("SELECT i.product.id AS productId, i.size AS size, COUNT(i) AS stock FROM InventoryItem i WHERE i.product.id IN ?1 AND i.isSold = false GROUP BY i.product.id, i.size")
+    List<ProductSizeStockCount> countAvailableByProductIdsGroupBySize(
+            Collection<Long> productIds);
+
+    /**
+     * Locks up to the given number of available inventory items for the
+     * product with the given ID that match the given size. Items already
+     * locked by another transaction are skipped rather than waited on, so
+     * concurrent orders for the same product size never claim the same item.
+     * The items aren't sorted, which would make some databases apply the limit
+     * before skipping locked items and come back short. Must be called within
+     * a transaction.
+     * @param productId The ID of the product the inventory is for.
+     * @param size The name of the size of the inventory items.
+     * @param quantity The maximum number of items to lock.
+     * @return The IDs of at most {@code quantity} locked inventory items.
+     */
+    @Query(
+            value = "SELECT id FROM inventory WHERE product_id = ?1 AND size = ?2 AND is_sold = false LIMIT ?3 FOR UPDATE SKIP LOCKED",
+            nativeQuery = true
+    )
+    List<Long> lockAvailableIdsByProductIdAndSize(Long productId, String size,
+                                                  int quantity);
+
+    /**
+     * Marks the inventory items with the given IDs as sold.
+     * @param ids The IDs of the inventory items.
+     * @return The number of inventory items updated.
+     */
+    @Modifying
+    @Query("UPDATE InventoryItem i SET i.isSold = true WHERE i.id IN ?1")
+    int markAsSold(List<Long> ids);
 }
@@ -3,21 +3,107 @@ package com.neil.springcart.repository;
 import com.neil.springcart.model.Product;
 import com.neil.springcart.model.ProductCategory;
 import com.neil.springcart.model.ProductGender;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.isActive = true")
     List<Product> findActiveProducts();
 
-    @Query("SELECT p FROM Product p WHERE p.gender = ?1 OR p.gender = UNISEX")
+    /**
+     * Reads the columns of the product with the given ID from the database,
+     * even if the product is already loaded in the current persistence
+     * context.
+     * @param id The ID of the product.
+     * @return The product's columns, or an empty optional if it doesn't exist.
+     */
+    @Query("SELECT p.id AS id, p.brand AS brand, p.name AS name, p.description AS description, p.category AS category, p.gender AS gender, p.price AS price, p.isActive AS active FROM Product p WHERE p.id = ?1")
+    Optional<ProductSnapshot> findSnapshotById(Long id);
+
+    @Query("SELECT CASE WHEN COUNT(p) > 0 THEN true ELSE false END FROM Product p WHERE p.id = ?1 AND p.isActive = true")
+    boolean existsActiveById(Long id);
+
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND (p.gender = ?1 OR p.gender = UNISEX)")
     List<Product> findAllByGender(ProductGender gender);
 
-    @Query("SELECT p FROM Product p WHERE (p.gender = ?1 OR p.gender = UNISEX) AND p.category = ?2")
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND (p.gender = ?1 OR p.gender = UNISEX) AND p.category = ?2")
     List<Product> findAllByGenderAndCategory(ProductGender gender,
                                              ProductCategory category);
+
+    /**
+     * Finds active products with an ID greater than the given ID, ordered by
+     * ID. The size of the result is limited by the given pageable.
+     * @param afterId The ID of the last product on the previous page.
+     * @param pageable The page size.
+     * @return A list of active products after the given ID.
+     */
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.id > ?1 ORDER BY p.id")
+    List<Product> findActiveProductsAfter(Long afterId, Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND (p.gender = ?1 OR p.gender = UNISEX) AND p.id > ?2 ORDER BY p.id")
+    List<Product> findActiveProductsByGenderAfter(ProductGender gender,
+                                                  Long afterId,
+                                                  Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND (p.gender = ?1 OR p.gender = UNISEX) AND p.category = ?2 AND p.id > ?3 ORDER BY p.id")
+    List<Product> findActiveProductsByGenderAndCategoryAfter(
+            ProductGender gender, ProductCategory category, Long afterId,
+            Pageable pageable);
+
+    /**
+     * Finds active products in the given price range that come after the given
+     * price and ID, ordered by price and then ID. The size of the result is
+     * limited by the given pageable.
+     * @param minPrice The minimum price, inclusive.
+     * @param maxPrice The maximum price, inclusive.
+     * @param afterPrice The price of the last product on the previous page.
+     * @param afterId The ID of the last product on the previous page.
+     * @param pageable The page size.
+     * @return A list of active products ordered by ascending price.
+     */
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.price >= ?1 AND p.price <= ?2 AND (p.price > ?3 OR (p.price = ?3 AND p.id > ?4)) ORDER BY p.price, p.id")
+    List<Product> findActiveProductsByPriceAscAfter(double minPrice,
+                                                    double maxPrice,
+                                                    double afterPrice,
+                                                    Long afterId,
+                                                    Pageable pageable);
+
+    /**
+     * Finds active products in the given price range that come before the
+     * given price and ID, ordered by price and then ID, both descending. The
+     * size of the result is limited by the given pageable.
+     * @param minPrice The minimum price, inclusive.
+     * @param maxPrice The maximum price, inclusive.
+     * @param beforePrice The price of the last product on the previous page.
+     * @param beforeId The ID of the last product on the previous page.
+     * @param pageable The page size.
+     * @return A list of active products ordered by descending price.
+     */
+    @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.price >= ?1 AND p.price <= ?2 AND (p.price < ?3 OR (p.price = ?3 AND p.id < ?4)) ORDER BY p.price DESC, p.id DESC")
+    List<Product> findActiveProductsByPriceDescBefore(double minPrice,
+                                                      double maxPrice,
+                                                      double beforePrice,
+                                                      Long beforeId,
+                                                      Pageable pageable);
+
+    /**
+     * Streams every product, active or not, ordered by ID. Rows are fetched
+     * from the database in batches as the stream is consumed. Must be called
+     * within a transaction and the stream must be closed.
+     * @return A stream of every product.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE,
+            value = "500"))
+    @Query("SELECT p FROM Product p ORDER BY p.id")
+    Stream<Product> streamAllOrderById();
 }
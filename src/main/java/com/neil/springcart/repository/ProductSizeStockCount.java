@@ -0,0 +1,12 @@
+package com.neil.springcart.repository;
+
+import com.neil.springcart.model.ProductSize;
+
+/**
+ * A projection of the number of available units for a size of a product.
+ */
+public interface ProductSizeStockCount {
+    Long getProductId();
+    ProductSize getSize();
+    long getStock();
+}
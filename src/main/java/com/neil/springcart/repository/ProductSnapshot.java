@@ -0,0 +1,39 @@
+package com.neil.springcart.repository;
+
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+
+/**
+ * A projection of a product's own columns. Unlike an entity, a projection is
+ * always read from the database, so it is never an older copy of the product
+ * already loaded in the current persistence context.
+ */
+public interface ProductSnapshot {
+    Long getId();
+    String getBrand();
+    String getName();
+    String getDescription();
+    ProductCategory getCategory();
+    ProductGender getGender();
+    double getPrice();
+    boolean isActive();
+
+    /**
+     * Copies the snapshot into a new product that isn't managed by any
+     * persistence context.
+     * @return The product.
+     */
+    default Product toProduct() {
+        return Product.builder()
+                .id(getId())
+                .brand(getBrand())
+                .name(getName())
+                .description(getDescription())
+                .category(getCategory())
+                .gender(getGender())
+                .price(getPrice())
+                .isActive(isActive())
+                .build();
+    }
+}
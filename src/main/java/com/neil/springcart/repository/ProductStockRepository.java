@@ -0,0 +1,70 @@
+package com.neil.springcart.repository;
+
+import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.model.ProductStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProductStockRepository
+        extends JpaRepository<ProductStock, Long> {
+    /**
+     * Finds the stock counters for every size of the product with the given ID.
+     * @param productId The ID of the product.
+     * @return A list of stock counters for the product.
+     */
+    @Query("SELECT s FROM ProductStock s WHERE s.product.id = ?1")
+    List<ProductStock> findAllByProductId(Long productId);
+
+    /**
+     * Gets the stock on hand for each size of the product with the given ID.
+     * Read as a projection, so counters already loaded can't hide changes
+     * made by {@link #incrementStock} or {@link #decrementStock}.
+     * @param productId The ID of the product.
+     * @return The stock on hand for each size. Sizes with nothing on hand are
+     * left out.
+     */
+    @Query("SELECT s.size AS size, s.onHand AS stock FROM ProductStock s WHERE s.product.id = ?1 AND s.onHand > 0")
+    List<SizeStockCount> findStockByProductId(Long productId);
+
+    /**
+     * Gets the stock on hand for each size of the products with the given IDs
+     * in a single query.
+     * @param productIds The IDs of the products.
+     * @return The stock on hand for each size of the products. Sizes with
+     * nothing on hand are left out.
+     */
+    @Query("SELECT s.product.id AS productId, s.size AS size, s.onHand AS stock FROM ProductStock s WHERE s.product.id IN ?1 AND s.onHand > 0")
+    List<ProductSizeStockCount> findStockByProductIdIn(
+            Collection<Long> productIds);
+
+    /**
+     * Adds the given quantity to the stock counter of a product size.
+     * @param productId The ID of the product.
+     * @param size The size of the product.
+     * @param quantity The quantity to add.
+     * @return The number of counters updated, {@code 0} if the product size
+     * doesn't have a counter yet.
+     */
+    @Modifying
+    @Query("UPDATE ProductStock s SET s.onHand = s.onHand + ?3 WHERE s.product.id = ?1 AND s.size = ?2")
+    int incrementStock(Long productId, ProductSize size, int quantity);
+
+    /**
+     * Takes the given quantity from the stock counter of a product size if
+     * there is enough stock on hand.
+     * @param productId The ID of the product.
+     * @param size The size of the product.
+     * @param quantity The quantity to take.
+     * @return {@code 1} if the stock was taken, {@code 0} if there wasn't
+     * enough stock.
+     */
+    @Modifying
+    @Query("UPDATE ProductStock s SET s.onHand = s.onHand - ?3 WHERE s.product.id = ?1 AND s.size = ?2 AND s.onHand >= ?3")
+    int decrementStock(Long productId, ProductSize size, int quantity);
+}
@@ -0,0 +1,11 @@
+package com.neil.springcart.repository;
+
+import com.neil.springcart.model.ProductSize;
+
+/**
+ * A projection of the number of available units for a product size.
+ */
+public interface SizeStockCount {
+    ProductSize getSize();
+    long getStock();
+}
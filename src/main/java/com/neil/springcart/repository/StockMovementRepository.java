@@ -0,0 +1,15 @@
+package com.neil.springcart.repository;
+
+import com.neil.springcart.model.StockMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockMovementRepository
+        extends JpaRepository<StockMovement, Long> {
+    @Query("SELECT m FROM StockMovement m WHERE m.product.id = ?1")
+    List<StockMovement> findAllByProductId(Long productId);
+}
@@ -1,17 +1,21 @@
 package com.neil.springcart.security;
 
 import com.neil.springcart.exception.ForbiddenException;
+import com.neil.springcart.model.UserRole;
 import com.neil.springcart.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -20,17 +24,40 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * A JWT Authentication Filter to filter incoming requests and authenticate
- * them.
+ * them. In stateless mode the user is built from the signed claims of the token
+ * instead of being loaded from the database on every request. Verified tokens
+ * are cached so repeat requests with the same token skip verification.
  */
 @Component
-@AllArgsConstructor
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final TokenDenylist tokenDenylist;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final boolean stateless;
+    private final boolean revocationEnabled;
+
+    public JwtAuthenticationFilter(
+            JwtUtil jwtUtil,
+            UserDetailsService userDetailsService,
+            TokenDenylist tokenDenylist,
+            VerifiedTokenCache verifiedTokenCache,
+            @Value("${jwt.stateless:true}") boolean stateless,
+            @Value("${jwt.revocation.enabled:true}") boolean revocationEnabled
+    ) {
+        this.jwtUtil = jwtUtil;
+        this.userDetailsService = userDetailsService;
+        this.tokenDenylist = tokenDenylist;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.stateless = stateless;
+        this.revocationEnabled = revocationEnabled;
+    }
 
     /**
      * Filters incoming requests by checking the JWT tokens and authenticating
@@ -63,30 +90,90 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private void handleAuthentication(String token,
                                       HttpServletRequest request) {
-        final String userEmail = jwtUtil.extractUsername(token);
         Authentication authentication = SecurityContextHolder
                 .getContext()
                 .getAuthentication();
-        if (userEmail != null && authentication == null) {
-            UserDetails userDetails = this.userDetailsService
-                    .loadUserByUsername(userEmail);
-            if (jwtUtil.isTokenValid(token, userDetails)) {
-                setRequestAuthentication(userDetails, request);
-            }
+        if (authentication != null) {
+            return;
+        }
+        VerifiedToken verifiedToken = verifiedTokenCache.get(token,
+                this::verifyToken);
+        if (verifiedToken == null) {
+            return;
+        }
+        if (revocationEnabled
+                && tokenDenylist.isRevoked(verifiedToken.tokenId())) {
+            log.info("Rejected revoked token (ID: {})",
+                    verifiedToken.tokenId());
+            return;
+        }
+        setRequestAuthentication(verifiedToken.principal(),
+                verifiedToken.authorities(), request);
+    }
+
+    /**
+     * Verifies the given token and resolves the user it belongs to.
+     * @param token A JWT token.
+     * @return The verified token, or null if it doesn't belong to a user.
+     */
+    private VerifiedToken verifyToken(String token) {
+        final Claims claims = jwtUtil.validateToken(token);
+        final String userEmail = claims.getSubject();
+        if (userEmail == null) {
+            return null;
+        }
+        final long expiresAt = claims.getExpiration().getTime();
+
+        JwtPrincipal principal = stateless ? extractPrincipal(claims) : null;
+        if (principal != null) {
+            return new VerifiedToken(principal, List.of(
+                    new SimpleGrantedAuthority(principal.role().name())
+            ), claims.getId(), expiresAt);
+        }
+        // Tokens issued without the user claims fall back to a lookup
+        UserDetails userDetails = this.userDetailsService
+                .loadUserByUsername(userEmail);
+        if (jwtUtil.isTokenValid(claims, userDetails)) {
+            return new VerifiedToken(userDetails, userDetails.getAuthorities(),
+                    claims.getId(), expiresAt);
+        }
+        return null;
+    }
+
+    /**
+     * Builds the principal for the request from the user ID and role claims.
+     * @param claims The verified claims of the JWT token.
+     * @return The principal, or null if the token doesn't have the claims.
+     */
+    private JwtPrincipal extractPrincipal(Claims claims) {
+        Number userId = claims.get(JwtUtil.USER_ID_CLAIM, Number.class);
+        String role = claims.get(JwtUtil.ROLE_CLAIM, String.class);
+        if (userId == null || role == null) {
+            return null;
+        }
+        try {
+            return new JwtPrincipal(userId.longValue(), claims.getSubject(),
+                    UserRole.valueOf(role));
+        } catch (IllegalArgumentException ex) {
+            return null;
         }
     }
 
     /**
      * Updates the authentication details for the security context holder.
-     * @param userDetails The user details of the user making the request.
+     * @param principal The user making the request.
+     * @param authorities The authorities of the user making the request.
      * @param request The incoming request.
      */
-    private void setRequestAuthentication(UserDetails userDetails,
-                                          HttpServletRequest request) {
+    private void setRequestAuthentication(
+            Object principal,
+            Collection<? extends GrantedAuthority> authorities,
+            HttpServletRequest request
+    ) {
         UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                userDetails,
+                principal,
                 null,
-                userDetails.getAuthorities()
+                authorities
         );
         authToken.setDetails(
                 new WebAuthenticationDetailsSource().buildDetails(request)
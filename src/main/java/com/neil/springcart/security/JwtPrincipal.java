@@ -0,0 +1,20 @@
+package com.neil.springcart.security;
+
+import com.neil.springcart.model.UserRole;
+
+import java.security.Principal;
+
+/**
+ * The principal of a request authenticated from the claims of its JWT token
+ * alone, without loading the user from the database.
+ * @param id The ID of the customer or admin.
+ * @param email The email (username) of the user.
+ * @param role The role of the user.
+ */
+public record JwtPrincipal(Long id, String email, UserRole role)
+        implements Principal {
+    @Override
+    public String getName() {
+        return email;
+    }
+}
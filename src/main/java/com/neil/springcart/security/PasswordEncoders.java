@@ -0,0 +1,61 @@
+package com.neil.springcart.security;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Creates the password encoders supported by the application. Hashes are
+ * stored with an id prefix (e.g. {@code {bcrypt}$2a$10$...}) so the algorithm
+ * used for new passwords can change without breaking existing ones.
+ */
+public final class PasswordEncoders {
+    public static final String BCRYPT = "bcrypt";
+    public static final String ARGON2 = "argon2";
+    public static final String PBKDF2 = "pbkdf2";
+
+    private PasswordEncoders() {}
+
+    /**
+     * Creates an encoder for each supported algorithm.
+     * @param bcryptStrength The log2 number of BCrypt rounds.
+     * @return The encoders, keyed by their id.
+     */
+    public static Map<String, PasswordEncoder> createEncoders(
+            int bcryptStrength) {
+        Map<String, PasswordEncoder> encoders = new LinkedHashMap<>();
+        encoders.put(BCRYPT, new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put(ARGON2,
+                Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        encoders.put(PBKDF2,
+                Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        return encoders;
+    }
+
+    /**
+     * Creates an encoder that hashes new passwords with the given algorithm
+     * and checks existing ones with the algorithm in their id prefix. Hashes
+     * without a prefix were created before the prefixes were added, and are
+     * checked as BCrypt.
+     * @param idForEncode The id of the algorithm for new passwords.
+     * @param bcryptStrength The log2 number of BCrypt rounds.
+     * @return A delegating password encoder.
+     */
+    public static PasswordEncoder createDelegatingEncoder(String idForEncode,
+                                                          int bcryptStrength) {
+        Map<String, PasswordEncoder> encoders = createEncoders(bcryptStrength);
+        if (!encoders.containsKey(idForEncode)) {
+            throw new IllegalArgumentException(
+                    "Unsupported password encoder: " + idForEncode);
+        }
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(
+                idForEncode, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(encoders.get(BCRYPT));
+        return encoder;
+    }
+}
@@ -6,6 +6,7 @@ import com.neil.springcart.model.Customer;
 import com.neil.springcart.repository.AdminRepository;
 import com.neil.springcart.repository.CustomerRepository;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -15,7 +16,6 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
@@ -54,13 +54,15 @@ public class SecurityConfig {
      * Implementation of AuthenticationProvider. Sets up the
      * AuthenticationProvider with the custom UserDetailsService and
      * PasswordEncoder implementations.
+     * @param passwordEncoder The password encoder.
      * @return An AuthenticationProvider object.
      */
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(
+            PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService());
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
         return authProvider;
     }
 
@@ -76,12 +78,18 @@ public class SecurityConfig {
     }
 
     /**
-     * Implementing a Password Encoder for this application with the BCrypt
-     * password encoder.
+     * Implementing a Password Encoder for this application which supports
+     * BCrypt, Argon2 and PBKDF2 hashes. Changing the encoder or raising the
+     * BCrypt strength makes existing hashes get rehashed the next time their
+     * user signs in.
+     * @param encoderId The id of the algorithm used for new passwords.
+     * @param strength The log2 number of BCrypt rounds.
      * @return A PasswordEncoder object.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${password.encoder:bcrypt}") String encoderId,
+            @Value("${password.bcrypt.strength:10}") int strength) {
+        return PasswordEncoders.createDelegatingEncoder(encoderId, strength);
     }
 }
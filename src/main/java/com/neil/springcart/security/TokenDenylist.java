@@ -0,0 +1,88 @@
+package com.neil.springcart.security;
+
+import com.neil.springcart.exception.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory denylist of revoked JWT tokens, keyed by the token ID (jti).
+ * Entries are only kept until the token would have expired anyway, so the
+ * list stays small. The list is per instance and is lost on restart.
+ * <p>
+ * An unexpired entry is never dropped, as that would make its token usable
+ * again. When the list is full of unexpired entries, new revocations are
+ * rejected instead, so the limit has to allow for every logout within a
+ * token's lifetime.
+ */
+@Component
+public class TokenDenylist {
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    public TokenDenylist(
+            @Value("${jwt.revocation.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Revokes the token with the given ID until it expires.
+     * @param tokenId The ID (jti) of the token.
+     * @param expiration The expiration date of the token.
+     * @throws ServiceUnavailableException If the denylist is full of tokens
+     *                                     that haven't expired.
+     */
+    public void revoke(String tokenId, Date expiration) {
+        if (tokenId == null || expiration == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (expiration.getTime() <= now) {
+            return;
+        }
+        if (revokedTokens.size() >= maxEntries) {
+            purgeExpired(now);
+        }
+        if (revokedTokens.size() >= maxEntries
+                && !revokedTokens.containsKey(tokenId)) {
+            throw new ServiceUnavailableException(
+                    "Could not revoke token, please try again later");
+        }
+        revokedTokens.put(tokenId, expiration.getTime());
+    }
+
+    /**
+     * Checks if the token with the given ID has been revoked.
+     * @param tokenId The ID (jti) of the token.
+     * @return `true` if the token has been revoked, `false` if not.
+     */
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        Long expiration = revokedTokens.get(tokenId);
+        if (expiration == null) {
+            return false;
+        }
+        if (expiration <= System.currentTimeMillis()) {
+            revokedTokens.remove(tokenId, expiration);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of revoked tokens currently held.
+     * @return The number of entries in the denylist.
+     */
+    public int size() {
+        return revokedTokens.size();
+    }
+
+    private void purgeExpired(long now) {
+        revokedTokens.values().removeIf(expiration -> expiration <= now);
+    }
+}
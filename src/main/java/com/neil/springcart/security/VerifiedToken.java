@@ -0,0 +1,18 @@
+package com.neil.springcart.security;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * The result of verifying a JWT token, kept so repeat requests with the same
+ * token don't need to verify it again.
+ * @param principal The user the token belongs to.
+ * @param authorities The authorities of the user.
+ * @param tokenId The ID (jti) of the token, used for revocation checks.
+ * @param expiresAt The expiration time of the token in epoch milliseconds.
+ */
+public record VerifiedToken(Object principal,
+                            Collection<? extends GrantedAuthority> authorities,
+                            String tokenId,
+                            long expiresAt) {}
@@ -0,0 +1,74 @@
+package com.neil.springcart.security;
+
+import com.neil.springcart.util.cache.BoundedCache;
+import com.neil.springcart.util.cache.CacheRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.function.Function;
+
+/**
+ * An in-memory cache of verified JWT tokens, keyed by a SHA-256 hash of the
+ * token so the tokens themselves aren't held in memory. Clients reuse the same
+ * token for a week, so repeat requests can skip the signature check and the
+ * user lookup. Entries never outlive the token they were verified from.
+ */
+@Component
+public class VerifiedTokenCache {
+    private final boolean enabled;
+    private final BoundedCache<String, VerifiedToken> cache;
+
+    public VerifiedTokenCache(
+            CacheRegistry cacheRegistry,
+            @Value("${jwt.cache.enabled:true}") boolean enabled,
+            @Value("${jwt.cache.max-entries:10000}") int maxEntries,
+            @Value("${jwt.cache.ttl:PT5M}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = new BoundedCache<>(maxEntries, ttl);
+        cacheRegistry.register("verified-tokens", cache);
+    }
+
+    /**
+     * Gets the verified token for the given token, verifying it with the given
+     * verifier if it isn't cached or its cached entry has expired.
+     * @param token A JWT token.
+     * @param verifier Verifies a token, returning null if it doesn't belong to
+     *                 a user.
+     * @return The verified token, or null if the verifier returned null.
+     */
+    public VerifiedToken get(String token,
+                             Function<String, VerifiedToken> verifier) {
+        if (!enabled) {
+            return verifier.apply(token);
+        }
+        String key = hash(token);
+        VerifiedToken verifiedToken = cache.get(key);
+        if (verifiedToken != null
+                && verifiedToken.expiresAt() > System.currentTimeMillis()) {
+            return verifiedToken;
+        }
+        if (verifiedToken != null) {
+            cache.invalidate(key);
+        }
+        verifiedToken = verifier.apply(token);
+        if (verifiedToken != null) {
+            cache.put(key, verifiedToken);
+        }
+        return verifiedToken;
+    }
+
+    private String hash(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
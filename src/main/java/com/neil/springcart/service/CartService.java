@@ -3,23 +3,49 @@ package com.neil.springcart.service;
 import com.neil.springcart.dto.CartRequest;
 import com.neil.springcart.dto.CartResponse;
 import com.neil.springcart.exception.BadRequestException;
-import com.neil.springcart.model.Cart;
+import com.neil.springcart.model.CartItem;
 import com.neil.springcart.model.Product;
+import com.neil.springcart.repository.CartItemRepository;
 import com.neil.springcart.repository.CartRepository;
 import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.service.CartStore.StoredCart;
+import com.neil.springcart.service.CartStore.StoredCartLine;
 import com.neil.springcart.util.mapper.CartMapper;
 import jakarta.transaction.Transactional;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
-@AllArgsConstructor
 @Slf4j
 public class CartService {
     private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
     private final CartMapper cartMapper;
+    private final CartStore cartStore;
+    private final TransactionTemplate transactionTemplate;
+
+    public CartService(CartRepository cartRepository,
+                       CartItemRepository cartItemRepository,
+                       ProductRepository productRepository,
+                       CartMapper cartMapper,
+                       CartStore cartStore,
+                       PlatformTransactionManager transactionManager) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.cartMapper = cartMapper;
+        this.cartStore = cartStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     /**
      * Gets a customer's cart details.
@@ -27,50 +53,120 @@ public class CartService {
      * @return The cart details.
      */
     public CartResponse getCustomerCartDetails(Long customerId) {
-        Cart cart = getCartByCustomerId(customerId);
-        return cartMapper.mapToResponse(cart);
+        if (cartStore.isEnabled()) {
+            return getStoredCartDetails(customerId);
+        }
+        Long cartId = getCartIdByCustomerId(customerId);
+        List<CartItem> items = cartItemRepository.findAllByCartId(cartId);
+        return cartMapper.mapToResponse(cartId, items);
     }
 
     /**
-     * Adds a product to a customer's cart.
-     * @param request A request containing the customer ID and product ID.
+     * Adds a quantity of a product size to a customer's cart. If the cart
+     * already has the product size, the quantity is added to the existing
+     * line. If a concurrent request adds the same product size first, this
+     * one is retried once in a new transaction and adds to that line instead.
+     * @param request A request containing the customer ID, product ID, size
+     *                and quantity.
      */
-    @Transactional
     public void addProductToCart(CartRequest request) {
-        Product product = getActiveProduct(request.productId());
-        Cart cart = getCartByCustomerId(request.customerId());
-        cart.addProduct(product);
-        log.info("Product (ID: {}) added to cart (ID: {})", product.getId(),
-                cart.getId());
+        if (!productRepository.existsActiveById(request.productId())) {
+            throw new BadRequestException("Product with ID "
+                    + request.productId() + " does not exist or is not active");
+        }
+        if (cartStore.isEnabled()) {
+            Long cartId = cartStore.add(request.customerId(),
+                    request.productId(), request.size(), request.quantity());
+            log.info("Product (ID: {}, size: {}) added to cart (ID: {})",
+                    request.productId(), request.size(), cartId);
+            return;
+        }
+        Long cartId = getCartIdByCustomerId(request.customerId());
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    addToCart(cartId, request));
+        } catch (DataIntegrityViolationException ex) {
+            log.info("Product (ID: {}, size: {}) was added to cart (ID: {}) "
+                    + "concurrently, retrying", request.productId(),
+                    request.size(), cartId);
+            transactionTemplate.executeWithoutResult(status ->
+                    addToCart(cartId, request));
+        }
+        log.info("Product (ID: {}, size: {}) added to cart (ID: {})",
+                request.productId(), request.size(), cartId);
     }
 
     /**
-     * Removes a product from a customer's cart.
-     * @param request A request containing the customer ID and product ID.
+     * Removes a product size from a customer's cart.
+     * @param request A request containing the customer ID, product ID and
+     *                size.
+     * @throws BadRequestException If the product size is not in the cart.
      */
     @Transactional
     public void removeProductFromCart(CartRequest request) {
-        Product product = getActiveProduct(request.productId());
-        Cart cart = getCartByCustomerId(request.customerId());
-        cart.removeProduct(product);
-        log.info("Product (ID: {}) removed from cart (ID: {})", product.getId(),
-                cart.getId());
+        Long cartId;
+        if (cartStore.isEnabled()) {
+            cartId = cartStore.remove(request.customerId(),
+                    request.productId(), request.size());
+        } else {
+            cartId = getCartIdByCustomerId(request.customerId());
+            int deleted = cartItemRepository.deleteItem(cartId,
+                    request.productId(), request.size());
+            if (deleted == 0) {
+                throw new BadRequestException("Product is not in cart");
+            }
+        }
+        log.info("Product (ID: {}, size: {}) removed from cart (ID: {})",
+                request.productId(), request.size(), cartId);
     }
 
-    private Product getActiveProduct(Long id) {
-        Product product = productRepository.findById(id).orElseThrow(() ->
-            new BadRequestException("Product with ID " + id + " does not exist")
-        );
-        if (!product.isActive()) {
-            throw new BadRequestException("Product is not active");
+    private void addToCart(Long cartId, CartRequest request) {
+        // Update the existing line in place and only insert a new line if
+        // there isn't one, so the rest of the cart is never touched
+        int updated = cartItemRepository.incrementQuantity(cartId,
+                request.productId(), request.size(), request.quantity());
+        if (updated == 0) {
+            // Flushed so a clash on the unique product size is thrown here
+            cartItemRepository.saveAndFlush(buildCartItem(cartId, request));
         }
-        return product;
     }
 
-    private Cart getCartByCustomerId(Long customerId) {
+    private CartResponse getStoredCartDetails(Long customerId) {
+        StoredCart cart = cartStore.getCart(customerId);
+        // Look up the products of every line in one query
+        Map<Long, Product> products = productRepository.findAllById(
+                cart.lines().stream()
+                        .map(StoredCartLine::productId)
+                        .distinct()
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Product::getId,
+                        Function.identity()));
+        List<CartItem> items = cart.lines().stream()
+                .filter(line -> products.containsKey(line.productId()))
+                .map(line -> CartItem.builder()
+                        .product(products.get(line.productId()))
+                        .size(line.size())
+                        .quantity(line.quantity())
+                        .build())
+                .toList();
+        return cartMapper.mapToResponse(cart.cartId(), items);
+    }
+
+    private CartItem buildCartItem(Long cartId, CartRequest request) {
+        return CartItem.builder()
+                .cart(cartRepository.getReferenceById(cartId))
+                .product(productRepository.getReferenceById(
+                        request.productId()))
+                .size(request.size())
+                .quantity(request.quantity())
+                .build();
+    }
+
+    private Long getCartIdByCustomerId(Long customerId) {
         // Cart ID will usually be the same as Customer ID but searching the
         // cart by customer ID is safer
-        return cartRepository.findByCustomerId(customerId).orElseThrow(() ->
+        return cartRepository.findIdByCustomerId(customerId).orElseThrow(() ->
             new BadRequestException("Invalid customer ID")
         );
     }
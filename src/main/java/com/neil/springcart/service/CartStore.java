@@ -0,0 +1,446 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.event.CartCheckedOutEvent;
+import com.neil.springcart.exception.BadRequestException;
+import com.neil.springcart.model.CartItem;
+import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.repository.CartItemRepository;
+import com.neil.springcart.repository.CartRepository;
+import com.neil.springcart.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A write-behind store of the active carts. Carts are loaded from the
+ * database the first time they are used and then kept in memory, spread over
+ * a number of shards by customer ID. Adding and removing products only changes
+ * the copy in memory and marks the line as dirty, so any number of changes to
+ * a line between two flushes are written to the database as a single
+ * statement.
+ * <p>
+ * Dirty carts are flushed in the background every flush interval, when the
+ * application shuts down, and on demand with {@link #flush(Long)}, which
+ * checkout uses before it starts its transaction. A cart is dropped once it
+ * has been checked out, along with any changes made to it while checkout was
+ * running. Carts that haven't been used for the idle timeout are dropped from
+ * memory once they are clean.
+ * <p>
+ * What survives a failure:
+ * <ul>
+ *     <li>A change is acknowledged once it is in memory. If the process dies
+ *     without shutting down, changes made since the cart was last flushed are
+ *     lost, which is at most one flush interval of changes.</li>
+ *     <li>Each cart is flushed in its own transaction, so the database always
+ *     has a cart as it was at some point in time, never half of a flush.</li>
+ *     <li>Flushes write the current quantity of each dirty line rather than
+ *     the difference, so a flush that fails is simply retried on the next
+ *     interval and writing the same line twice does no harm.</li>
+ *     <li>Checkout flushes the customer's cart first and fails if the flush
+ *     fails, so an order is never placed from a cart that differs from the
+ *     one the customer saw.</li>
+ * </ul>
+ * The store assumes each customer's requests are served by one instance of
+ * the application. With several instances behind a load balancer without
+ * sticky sessions, the store has to be disabled.
+ */
+@Component
+@Slf4j
+public class CartStore {
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long idleTimeoutMillis;
+    private final Shard[] shards;
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * Creates the cart store and starts flushing it if it is enabled.
+     * @param enabled Whether cart changes go through the store.
+     * @param shardCount The number of shards the carts are spread over.
+     * @param flushInterval How often dirty carts are written to the database.
+     * @param idleTimeout How long a clean cart stays in memory unused.
+     */
+    public CartStore(
+            CartRepository cartRepository,
+            CartItemRepository cartItemRepository,
+            ProductRepository productRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${cart.store.enabled:false}") boolean enabled,
+            @Value("${cart.store.shards:16}") int shardCount,
+            @Value("${cart.store.flush-interval:PT5S}") Duration flushInterval,
+            @Value("${cart.store.idle-timeout:PT30M}") Duration idleTimeout) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        if (enabled) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cart-store-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::flushAll, intervalMillis,
+                    intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Checks if cart changes should go through the store.
+     * @return {@code true} if the store is enabled, {@code false} otherwise.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the current lines of a customer's cart, including changes that
+     * haven't been flushed yet.
+     * @param customerId The customer ID.
+     * @return The cart ID and its lines in the order they were added.
+     * @throws BadRequestException If the customer doesn't have a cart.
+     */
+    public StoredCart getCart(Long customerId) {
+        while (true) {
+            CartState state = getState(customerId);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                state.lastAccess = System.currentTimeMillis();
+                List<StoredCartLine> lines = new ArrayList<>();
+                state.lines.forEach((key, quantity) -> lines.add(
+                        new StoredCartLine(key.productId(), key.size(),
+                                quantity)));
+                return new StoredCart(state.cartId, lines);
+            }
+        }
+    }
+
+    /**
+     * Adds a quantity of a product size to a customer's cart.
+     * @param customerId The customer ID.
+     * @param productId The product ID.
+     * @param size The size of the product.
+     * @param quantity The quantity to add.
+     * @return The ID of the cart.
+     * @throws BadRequestException If the customer doesn't have a cart.
+     */
+    public Long add(Long customerId, Long productId, ProductSize size,
+                    int quantity) {
+        LineKey key = new LineKey(productId, size);
+        return update(customerId, state -> {
+            state.lines.merge(key, quantity, Integer::sum);
+            state.dirty.add(key);
+        });
+    }
+
+    /**
+     * Removes a product size from a customer's cart.
+     * @param customerId The customer ID.
+     * @param productId The product ID.
+     * @param size The size of the product.
+     * @return The ID of the cart.
+     * @throws BadRequestException If the customer doesn't have a cart or the
+     * product size is not in it.
+     */
+    public Long remove(Long customerId, Long productId, ProductSize size) {
+        LineKey key = new LineKey(productId, size);
+        return update(customerId, state -> {
+            if (state.lines.remove(key) == null) {
+                throw new BadRequestException("Product is not in cart");
+            }
+            state.dirty.add(key);
+        });
+    }
+
+    /**
+     * Writes the unflushed changes to a customer's cart to the database in a
+     * transaction of their own. Must be called outside a transaction, so the
+     * flush commits on its own even if the caller's work later fails, and
+     * doesn't hold a second connection while the caller holds one.
+     * @param customerId The customer ID.
+     * @throws IllegalStateException If a transaction is active.
+     * @throws RuntimeException If the changes could not be written. They are
+     * kept and retried on the next flush.
+     */
+    public void flush(Long customerId) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(
+                    "Carts must be flushed outside a transaction");
+        }
+        Shard shard = getShard(customerId);
+        CartState state = shard.carts.get(customerId);
+        if (state != null) {
+            shard.dirtyCustomers.remove(customerId);
+            flushCart(shard, customerId, state);
+        }
+    }
+
+    /**
+     * Drops a customer's cart from memory so it is loaded from the database
+     * the next time it is used, after the cart has been changed in the
+     * database directly. Unflushed changes to the cart are discarded.
+     * @param customerId The customer ID.
+     */
+    public void evict(Long customerId) {
+        Shard shard = getShard(customerId);
+        CartState state = shard.carts.remove(customerId);
+        if (state != null) {
+            synchronized (state) {
+                state.evicted = true;
+                state.dirty.clear();
+            }
+            shard.dirtyCustomers.remove(customerId);
+        }
+    }
+
+    /**
+     * Drops a customer's cart from memory once the transaction that checked
+     * it out has committed, so the emptied cart is loaded the next time it is
+     * used.
+     * @param event The cart checked out event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleCartCheckedOut(CartCheckedOutEvent event) {
+        evict(event.customerId());
+    }
+
+    /**
+     * Writes every dirty cart to the database and drops carts that have been
+     * idle for longer than the idle timeout. Carts that fail to flush are
+     * logged and retried on the next flush.
+     */
+    public void flushAll() {
+        long idleSince = System.currentTimeMillis() - idleTimeoutMillis;
+        for (Shard shard : shards) {
+            Iterator<Long> dirty = shard.dirtyCustomers.iterator();
+            while (dirty.hasNext()) {
+                Long customerId = dirty.next();
+                dirty.remove();
+                CartState state = shard.carts.get(customerId);
+                if (state == null) {
+                    continue;
+                }
+                try {
+                    flushCart(shard, customerId, state);
+                } catch (RuntimeException ex) {
+                    log.warn("Failed to flush cart (ID: {}), retrying on "
+                            + "the next flush", state.cartId, ex);
+                }
+            }
+            shard.carts.forEach((customerId, state) -> {
+                if (state.lastAccess < idleSince) {
+                    evictIfClean(shard, customerId, state);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops the background flushes and writes every dirty cart to the
+     * database before the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushAll();
+    }
+
+    private Long update(Long customerId, CartChange change) {
+        Shard shard = getShard(customerId);
+        while (true) {
+            CartState state = getState(customerId);
+            synchronized (state) {
+                // The cart was dropped from memory after it was looked up,
+                // so look it up again rather than change a detached copy
+                if (state.evicted) {
+                    continue;
+                }
+                change.apply(state);
+                state.lastAccess = System.currentTimeMillis();
+            }
+            shard.dirtyCustomers.add(customerId);
+            return state.cartId;
+        }
+    }
+
+    private CartState getState(Long customerId) {
+        Shard shard = getShard(customerId);
+        CartState state = shard.carts.get(customerId);
+        if (state != null) {
+            return state;
+        }
+        // Load outside the map so a slow query doesn't block the other carts
+        // in the shard. If two requests load the same cart, the first one in
+        // wins and the other copy is thrown away.
+        CartState loaded = load(customerId);
+        state = shard.carts.putIfAbsent(customerId, loaded);
+        return state != null ? state : loaded;
+    }
+
+    private CartState load(Long customerId) {
+        Long cartId = cartRepository.findIdByCustomerId(customerId)
+                .orElseThrow(() ->
+                        new BadRequestException("Invalid customer ID"));
+        CartState state = new CartState(cartId);
+        for (CartItem item : cartItemRepository.findAllByCartId(cartId)) {
+            state.lines.put(new LineKey(item.getProduct().getId(),
+                    item.getSize()), item.getQuantity());
+        }
+        state.lastAccess = System.currentTimeMillis();
+        return state;
+    }
+
+    private void flushCart(Shard shard, Long customerId, CartState state) {
+        // Only one flush of a cart runs at a time, so an older copy of a line
+        // can't be written after a newer one
+        state.flushLock.lock();
+        try {
+            Map<LineKey, Integer> changes = new LinkedHashMap<>();
+            synchronized (state) {
+                if (state.evicted) {
+                    return;
+                }
+                for (LineKey key : state.dirty) {
+                    changes.put(key, state.lines.getOrDefault(key, 0));
+                }
+                state.dirty.clear();
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        writeChanges(state.cartId, changes));
+            } catch (RuntimeException ex) {
+                synchronized (state) {
+                    state.dirty.addAll(changes.keySet());
+                }
+                shard.dirtyCustomers.add(customerId);
+                throw ex;
+            }
+            log.debug("Flushed {} line(s) of cart (ID: {})", changes.size(),
+                    state.cartId);
+        } finally {
+            state.flushLock.unlock();
+        }
+    }
+
+    private void writeChanges(Long cartId, Map<LineKey, Integer> changes) {
+        changes.forEach((key, quantity) -> {
+            if (quantity == 0) {
+                cartItemRepository.deleteItem(cartId, key.productId(),
+                        key.size());
+                return;
+            }
+            int updated = cartItemRepository.setQuantity(cartId,
+                    key.productId(), key.size(), quantity);
+            if (updated == 0) {
+                cartItemRepository.save(CartItem.builder()
+                        .cart(cartRepository.getReferenceById(cartId))
+                        .product(productRepository.getReferenceById(
+                                key.productId()))
+                        .size(key.size())
+                        .quantity(quantity)
+                        .build());
+            }
+        });
+    }
+
+    private void evictIfClean(Shard shard, Long customerId, CartState state) {
+        // Skip carts that are being flushed, since a failed flush marks the
+        // lines as dirty again
+        if (!state.flushLock.tryLock()) {
+            return;
+        }
+        try {
+            synchronized (state) {
+                if (state.dirty.isEmpty()) {
+                    state.evicted = true;
+                    shard.carts.remove(customerId, state);
+                }
+            }
+        } finally {
+            state.flushLock.unlock();
+        }
+    }
+
+    private Shard getShard(Long customerId) {
+        return shards[Math.floorMod(customerId.hashCode(), shards.length)];
+    }
+
+    /**
+     * A cart as it is in the store.
+     * @param cartId The ID of the cart.
+     * @param lines The lines of the cart.
+     */
+    public record StoredCart(Long cartId, List<StoredCartLine> lines) {}
+
+    /**
+     * A line of a cart as it is in the store.
+     * @param productId The ID of the product.
+     * @param size The size of the product.
+     * @param quantity The quantity of the product size.
+     */
+    public record StoredCartLine(Long productId, ProductSize size,
+                                 int quantity) {}
+
+    private record LineKey(Long productId, ProductSize size) {}
+
+    @FunctionalInterface
+    private interface CartChange {
+        void apply(CartState state);
+    }
+
+    private static class Shard {
+        private final Map<Long, CartState> carts = new ConcurrentHashMap<>();
+        private final Set<Long> dirtyCustomers =
+                ConcurrentHashMap.newKeySet();
+    }
+
+    private static class CartState {
+        private final Long cartId;
+        // Guarded by the cart's monitor
+        private final Map<LineKey, Integer> lines = new LinkedHashMap<>();
+        private final Set<LineKey> dirty = new HashSet<>();
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private boolean evicted;
+        private volatile long lastAccess;
+
+        CartState(Long cartId) {
+            this.cartId = cartId;
+        }
+    }
+}
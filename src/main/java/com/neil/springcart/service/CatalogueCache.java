@@ -0,0 +1,86 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.ProductResponse;
+import com.neil.springcart.event.CatalogueImportedEvent;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.util.cache.BoundedCache;
+import com.neil.springcart.util.cache.CacheRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * An in-memory read model of the product listings, keyed by gender and
+ * category. Every listing is invalidated when a product changes, since a
+ * single product can appear in several listings.
+ */
+@Component
+@Slf4j
+public class CatalogueCache {
+    private final boolean enabled;
+    private final BoundedCache<CatalogueKey, List<ProductResponse>> cache;
+
+    public CatalogueCache(
+            CacheRegistry cacheRegistry,
+            @Value("${catalogue.cache.enabled:true}") boolean enabled,
+            @Value("${catalogue.cache.max-entries:64}") int maxEntries,
+            @Value("${catalogue.cache.ttl:PT10M}") Duration ttl) {
+        this.enabled = enabled;
+        this.cache = new BoundedCache<>(maxEntries, ttl);
+        cacheRegistry.register("catalogue", cache);
+    }
+
+    /**
+     * Gets the cached listing for the given gender and category, loading it
+     * with the given loader on a miss.
+     * @param gender The gender, or {@code null} for all genders.
+     * @param category The category, or {@code null} for all categories.
+     * @param loader Loads the listing from the database.
+     * @return The listing.
+     */
+    public List<ProductResponse> getListing(ProductGender gender,
+                                            ProductCategory category,
+                                            Supplier<List<ProductResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return cache.get(new CatalogueKey(gender, category),
+                key -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * Invalidates every listing once the transaction that changed a product
+     * has committed.
+     * @param event The product changed event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public void handleProductChanged(ProductChangedEvent event) {
+        cache.invalidateAll();
+        log.info("Catalogue cache invalidated by product (ID: {})",
+                event.productId());
+    }
+
+    /**
+     * Invalidates every listing once a bulk import has finished.
+     * @param event The catalogue imported event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(0)
+    public void handleCatalogueImported(CatalogueImportedEvent event) {
+        cache.invalidateAll();
+        log.info("Catalogue cache invalidated by an import of {} products",
+                event.productsCreated());
+    }
+
+    private record CatalogueKey(ProductGender gender,
+                                ProductCategory category) {}
+}
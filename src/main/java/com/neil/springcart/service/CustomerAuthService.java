@@ -57,12 +57,13 @@ public class CustomerAuthService {
     private Cart buildCustomerCart(Customer customer) {
         return Cart.builder()
                 .customer(customer)
-                .products(new ArrayList<>())
+                .items(new ArrayList<>())
                 .build();
     }
 
     /**
-     * Checks if the email and password of the customer are valid.
+     * Checks if the email and password of the customer are valid. Passwords
+     * hashed with weaker settings than the current ones are hashed again.
      * @param request The LoginRequest containing the user email and password.
      * @return The customer data if the login details are valid.
      */
@@ -76,6 +77,10 @@ public class CustomerAuthService {
         if (!passwordManager.isPasswordValid(password, customerPassword)) {
             throw new BadRequestException("Password is incorrect");
         }
+        if (passwordManager.needsRehash(customerPassword)) {
+            customer.setPassword(passwordManager.encryptPassword(password));
+            customerRepository.save(customer);
+        }
         return customer;
     }
 
@@ -15,7 +15,8 @@ public class InternalAuthService {
     private final PasswordManager passwordManager;
 
     /**
-     * Checks if the email and password of the admin are valid.
+     * Checks if the email and password of the admin are valid. Passwords
+     * hashed with weaker settings than the current ones are hashed again.
      * @param request The LoginRequest containing the user email and password.
      * @return The admin data if the login details are valid.
      */
@@ -27,6 +28,10 @@ public class InternalAuthService {
         if (!passwordManager.isPasswordValid(password, admin.getPassword())) {
             throw new BadRequestException("Password is incorrect");
         }
+        if (passwordManager.needsRehash(admin.getPassword())) {
+            admin.setPassword(passwordManager.encryptPassword(password));
+            adminRepository.save(admin);
+        }
         return admin;
     }
 
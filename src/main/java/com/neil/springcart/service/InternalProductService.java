@@ -4,16 +4,16 @@ import com.neil.springcart.dto.AddInventoryRequest;
 import com.neil.springcart.dto.InventoryDto;
 import com.neil.springcart.dto.NewProductRequest;
 import com.neil.springcart.dto.UpdateProductRequest;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.event.StockChangedEvent;
 import com.neil.springcart.exception.BadRequestException;
 import com.neil.springcart.exception.NotFoundException;
-import com.neil.springcart.model.InventoryItem;
 import com.neil.springcart.model.Product;
-import com.neil.springcart.repository.InventoryItemRepository;
 import com.neil.springcart.repository.ProductRepository;
-import com.neil.springcart.util.mapper.InventoryMapper;
 import com.neil.springcart.util.mapper.NewProductMapper;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -22,9 +22,9 @@ import java.util.List;
 @AllArgsConstructor
 public class InternalProductService {
     private final ProductRepository productRepository;
-    private final InventoryItemRepository inventoryItemRepository;
+    private final InventoryService inventoryService;
     private final NewProductMapper newProductMapper;
-    private final InventoryMapper inventoryMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Saves a product with the details from the request in the database.
@@ -35,6 +35,8 @@ public class InternalProductService {
         Product newProduct = newProductMapper.mapToProduct(request);
         productRepository.save(newProduct);
         saveProductInventory(newProduct, request.inventory());
+        eventPublisher.publishEvent(new ProductChangedEvent(
+                newProduct.getId()));
         return newProduct;
     }
 
@@ -47,13 +49,12 @@ public class InternalProductService {
                                     AddInventoryRequest request) {
         Product product = getActiveProduct(productId);
         saveProductInventory(product, request.inventory());
+        eventPublisher.publishEvent(new StockChangedEvent(productId));
     }
 
     private void saveProductInventory(Product product,
                                       List<InventoryDto> inventoryDtoList) {
-        List<InventoryItem> inventory = inventoryMapper.mapToInventory(product,
-                inventoryDtoList);
-        inventoryItemRepository.saveAll(inventory);
+        inventoryService.addStock(product, inventoryDtoList);
     }
 
     private Product getProduct(Long id) {
@@ -88,6 +89,7 @@ public class InternalProductService {
                 product.getDescription(), request.description())) {
             product.setDescription(request.description().trim());
         }
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
     }
 
     private boolean canUpdateValue(String oldValue, String newValue) {
@@ -107,6 +109,7 @@ public class InternalProductService {
             throw new BadRequestException("Product is already archived");
         }
         product.setActive(false);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
     }
 
     /**
@@ -121,5 +124,6 @@ public class InternalProductService {
             throw new BadRequestException("Product is already active");
         }
         product.setActive(true);
+        eventPublisher.publishEvent(new ProductChangedEvent(productId));
     }
 }
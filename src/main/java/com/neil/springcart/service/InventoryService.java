@@ -0,0 +1,57 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.model.InventoryItem;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductSize;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages the stock of products. The implementation is selected with the
+ * {@code inventory.mode} property: {@code items} stores one row per unit and
+ * {@code ledger} stores an on-hand counter per product size.
+ */
+public interface InventoryService {
+    /**
+     * Adds stock for the given product.
+     * @param product The product the stock is for.
+     * @param inventory The stock to add for each size.
+     */
+    void addStock(Product product, List<InventoryDto> inventory);
+
+    /**
+     * Gets the available stock for each size of the given product.
+     * @param product The product.
+     * @return The available stock for each size of the product.
+     */
+    List<InventoryDto> getAvailableStock(Product product);
+
+    /**
+     * Gets the available stock for each size of the products with the given
+     * IDs with a single query.
+     * @param productIds The IDs of the products.
+     * @return The available stock for each size, keyed by product ID. Products
+     * without any stock are left out.
+     */
+    Map<Long, List<InventoryDto>> getAvailableStock(
+            Collection<Long> productIds);
+
+    /**
+     * Takes the given quantity of a product size out of the available stock.
+     * The stock is claimed atomically, so concurrent orders can't both take
+     * the same units, and stays claimed until the surrounding transaction
+     * commits or rolls back.
+     * @param product The product being ordered.
+     * @param size The size being ordered.
+     * @param quantity The number of units being ordered.
+     * @return The inventory items reserved for the order, or an empty list if
+     * units aren't stored individually.
+     * @throws com.neil.springcart.exception.BadRequestException If there is
+     * not enough stock.
+     */
+    List<InventoryItem> reserveStock(Product product, ProductSize size,
+                                     int quantity);
+}
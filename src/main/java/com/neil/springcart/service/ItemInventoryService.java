@@ -0,0 +1,70 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.exception.BadRequestException;
+import com.neil.springcart.model.InventoryItem;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.repository.InventoryItemRepository;
+import com.neil.springcart.util.mapper.InventoryMapper;
+import jakarta.transaction.Transactional;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores inventory as one {@link InventoryItem} row per unit.
+ */
+@Service
+@ConditionalOnProperty(name = "inventory.mode", havingValue = "items",
+        matchIfMissing = true)
+@AllArgsConstructor
+public class ItemInventoryService implements InventoryService {
+    private final InventoryItemRepository inventoryItemRepository;
+    private final InventoryMapper inventoryMapper;
+
+    @Override
+    public void addStock(Product product, List<InventoryDto> inventory) {
+        List<InventoryItem> items = inventoryMapper.mapToInventory(product,
+                inventory);
+        inventoryItemRepository.saveAll(items);
+    }
+
+    @Override
+    public List<InventoryDto> getAvailableStock(Product product) {
+        return inventoryMapper.mapToDtoList(inventoryItemRepository
+                .countAvailableByProductIdGroupBySize(product.getId()));
+    }
+
+    @Override
+    public Map<Long, List<InventoryDto>> getAvailableStock(
+            Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return inventoryMapper.mapToDtoMap(inventoryItemRepository
+                .countAvailableByProductIdsGroupBySize(productIds));
+    }
+
+    @Override
+    @Transactional
+    public List<InventoryItem> reserveStock(Product product, ProductSize size,
+                                            int quantity) {
+        // Items locked by concurrent orders are skipped, so if fewer than the
+        // requested quantity come back there isn't enough unclaimed stock
+        List<Long> reservedIds = inventoryItemRepository
+                .lockAvailableIdsByProductIdAndSize(product.getId(),
+                        size.name(), quantity);
+        if (reservedIds.size() < quantity) {
+            throw new BadRequestException("Not enough stock");
+        }
+        inventoryItemRepository.markAsSold(reservedIds);
+        return reservedIds.stream()
+                .map(inventoryItemRepository::getReferenceById)
+                .toList();
+    }
+}
@@ -0,0 +1,144 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.exception.BadRequestException;
+import com.neil.springcart.model.*;
+import com.neil.springcart.repository.ProductStockRepository;
+import com.neil.springcart.repository.StockMovementRepository;
+import com.neil.springcart.util.mapper.InventoryMapper;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores inventory as an on-hand counter for each product size, with every
+ * change recorded in an append-only movement log.
+ */
+@Service
+@ConditionalOnProperty(name = "inventory.mode", havingValue = "ledger")
+@Slf4j
+public class LedgerInventoryService implements InventoryService {
+    private final ProductStockRepository productStockRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final InventoryMapper inventoryMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public LedgerInventoryService(
+            ProductStockRepository productStockRepository,
+            StockMovementRepository stockMovementRepository,
+            InventoryMapper inventoryMapper,
+            PlatformTransactionManager transactionManager) {
+        this.productStockRepository = productStockRepository;
+        this.stockMovementRepository = stockMovementRepository;
+        this.inventoryMapper = inventoryMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Adds stock to the counter of each product size, creating the counter if
+     * the size has no stock yet. The stock is added in the caller's
+     * transaction if there is one, or in a transaction of its own otherwise.
+     * <p>
+     * If a concurrent restock creates the same counter first and there was no
+     * caller's transaction, the restock is retried once in a new transaction
+     * and adds to that counter instead. Inside a caller's transaction the
+     * clash is passed on, since that transaction is marked for rollback and a
+     * retry in it can't succeed.
+     */
+    @Override
+    public void addStock(Product product, List<InventoryDto> inventory) {
+        boolean outermost = !TransactionSynchronizationManager
+                .isActualTransactionActive();
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    saveStock(product, inventory));
+        } catch (DataIntegrityViolationException ex) {
+            if (!outermost) {
+                throw ex;
+            }
+            log.info("Stock counter for product {} was created concurrently, "
+                    + "retrying", product.getId());
+            transactionTemplate.executeWithoutResult(status ->
+                    saveStock(product, inventory));
+        }
+    }
+
+    private void saveStock(Product product, List<InventoryDto> inventory) {
+        List<StockMovement> movements = new ArrayList<>();
+        for (InventoryDto dto : inventory) {
+            int updated = productStockRepository.incrementStock(
+                    product.getId(), dto.size(), dto.stock());
+            if (updated == 0) {
+                // Flushed so a clash on the unique product size is thrown here
+                productStockRepository.saveAndFlush(buildProductStock(product,
+                        dto));
+            }
+            movements.add(buildStockMovement(product, dto.size(), dto.stock(),
+                    StockMovementReason.RESTOCK));
+        }
+        stockMovementRepository.saveAll(movements);
+    }
+
+    @Override
+    public List<InventoryDto> getAvailableStock(Product product) {
+        return inventoryMapper.mapToDtoList(productStockRepository
+                .findStockByProductId(product.getId()));
+    }
+
+    @Override
+    public Map<Long, List<InventoryDto>> getAvailableStock(
+            Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+        return inventoryMapper.mapToDtoMap(productStockRepository
+                .findStockByProductIdIn(productIds));
+    }
+
+    @Override
+    @Transactional
+    public List<InventoryItem> reserveStock(Product product, ProductSize size,
+                                            int quantity) {
+        // The counter is only decremented if enough stock is on hand, so a
+        // single conditional update both checks and takes the stock
+        int updated = productStockRepository.decrementStock(product.getId(),
+                size, quantity);
+        if (updated == 0) {
+            throw new BadRequestException("Not enough stock");
+        }
+        stockMovementRepository.save(buildStockMovement(product, size,
+                -quantity, StockMovementReason.ORDER));
+        return List.of();
+    }
+
+    private ProductStock buildProductStock(Product product, InventoryDto dto) {
+        return ProductStock.builder()
+                .product(product)
+                .size(dto.size())
+                .onHand(dto.stock())
+                .build();
+    }
+
+    private StockMovement buildStockMovement(Product product, ProductSize size,
+                                             int quantity,
+                                             StockMovementReason reason) {
+        return StockMovement.builder()
+                .product(product)
+                .size(size)
+                .quantity(quantity)
+                .reason(reason)
+                .date(new Date())
+                .build();
+    }
+}
@@ -1,33 +1,63 @@
 package com.neil.springcart.service;
 
+import com.neil.springcart.dto.CheckoutRequest;
 import com.neil.springcart.dto.CreateOrderRequest;
+import com.neil.springcart.dto.InventoryDto;
 import com.neil.springcart.dto.OrderLineItemDto;
 import com.neil.springcart.dto.OrderResponse;
 import com.neil.springcart.dto.OrderSummary;
+import com.neil.springcart.event.CartCheckedOutEvent;
+import com.neil.springcart.event.StockChangedEvent;
 import com.neil.springcart.exception.BadRequestException;
 import com.neil.springcart.model.*;
 import com.neil.springcart.repository.*;
 import com.neil.springcart.util.mapper.OrderMapper;
 import jakarta.transaction.Transactional;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-import java.util.stream.IntStream;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
-@AllArgsConstructor
 @Slf4j
 public class OrderService {
     private final OrderRepository orderRepository;
     private final OrderLineItemRepository orderLineItemRepository;
     private final CustomerRepository customerRepository;
     private final ProductRepository productRepository;
-    private final InventoryItemRepository inventoryItemRepository;
+    private final CartItemRepository cartItemRepository;
+    private final InventoryService inventoryService;
+    private final CartStore cartStore;
     private final OrderMapper orderMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderService(OrderRepository orderRepository,
+                        OrderLineItemRepository orderLineItemRepository,
+                        CustomerRepository customerRepository,
+                        ProductRepository productRepository,
+                        CartItemRepository cartItemRepository,
+                        InventoryService inventoryService,
+                        CartStore cartStore,
+                        OrderMapper orderMapper,
+                        ApplicationEventPublisher eventPublisher,
+                        PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.orderLineItemRepository = orderLineItemRepository;
+        this.customerRepository = customerRepository;
+        this.productRepository = productRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.inventoryService = inventoryService;
+        this.cartStore = cartStore;
+        this.orderMapper = orderMapper;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     /**
      * Creates an order in the database with the data from the request.
@@ -35,17 +65,80 @@ public class OrderService {
      *                and the shipping address.
      * @return An order summary for the newly created order.
      */
+    @Transactional
     public OrderSummary createOrder(CreateOrderRequest request) {
         Customer customer = getCustomerById(request.customerId());
-        Order order = buildOrder(customer, request.shippingAddress());
-        List<OrderLineItem> items = getOrderLineItems(request.items());
+        Map<Long, Product> products = getActiveProductsById(request.items()
+                .stream()
+                .map(OrderLineItemDto::productId)
+                .toList());
+        List<OrderLine> lines = request.items().stream()
+                .map(item -> new OrderLine(products.get(item.productId()),
+                        item.size(), item.quantity()))
+                .toList();
+        checkStock(lines);
 
+        Order order = buildOrder(customer, request.shippingAddress());
+        List<OrderLineItem> items = reserveOrderLineItems(lines);
         orderRepository.save(order);
         saveOrderLineItems(items, order);
         log.info("Order (ID: {}) created", order.getId());
         return orderMapper.mapToSummary(order);
     }
 
+    /**
+     * Creates an order from everything in the customer's cart and empties the
+     * cart. The cart is read once, and the stock is reserved, the order saved
+     * and the cart emptied in a single transaction, so either all of it
+     * happens or none of it does.
+     * <p>
+     * Cart changes still in the cart store are written first, so the order is
+     * placed from the cart the customer saw. They are written before the
+     * checkout transaction starts, since a flush from inside it would need a
+     * second connection while the checkout holds its own.
+     * @param request An object containing the customer ID and the shipping
+     *                address.
+     * @return An order summary for the newly created order.
+     * @throws BadRequestException If the cart is empty, a product in it is no
+     * longer active, or there is not enough stock for a line.
+     */
+    public OrderSummary createOrderFromCart(CheckoutRequest request) {
+        if (cartStore.isEnabled()) {
+            cartStore.flush(request.customerId());
+        }
+        return transactionTemplate.execute(status -> checkout(request));
+    }
+
+    private OrderSummary checkout(CheckoutRequest request) {
+        Customer customer = getCustomerById(request.customerId());
+        List<CartItem> cartItems = cartItemRepository.findAllByCustomerId(
+                customer.getId());
+        if (cartItems.isEmpty()) {
+            throw new BadRequestException("Cart is empty");
+        }
+        List<OrderLine> lines = cartItems.stream()
+                .map(item -> new OrderLine(item.getProduct(), item.getSize(),
+                        item.getQuantity()))
+                .toList();
+        for (OrderLine line : lines) {
+            checkActive(line.product());
+        }
+        checkStock(lines);
+        // Empty the cart before saving the order, since the delete clears the
+        // persistence context and would otherwise drop the unsaved order
+        Long cartId = cartItems.get(0).getCart().getId();
+        cartItemRepository.deleteAllByCartId(cartId);
+
+        Order order = buildOrder(customer, request.shippingAddress());
+        List<OrderLineItem> items = reserveOrderLineItems(lines);
+        orderRepository.save(order);
+        saveOrderLineItems(items, order);
+        eventPublisher.publishEvent(new CartCheckedOutEvent(customer.getId()));
+        log.info("Order (ID: {}) created from cart (ID: {})", order.getId(),
+                cartId);
+        return orderMapper.mapToSummary(order);
+    }
+
     private Customer getCustomerById(Long id) {
         return customerRepository.findById(id).orElseThrow(() ->
                 new BadRequestException("Invalid customer ID")
@@ -62,63 +155,101 @@ public class OrderService {
                 .build();
     }
 
-    private List<OrderLineItem> getOrderLineItems(
-            List<OrderLineItemDto> items) {
-        return items.stream()
-                .map(this::processOrderLineItem)
-                .flatMap(List::stream)
-                .toList();
-    }
-
-    private List<OrderLineItem> processOrderLineItem(OrderLineItemDto item) {
-        Product product = getActiveProductById(item.productId());
-        List<InventoryItem> inventory = getOrderItemInventory(item);
-
-        validateStockAvailability(item, inventory);
-
-        return IntStream.range(0, item.quantity())
-                .mapToObj(i -> createOrderLineItem(product, inventory.get(i)))
-                .toList();
+    /**
+     * Loads the products with the given IDs with a single query and checks
+     * they all exist and are active.
+     */
+    private Map<Long, Product> getActiveProductsById(List<Long> ids) {
+        List<Long> distinctIds = ids.stream().distinct().toList();
+        Map<Long, Product> products = productRepository.findAllById(
+                        distinctIds)
+                .stream()
+                .collect(Collectors.toMap(Product::getId,
+                        Function.identity()));
+        for (Long id : distinctIds) {
+            Product product = products.get(id);
+            if (product == null) {
+                throw new BadRequestException("Invalid product ID");
+            }
+            checkActive(product);
+        }
+        return products;
     }
 
-    private Product getActiveProductById(Long id) {
-        Product product = productRepository.findById(id).orElseThrow(() ->
-                new BadRequestException("Invalid product ID")
-        );
+    private void checkActive(Product product) {
         if (!product.isActive()) {
             throw new BadRequestException("Product is inactive");
         }
-        return product;
     }
 
-    private List<InventoryItem> getOrderItemInventory(OrderLineItemDto item) {
-        return inventoryItemRepository.findAllByProductIdAndSize(
-                item.productId(), item.size());
+    /**
+     * Checks there is enough stock for every line with a single query, so an
+     * order that can't be filled fails before any stock is claimed. Stock can
+     * still be taken by another order after the check, so reserving it checks
+     * again.
+     */
+    private void checkStock(List<OrderLine> lines) {
+        Map<Long, Map<ProductSize, Integer>> requested = new LinkedHashMap<>();
+        for (OrderLine line : lines) {
+            requested.computeIfAbsent(line.product().getId(),
+                            id -> new EnumMap<>(ProductSize.class))
+                    .merge(line.size(), line.quantity(), Integer::sum);
+        }
+        Map<Long, List<InventoryDto>> stock = inventoryService
+                .getAvailableStock(List.copyOf(requested.keySet()));
+        requested.forEach((productId, sizes) -> {
+            Map<ProductSize, Integer> available = new EnumMap<>(
+                    ProductSize.class);
+            for (InventoryDto dto : stock.getOrDefault(productId, List.of())) {
+                available.put(dto.size(), dto.stock());
+            }
+            sizes.forEach((size, quantity) -> {
+                if (available.getOrDefault(size, 0) < quantity) {
+                    throw new BadRequestException("Not enough stock");
+                }
+            });
+        });
     }
 
-    private void validateStockAvailability(OrderLineItemDto item,
-                                           List<InventoryItem> inventory) {
-        if (inventory.size() < item.quantity()) {
-            throw new BadRequestException("Not enough stock");
+    /**
+     * Reserves the stock for the lines, ordering lines for the same product
+     * size as one line. The stock is reserved by product ID and then size,
+     * whatever order the lines are in, so two orders for overlapping product
+     * sizes lock the stock rows in the same order and can't deadlock.
+     */
+    private List<OrderLineItem> reserveOrderLineItems(List<OrderLine> lines) {
+        Map<Long, Map<ProductSize, Integer>> quantities = new TreeMap<>();
+        Map<Long, Product> products = new HashMap<>();
+        for (OrderLine line : lines) {
+            products.put(line.product().getId(), line.product());
+            quantities.computeIfAbsent(line.product().getId(),
+                            id -> new EnumMap<>(ProductSize.class))
+                    .merge(line.size(), line.quantity(), Integer::sum);
         }
+        List<OrderLineItem> items = new ArrayList<>();
+        quantities.forEach((productId, sizes) ->
+                sizes.forEach((size, quantity) -> items.add(
+                        reserveOrderLineItem(products.get(productId), size,
+                                quantity))));
+        return items;
     }
 
-    private OrderLineItem createOrderLineItem(Product product,
-                                              InventoryItem inventoryItem) {
-        updateInventoryItemStatus(inventoryItem);
+    private OrderLineItem reserveOrderLineItem(Product product,
+                                               ProductSize size,
+                                               int quantity) {
+        List<InventoryItem> inventory = inventoryService.reserveStock(product,
+                size, quantity);
+        eventPublisher.publishEvent(new StockChangedEvent(product.getId()));
+
         return OrderLineItem.builder()
                 .product(product)
-                .size(inventoryItem.getSize())
-                .inventoryItem(inventoryItem)
-                .isReturned(false)
+                .size(size)
+                .quantity(quantity)
+                .inventoryItems(new ArrayList<>(inventory))
+                .returnedQuantity(0)
                 .build();
     }
 
-    @Transactional
-    private void updateInventoryItemStatus(InventoryItem inventoryItem) {
-        inventoryItem.setSold(true);
-    }
-
     private void saveOrderLineItems(List<OrderLineItem> items, Order order) {
         items.forEach(item -> item.setOrder(order));
         orderLineItemRepository.saveAll(items);
@@ -156,4 +287,10 @@ public class OrderService {
             new BadRequestException("Order with ID " + id + " does not exist")
         );
     }
+
+    /**
+     * A product size and the quantity of it being ordered.
+     */
+    private record OrderLine(Product product, ProductSize size,
+                             int quantity) {}
 }
@@ -0,0 +1,162 @@
+package com.neil.springcart.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.ProductExport;
+import com.neil.springcart.dto.ProductExportFormat;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.util.CsvWriter;
+import com.neil.springcart.util.mapper.ProductMapper;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Exports every product with its available stock per size. Products are
+ * streamed from the database and written out a chunk at a time, with the stock
+ * for each chunk looked up in one query, so memory use doesn't grow with the
+ * size of the catalogue.
+ */
+@Service
+@Slf4j
+public class ProductExportService {
+    static final List<String> CSV_COLUMNS = List.of("id", "sku", "brand",
+            "name", "description", "category", "gender", "price", "active",
+            "inventory");
+
+    private final ProductRepository productRepository;
+    private final InventoryService inventoryService;
+    private final ProductMapper productMapper;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public ProductExportService(
+            ProductRepository productRepository,
+            InventoryService inventoryService,
+            ProductMapper productMapper,
+            ObjectMapper objectMapper,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            @Value("${catalogue.export.chunk-size:500}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.inventoryService = inventoryService;
+        this.productMapper = productMapper;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Writes every product to the given output stream in the given format,
+     * flushing after each chunk of products.
+     * @param format NDJSON for one JSON product per line, or CSV.
+     * @param outputStream The stream to write to.
+     * @return The number of products exported.
+     */
+    public long exportProducts(ProductExportFormat format,
+                               OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream,
+                StandardCharsets.UTF_8));
+        ExportWriter exportWriter = format == ProductExportFormat.CSV
+                ? createCsvWriter(writer)
+                : product -> {
+                    writer.write(objectMapper.writeValueAsString(product));
+                    writer.write('\n');
+                };
+        try {
+            Long exported = transactionTemplate.execute(status ->
+                    writeProducts(exportWriter, writer));
+            writer.flush();
+            log.info("Exported {} products as {}", exported, format);
+            return exported == null ? 0 : exported;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private ExportWriter createCsvWriter(Writer writer) throws IOException {
+        CsvWriter csvWriter = new CsvWriter(writer);
+        csvWriter.writeRecord(CSV_COLUMNS);
+        return product -> csvWriter.writeRecord(List.of(
+                String.valueOf(product.id()),
+                String.valueOf(product.sku()),
+                product.brand(),
+                product.name(),
+                product.description(),
+                product.category().name(),
+                product.gender().name(),
+                String.valueOf(product.price()),
+                String.valueOf(product.active()),
+                product.inventory().stream()
+                        .map(dto -> dto.size() + ":" + dto.stock())
+                        .collect(Collectors.joining("|"))
+        ));
+    }
+
+    private long writeProducts(ExportWriter exportWriter, Writer writer) {
+        long exported = 0;
+        List<Product> chunk = new ArrayList<>(chunkSize);
+        try (Stream<Product> products = productRepository
+                .streamAllOrderById()) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() >= chunkSize) {
+                    exported += writeChunk(chunk, exportWriter, writer);
+                }
+            }
+            exported += writeChunk(chunk, exportWriter, writer);
+        }
+        return exported;
+    }
+
+    private int writeChunk(List<Product> chunk, ExportWriter exportWriter,
+                           Writer writer) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        Map<Long, List<InventoryDto>> stock = inventoryService
+                .getAvailableStock(chunk.stream().map(Product::getId).toList());
+        try {
+            for (Product product : chunk) {
+                exportWriter.write(productMapper.mapToExport(product,
+                        stock.getOrDefault(product.getId(), List.of())));
+            }
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        int written = chunk.size();
+        chunk.clear();
+        // Detach the written products so the persistence context stays small
+        entityManager.clear();
+        return written;
+    }
+
+    @FunctionalInterface
+    private interface ExportWriter {
+        void write(ProductExport product) throws IOException;
+    }
+}
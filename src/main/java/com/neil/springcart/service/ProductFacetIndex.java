@@ -0,0 +1,516 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.FacetedProductPage;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.ProductFacets;
+import com.neil.springcart.dto.ProductFilter;
+import com.neil.springcart.dto.ProductResponse;
+import com.neil.springcart.event.CatalogueImportedEvent;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.event.StockChangedEvent;
+import com.neil.springcart.model.*;
+import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.repository.ProductSnapshot;
+import com.neil.springcart.util.mapper.ProductMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory index of the active products by facet value. Every product is
+ * given a slot, and each facet value has a bit set of the slots of the
+ * products with that value, so a filter is evaluated with a few bitwise ANDs
+ * and ORs instead of a query per combination of filters.
+ * <p>
+ * The index is built when the application starts and kept up to date as
+ * products and their stock change. Changes are applied one at a time, each
+ * reading the product as it is when its turn comes, and changes made while
+ * the index is being rebuilt are applied once the new index is in place.
+ * <p>
+ * Every order changes stock, so stock changes are only noted when they are
+ * published and applied in the background every stock refresh interval. Each
+ * refresh reads the stock of all the products changed since the last one with
+ * a single query and only updates their sizes, so a product ordered many times
+ * in an interval is read once and orders don't wait on the index.
+ */
+@Component
+@Slf4j
+public class ProductFacetIndex {
+    private static final int STOCK_BATCH_SIZE = 500;
+
+    private final ProductRepository productRepository;
+    private final InventoryService inventoryService;
+    private final ProductMapper productMapper;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held while a change is read and applied, or while a rebuild starts and
+    // finishes, so changes are applied in the order they are read
+    private final Lock updateLock = new ReentrantLock();
+    private Facets facets = new Facets();
+    // The products changed during a rebuild, or null if there isn't one
+    private Set<Long> pendingChanges;
+    // The products whose stock changed since the last stock refresh
+    private final Set<Long> staleStock = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService stockRefresher;
+
+    /**
+     * Creates the index and starts refreshing stock in the background.
+     * @param stockRefreshInterval How often stock changes are applied. Zero
+     *                             applies each change as it is published.
+     */
+    public ProductFacetIndex(
+            ProductRepository productRepository,
+            InventoryService inventoryService,
+            ProductMapper productMapper,
+            @Value("${catalogue.facet-index.stock-refresh-interval:PT1S}")
+            Duration stockRefreshInterval) {
+        this.productRepository = productRepository;
+        this.inventoryService = inventoryService;
+        this.productMapper = productMapper;
+        if (stockRefreshInterval.isZero()) {
+            stockRefresher = null;
+            return;
+        }
+        stockRefresher = Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "facet-index-stock-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        long intervalMillis = stockRefreshInterval.toMillis();
+        stockRefresher.scheduleWithFixedDelay(this::refreshStockQuietly,
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background stock refreshes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (stockRefresher != null) {
+            stockRefresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Rebuilds the index from every active product in the database and its
+     * available stock.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        updateLock.lock();
+        try {
+            pendingChanges = new HashSet<>();
+        } finally {
+            updateLock.unlock();
+        }
+        Facets newFacets;
+        try {
+            newFacets = buildFacets();
+        } catch (RuntimeException ex) {
+            // The changes made meanwhile still have to reach the old index
+            finishRebuild(null);
+            throw ex;
+        }
+        finishRebuild(newFacets);
+    }
+
+    private Facets buildFacets() {
+        Facets newFacets = new Facets();
+        List<Product> products = productRepository.findActiveProducts();
+        for (int i = 0; i < products.size(); i += STOCK_BATCH_SIZE) {
+            List<Product> batch = products.subList(i,
+                    Math.min(i + STOCK_BATCH_SIZE, products.size()));
+            Map<Long, List<InventoryDto>> stock = inventoryService
+                    .getAvailableStock(batch.stream()
+                            .map(Product::getId)
+                            .toList());
+            for (Product product : batch) {
+                newFacets.add(productMapper.mapToResponse(product),
+                        getSizesInStock(stock.getOrDefault(product.getId(),
+                                List.of())));
+            }
+        }
+        log.info("Facet index built with {} products", products.size());
+        return newFacets;
+    }
+
+    /**
+     * Swaps in the rebuilt index, if there is one, and then applies the
+     * changes made while it was being built.
+     */
+    private void finishRebuild(Facets newFacets) {
+        updateLock.lock();
+        try {
+            if (newFacets != null) {
+                lock.writeLock().lock();
+                try {
+                    facets = newFacets;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            // The rebuild may have read the products before these changes
+            Set<Long> changes = pendingChanges;
+            pendingChanges = null;
+            changes.forEach(this::refresh);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index once a bulk import has finished, rather than
+     * re-indexing each product it created.
+     * @param event The catalogue imported event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleCatalogueImported(CatalogueImportedEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Re-indexes a product once the transaction that changed it has
+     * committed. Archived products are removed from the index.
+     * @param event The product changed event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleProductChanged(ProductChangedEvent event) {
+        applyChange(event.productId());
+    }
+
+    /**
+     * Notes that a product's stock changed once the transaction that changed
+     * it has committed, so its sizes in stock are updated by the next stock
+     * refresh.
+     * @param event The stock changed event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleStockChanged(StockChangedEvent event) {
+        if (stockRefresher == null) {
+            applyChange(event.productId());
+        } else {
+            staleStock.add(event.productId());
+        }
+    }
+
+    /**
+     * Reads the stock of every product whose stock changed since the last
+     * refresh with a single query and updates their sizes in stock.
+     * @throws RuntimeException If the stock could not be read. The products
+     * are kept and refreshed again next time.
+     */
+    public void refreshStock() {
+        List<Long> productIds = new ArrayList<>();
+        Iterator<Long> stale = staleStock.iterator();
+        while (stale.hasNext()) {
+            productIds.add(stale.next());
+            stale.remove();
+        }
+        if (productIds.isEmpty()) {
+            return;
+        }
+        updateLock.lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.addAll(productIds);
+                return;
+            }
+            Map<Long, List<InventoryDto>> stock = inventoryService
+                    .getAvailableStock(productIds);
+            lock.writeLock().lock();
+            try {
+                for (Long productId : productIds) {
+                    facets.setSizes(productId, getSizesInStock(
+                            stock.getOrDefault(productId, List.of())));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (RuntimeException ex) {
+            staleStock.addAll(productIds);
+            throw ex;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void refreshStockQuietly() {
+        try {
+            refreshStock();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to refresh stock in the facet index, retrying "
+                    + "on the next refresh", ex);
+        }
+    }
+
+    private void applyChange(Long productId) {
+        updateLock.lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(productId);
+            } else {
+                refresh(productId);
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the product and its stock and replaces it in the index. Must be
+     * called while holding the update lock. Both are read as projections, as
+     * the transaction that published the event may have left older copies of
+     * them loaded.
+     */
+    private void refresh(Long productId) {
+        Optional<IndexedProduct> product = productRepository
+                .findSnapshotById(productId)
+                .filter(ProductSnapshot::isActive)
+                .map(ProductSnapshot::toProduct)
+                .map(p -> new IndexedProduct(productMapper.mapToResponse(p),
+                        getSizesInStock(inventoryService
+                                .getAvailableStock(p))));
+        lock.writeLock().lock();
+        try {
+            facets.remove(productId);
+            product.ifPresent(p -> facets.add(p.response(), p.sizes()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Set<ProductSize> getSizesInStock(List<InventoryDto> inventory) {
+        Set<ProductSize> sizes = EnumSet.noneOf(ProductSize.class);
+        for (InventoryDto dto : inventory) {
+            if (dto.stock() > 0) {
+                sizes.add(dto.size());
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Gets a page of the products matching the filter, ordered by ID, along
+     * with the facet counts for the filter.
+     * @param filter The facet values to filter by.
+     * @param afterId Only products with a greater ID are included in the page.
+     * @param limit The maximum number of products on the page.
+     * @return The page of products and the facet counts.
+     */
+    public FacetedProductPage query(ProductFilter filter, long afterId,
+                                    int limit) {
+        lock.readLock().lock();
+        try {
+            return facets.query(filter, afterId, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static class Facets {
+        private final Map<Long, Integer> slots = new HashMap<>();
+        private final List<IndexedProduct> products = new ArrayList<>();
+        private final BitSet live = new BitSet();
+        private final BitSet free = new BitSet();
+        private final Map<ProductGender, BitSet> genders =
+                new EnumMap<>(ProductGender.class);
+        private final Map<ProductCategory, BitSet> categories =
+                new EnumMap<>(ProductCategory.class);
+        private final Map<String, BitSet> brands = new TreeMap<>();
+        private final Map<PriceBand, BitSet> priceBands =
+                new EnumMap<>(PriceBand.class);
+        private final Map<ProductSize, BitSet> sizes =
+                new EnumMap<>(ProductSize.class);
+
+        void add(ProductResponse product, Set<ProductSize> sizesInStock) {
+            int slot = free.isEmpty() ? products.size() : free.nextSetBit(0);
+            if (slot == products.size()) {
+                products.add(null);
+            }
+            free.clear(slot);
+            IndexedProduct indexed = new IndexedProduct(product,
+                    Set.copyOf(sizesInStock));
+            products.set(slot, indexed);
+            slots.put(product.id(), slot);
+            live.set(slot);
+            indexed.forEachValue(this, set -> set.set(slot));
+        }
+
+        /**
+         * Replaces the sizes in stock of an indexed product. Products that
+         * aren't indexed are left out.
+         */
+        void setSizes(Long productId, Set<ProductSize> sizesInStock) {
+            Integer slot = slots.get(productId);
+            if (slot == null) {
+                return;
+            }
+            IndexedProduct indexed = products.get(slot);
+            for (ProductSize size : indexed.sizes()) {
+                bitSet(sizes, size).clear(slot);
+            }
+            for (ProductSize size : sizesInStock) {
+                bitSet(sizes, size).set(slot);
+            }
+            products.set(slot, new IndexedProduct(indexed.response(),
+                    Set.copyOf(sizesInStock)));
+        }
+
+        void remove(Long productId) {
+            Integer slot = slots.remove(productId);
+            if (slot == null) {
+                return;
+            }
+            IndexedProduct indexed = products.set(slot, null);
+            live.clear(slot);
+            free.set(slot);
+            indexed.forEachValue(this, set -> set.clear(slot));
+            // Brands come and go, so don't keep empty ones around as facets
+            String brand = indexed.response().brand();
+            if (brands.get(brand).isEmpty()) {
+                brands.remove(brand);
+            }
+        }
+
+        FacetedProductPage query(ProductFilter filter, long afterId,
+                                 int limit) {
+            Set<ProductGender> genderValues = EnumSet.noneOf(
+                    ProductGender.class);
+            genderValues.addAll(filter.genders());
+            if (!genderValues.isEmpty()) {
+                genderValues.add(ProductGender.UNISEX);
+            }
+            List<BitSet> filters = Arrays.asList(
+                    union(genders, genderValues),
+                    union(categories, filter.categories()),
+                    union(brands, filter.brands()),
+                    union(priceBands, filter.priceBands()),
+                    union(sizes, filter.sizes()));
+            BitSet matches = intersect(filters, -1);
+            // Get one extra product to find out if there is a next page
+            List<ProductResponse> items = getPage(matches, afterId, limit + 1);
+            boolean hasNextPage = items.size() > limit;
+            List<ProductResponse> page = hasNextPage
+                    ? items.subList(0, limit)
+                    : items;
+            return FacetedProductPage.builder()
+                    .items(page)
+                    .nextCursor(hasNextPage ? page.get(limit - 1).id() : null)
+                    .total(matches.cardinality())
+                    .facets(ProductFacets.builder()
+                            .gender(count(genders, intersect(filters, 0)))
+                            .category(count(categories,
+                                    intersect(filters, 1)))
+                            .brand(count(brands, intersect(filters, 2)))
+                            .priceBand(count(priceBands,
+                                    intersect(filters, 3)))
+                            .size(count(sizes, intersect(filters, 4)))
+                            .build())
+                    .build();
+        }
+
+        /**
+         * Gets the products in the given slots with an ID greater than the
+         * given ID, ordered by ID.
+         */
+        private List<ProductResponse> getPage(BitSet matches, long afterId,
+                                              int limit) {
+            long[] ids = new long[matches.cardinality()];
+            int count = 0;
+            for (int slot = matches.nextSetBit(0); slot >= 0;
+                 slot = matches.nextSetBit(slot + 1)) {
+                long id = products.get(slot).response().id();
+                if (id > afterId) {
+                    ids[count++] = id;
+                }
+            }
+            Arrays.sort(ids, 0, count);
+            List<ProductResponse> page = new ArrayList<>();
+            for (int i = 0; i < Math.min(count, limit); i++) {
+                page.add(products.get(slots.get(ids[i])).response());
+            }
+            return page;
+        }
+
+        private <K> BitSet union(Map<K, BitSet> index, Set<K> values) {
+            if (values.isEmpty()) {
+                return null;
+            }
+            BitSet union = new BitSet();
+            for (K value : values) {
+                BitSet set = index.get(value);
+                if (set != null) {
+                    union.or(set);
+                }
+            }
+            return union;
+        }
+
+        /**
+         * Intersects the live products with every filter except the one at
+         * the given index, which is left out so its own facet can be counted.
+         */
+        private BitSet intersect(List<BitSet> filters, int excluded) {
+            BitSet result = (BitSet) live.clone();
+            for (int i = 0; i < filters.size(); i++) {
+                if (i != excluded && filters.get(i) != null) {
+                    result.and(filters.get(i));
+                }
+            }
+            return result;
+        }
+
+        private <K> Map<K, Integer> count(Map<K, BitSet> index, BitSet base) {
+            Map<K, Integer> counts = new LinkedHashMap<>();
+            index.forEach((value, set) -> {
+                BitSet matching = (BitSet) set.clone();
+                matching.and(base);
+                int count = matching.cardinality();
+                if (count > 0) {
+                    counts.put(value, count);
+                }
+            });
+            return counts;
+        }
+
+        private static <K> BitSet bitSet(Map<K, BitSet> index, K value) {
+            return index.computeIfAbsent(value, key -> new BitSet());
+        }
+    }
+
+    private record IndexedProduct(ProductResponse response,
+                                  Set<ProductSize> sizes) {
+        /**
+         * Applies the given action to the bit set of every facet value of the
+         * product.
+         */
+        void forEachValue(Facets facets, Consumer<BitSet> action) {
+            action.accept(Facets.bitSet(facets.genders, response.gender()));
+            action.accept(Facets.bitSet(facets.categories,
+                    response.category()));
+            action.accept(Facets.bitSet(facets.brands, response.brand()));
+            action.accept(Facets.bitSet(facets.priceBands,
+                    PriceBand.of(response.price())));
+            for (ProductSize size : sizes) {
+                action.accept(Facets.bitSet(facets.sizes, size));
+            }
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.neil.springcart.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.NewProductRequest;
+import com.neil.springcart.dto.ProductImportError;
+import com.neil.springcart.dto.ProductImportProgress;
+import com.neil.springcart.dto.ProductImportReport;
+import com.neil.springcart.event.CatalogueImportedEvent;
+import com.neil.springcart.exception.BadRequestException;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.util.CsvReader;
+import com.neil.springcart.util.mapper.NewProductMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Imports products and their inventory in bulk from a CSV or NDJSON upload.
+ * The upload is read one row at a time and valid rows are saved in chunks,
+ * each in its own transaction, so a large catalogue never has to fit in memory
+ * and one bad row doesn't undo the rest of the import. If a chunk fails, its
+ * rows are saved again one at a time to find the rows that caused it.
+ * <p>
+ * Running imports can be followed with {@link #getRunningImports()}. Once an
+ * import ends a single {@link CatalogueImportedEvent} is published, so the
+ * caches and indexes are refreshed once rather than for every product.
+ */
+@Service
+@Slf4j
+public class ProductImportService {
+    static final List<String> CSV_COLUMNS = List.of("brand", "name",
+            "description", "category", "gender", "price", "inventory");
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final ProductRepository productRepository;
+    private final InventoryService inventoryService;
+    private final NewProductMapper newProductMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Map<UUID, ImportRun> runningImports =
+            new ConcurrentHashMap<>();
+
+    public ProductImportService(
+            ProductRepository productRepository,
+            InventoryService inventoryService,
+            NewProductMapper newProductMapper,
+            ApplicationEventPublisher eventPublisher,
+            Validator validator,
+            ObjectMapper objectMapper,
+            EntityManager entityManager,
+            PlatformTransactionManager transactionManager,
+            @Value("${catalogue.import.chunk-size:500}") int chunkSize) {
+        this.productRepository = productRepository;
+        this.inventoryService = inventoryService;
+        this.newProductMapper = newProductMapper;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports products from a CSV upload. The first row must be a header with
+     * the columns brand, name, description, category, gender, price and
+     * inventory, where inventory is a list of sizes and stock such as
+     * {@code S:5|M:10}.
+     * @param inputStream The upload.
+     * @return A report of the rows imported and the rows that failed.
+     * @throws BadRequestException If the header is missing a column.
+     */
+    public ProductImportReport importCsv(InputStream inputStream)
+            throws IOException {
+        CsvReader csvReader = new CsvReader(createReader(inputStream));
+        List<String> header = csvReader.readRecord();
+        if (header == null) {
+            throw new BadRequestException("CSV file is empty");
+        }
+        Map<String, Integer> columns = mapCsvColumns(header);
+
+        ImportRun run = startImport();
+        try {
+            long row = 0;
+            List<String> record;
+            while ((record = csvReader.readRecord()) != null) {
+                row++;
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                try {
+                    run.addRow(row, parseCsvRecord(record, columns));
+                } catch (IllegalArgumentException ex) {
+                    run.addError(row, ex.getMessage());
+                }
+            }
+            return run.finish();
+        } finally {
+            endImport(run);
+        }
+    }
+
+    /**
+     * Imports products from an NDJSON upload, where each line is a product in
+     * the same format as a new product request.
+     * @param inputStream The upload.
+     * @return A report of the rows imported and the rows that failed.
+     */
+    public ProductImportReport importNdjson(InputStream inputStream)
+            throws IOException {
+        BufferedReader reader = createReader(inputStream);
+        ImportRun run = startImport();
+        try {
+            long row = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                row++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    run.addRow(row, objectMapper.readValue(line,
+                            NewProductRequest.class));
+                } catch (JsonProcessingException ex) {
+                    run.addError(row, "Invalid JSON: "
+                            + ex.getOriginalMessage());
+                }
+            }
+            return run.finish();
+        } finally {
+            endImport(run);
+        }
+    }
+
+    /**
+     * Gets how far each running import has got.
+     * @return The progress of the running imports, oldest first.
+     */
+    public List<ProductImportProgress> getRunningImports() {
+        return runningImports.values().stream()
+                .map(ImportRun::getProgress)
+                .sorted(Comparator.comparing(ProductImportProgress::startedAt))
+                .toList();
+    }
+
+    private ImportRun startImport() {
+        ImportRun run = new ImportRun();
+        runningImports.put(run.id, run);
+        return run;
+    }
+
+    /**
+     * Stops tracking the import and, if it saved any products, publishes a
+     * single event for all of them. Runs even if the import failed part way,
+     * as the chunks saved before the failure are committed.
+     */
+    private void endImport(ImportRun run) {
+        runningImports.remove(run.id);
+        if (run.productsCreated == 0) {
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(new CatalogueImportedEvent(
+                    run.productsCreated));
+        } catch (RuntimeException ex) {
+            log.error("Failed to refresh the catalogue after importing {} "
+                    + "products", run.productsCreated, ex);
+        }
+    }
+
+    private BufferedReader createReader(InputStream inputStream) {
+        return new BufferedReader(new InputStreamReader(inputStream,
+                StandardCharsets.UTF_8));
+    }
+
+    private Map<String, Integer> mapCsvColumns(List<String> header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String column : CSV_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new BadRequestException("Missing CSV column: " + column);
+            }
+        }
+        return columns;
+    }
+
+    private NewProductRequest parseCsvRecord(List<String> record,
+                                             Map<String, Integer> columns) {
+        if (record.size() < columns.size()) {
+            throw new IllegalArgumentException("Missing fields");
+        }
+        return NewProductRequest.builder()
+                .brand(getField(record, columns, "brand"))
+                .name(getField(record, columns, "name"))
+                .description(getField(record, columns, "description"))
+                .category(parseEnum(ProductCategory.class,
+                        getField(record, columns, "category"),
+                        "Invalid product category"))
+                .gender(parseEnum(ProductGender.class,
+                        getField(record, columns, "gender"),
+                        "Invalid product gender"))
+                .price(parsePrice(getField(record, columns, "price")))
+                .inventory(parseInventory(getField(record, columns,
+                        "inventory")))
+                .build();
+    }
+
+    private String getField(List<String> record, Map<String, Integer> columns,
+                            String column) {
+        return record.get(columns.get(column)).trim();
+    }
+
+    private <E extends Enum<E>> E parseEnum(Class<E> type, String value,
+                                            String message) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private double parsePrice(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid price");
+        }
+    }
+
+    private List<InventoryDto> parseInventory(String value) {
+        List<InventoryDto> inventory = new ArrayList<>();
+        if (value.isEmpty()) {
+            return inventory;
+        }
+        for (String entry : value.split("\\|")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid inventory");
+            }
+            ProductSize size = parseEnum(ProductSize.class, parts[0].trim(),
+                    "Invalid product size");
+            try {
+                inventory.add(new InventoryDto(size,
+                        Integer.parseInt(parts[1].trim())));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid stock");
+            }
+        }
+        return inventory;
+    }
+
+    /**
+     * Validates a row against the same rules as a new product request.
+     * @param request The product in the row.
+     * @return The first validation error, or null if the row is valid.
+     */
+    private String validate(NewProductRequest request) {
+        Set<ConstraintViolation<NewProductRequest>> violations = validator
+                .validate(request);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        for (InventoryDto inventoryDto : request.inventory()) {
+            if (inventoryDto.size() == null) {
+                return "Invalid product size";
+            }
+            if (inventoryDto.stock() < 0) {
+                return "Invalid stock";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps track of one import, saving valid rows a chunk at a time.
+     */
+    private class ImportRun {
+        private final UUID id = UUID.randomUUID();
+        private final Date startedAt = new Date();
+        private final List<ImportRow> chunk = new ArrayList<>();
+        private final List<ProductImportError> errors = new ArrayList<>();
+        // Only written by the importing thread, but read by status requests
+        private volatile long rowsRead;
+        private volatile long productsCreated;
+        private volatile long unitsAdded;
+        private volatile long rowsFailed;
+
+        void addRow(long row, NewProductRequest request) {
+            rowsRead++;
+            String error = validate(request);
+            if (error != null) {
+                recordError(row, error);
+                return;
+            }
+            chunk.add(new ImportRow(row, request));
+            if (chunk.size() >= chunkSize) {
+                saveChunk();
+            }
+        }
+
+        void addError(long row, String message) {
+            rowsRead++;
+            recordError(row, message);
+        }
+
+        ProductImportReport finish() {
+            saveChunk();
+            log.info("Product import finished: {} rows read, {} products "
+                    + "created, {} rows failed", rowsRead, productsCreated,
+                    rowsFailed);
+            return ProductImportReport.builder()
+                    .rowsRead(rowsRead)
+                    .productsCreated(productsCreated)
+                    .unitsAdded(unitsAdded)
+                    .rowsFailed(rowsFailed)
+                    .errors(errors)
+                    .build();
+        }
+
+        ProductImportProgress getProgress() {
+            return ProductImportProgress.builder()
+                    .id(id)
+                    .startedAt(startedAt)
+                    .rowsRead(rowsRead)
+                    .productsCreated(productsCreated)
+                    .unitsAdded(unitsAdded)
+                    .rowsFailed(rowsFailed)
+                    .build();
+        }
+
+        private void recordError(long row, String message) {
+            rowsFailed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ProductImportError(row, message));
+            }
+        }
+
+        private void saveChunk() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                save(chunk);
+                chunk.forEach(this::recordCreated);
+            } catch (RuntimeException ex) {
+                log.error("Product import chunk failed, saving its rows one "
+                        + "at a time: {}", ex.getMessage());
+                chunk.forEach(this::saveRow);
+            }
+            chunk.clear();
+            log.info("Product import progress: {} rows read, {} products "
+                    + "created, {} rows failed", rowsRead, productsCreated,
+                    rowsFailed);
+        }
+
+        private void saveRow(ImportRow row) {
+            try {
+                save(List.of(row));
+                recordCreated(row);
+            } catch (RuntimeException ex) {
+                recordError(row.row(), NestedExceptionUtils
+                        .getMostSpecificCause(ex).getMessage());
+            }
+        }
+
+        /**
+         * Saves the rows in one transaction, flushing so any constraint
+         * violation fails the transaction here rather than at commit.
+         */
+        private void save(List<ImportRow> rows) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    rows.forEach(row -> saveProduct(row.request()));
+                    entityManager.flush();
+                });
+            } finally {
+                // The request's persistence context outlives the transaction,
+                // so detach the saved products to keep it small
+                entityManager.clear();
+            }
+        }
+
+        private void recordCreated(ImportRow row) {
+            productsCreated++;
+            unitsAdded += row.request().inventory().stream()
+                    .mapToLong(InventoryDto::stock)
+                    .sum();
+        }
+    }
+
+    private void saveProduct(NewProductRequest request) {
+        Product product = newProductMapper.mapToProduct(request);
+        productRepository.save(product);
+        inventoryService.addStock(product, request.inventory());
+    }
+
+    private record ImportRow(long row, NewProductRequest request) {}
+}
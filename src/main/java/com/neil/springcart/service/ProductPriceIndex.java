@@ -0,0 +1,284 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.ProductResponse;
+import com.neil.springcart.dto.ProductSort;
+import com.neil.springcart.event.CatalogueImportedEvent;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.repository.ProductSnapshot;
+import com.neil.springcart.util.mapper.ProductMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory index of the active products sorted by price and then ID, held
+ * as parallel primitive arrays. A price range is found with two binary
+ * searches and a page is read straight out of the arrays, so price sorted
+ * listings don't need a database query.
+ * <p>
+ * The index is built when the application starts and a product is moved to
+ * its new position whenever it changes. Changes are applied one at a time,
+ * each reading the product as it is when its turn comes, and changes made
+ * while the index is being rebuilt are applied once the new index is in
+ * place. Until the index has been built,
+ * {@link #getPage} returns an empty optional so callers can fall back to the
+ * database.
+ */
+@Component
+@Slf4j
+public class ProductPriceIndex {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held while a change is read and applied, or while a rebuild starts and
+    // finishes, so changes are applied in the order they are read
+    private final Lock updateLock = new ReentrantLock();
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int size;
+    private Map<Long, ProductResponse> products = new HashMap<>();
+    private boolean built;
+    // The products changed during a rebuild, or null if there isn't one
+    private Set<Long> pendingChanges;
+
+    public ProductPriceIndex(ProductRepository productRepository,
+                             ProductMapper productMapper) {
+        this.productRepository = productRepository;
+        this.productMapper = productMapper;
+    }
+
+    /**
+     * Rebuilds the index from every active product in the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        updateLock.lock();
+        try {
+            pendingChanges = new HashSet<>();
+        } finally {
+            updateLock.unlock();
+        }
+        List<Product> activeProducts;
+        try {
+            activeProducts = productRepository.findActiveProducts();
+        } catch (RuntimeException ex) {
+            // The changes made meanwhile still have to reach the old index
+            finishRebuild(null);
+            throw ex;
+        }
+        List<ProductResponse> sorted = activeProducts.stream()
+                .map(productMapper::mapToResponse)
+                .sorted(Comparator.comparingDouble(ProductResponse::price)
+                        .thenComparing(ProductResponse::id))
+                .toList();
+        int capacity = Math.max(INITIAL_CAPACITY, sorted.size() * 2);
+        double[] newPrices = new double[capacity];
+        long[] newIds = new long[capacity];
+        Map<Long, ProductResponse> newProducts = new HashMap<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            ProductResponse product = sorted.get(i);
+            newPrices[i] = product.price();
+            newIds[i] = product.id();
+            newProducts.put(product.id(), product);
+        }
+        finishRebuild(() -> {
+            prices = newPrices;
+            ids = newIds;
+            size = sorted.size();
+            products = newProducts;
+            built = true;
+        });
+        log.info("Price index built with {} products", sorted.size());
+    }
+
+    /**
+     * Swaps in the rebuilt index, if there is one, and then applies the
+     * changes made while it was being built.
+     * @param swap Replaces the index with the rebuilt one, or {@code null} if
+     *             the rebuild failed.
+     */
+    private void finishRebuild(Runnable swap) {
+        updateLock.lock();
+        try {
+            if (swap != null) {
+                lock.writeLock().lock();
+                try {
+                    swap.run();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            // The rebuild may have read the products before these changes
+            Set<Long> changes = pendingChanges;
+            pendingChanges = null;
+            changes.forEach(this::reindex);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index once a bulk import has finished, rather than
+     * re-indexing each product it created.
+     * @param event The catalogue imported event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleCatalogueImported(CatalogueImportedEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Moves a product to its new position once the transaction that changed
+     * it has committed. Archived products are removed from the index.
+     * @param event The product changed event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleProductChanged(ProductChangedEvent event) {
+        updateLock.lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(event.productId());
+            } else {
+                reindex(event.productId());
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the product and moves it to its new position. Must be called
+     * while holding the update lock. The product is read as a snapshot, as
+     * the transaction that published the event may have left an older copy
+     * of it loaded.
+     */
+    private void reindex(Long productId) {
+        Optional<ProductResponse> product = productRepository
+                .findSnapshotById(productId)
+                .filter(ProductSnapshot::isActive)
+                .map(ProductSnapshot::toProduct)
+                .map(productMapper::mapToResponse);
+        lock.writeLock().lock();
+        try {
+            remove(productId);
+            product.ifPresent(this::insert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a page of the active products in the given price range, sorted by
+     * price.
+     * @param sort The order of the products.
+     * @param minPrice The minimum price, inclusive.
+     * @param maxPrice The maximum price, inclusive.
+     * @param after The ID of the last product on the previous page, or
+     *              {@code null} for the first page.
+     * @param limit The maximum number of products to return.
+     * @return The products on the page, or an empty optional if the index
+     * hasn't been built or doesn't contain the product in the cursor.
+     */
+    public Optional<List<ProductResponse>> getPage(ProductSort sort,
+                                                   double minPrice,
+                                                   double maxPrice, Long after,
+                                                   int limit) {
+        lock.readLock().lock();
+        try {
+            if (!built) {
+                return Optional.empty();
+            }
+            ProductResponse cursor = null;
+            if (after != null) {
+                cursor = products.get(after);
+                if (cursor == null) {
+                    return Optional.empty();
+                }
+            }
+            // The products in range are at [from, to)
+            int from = search(minPrice, Long.MIN_VALUE);
+            int to = search(maxPrice, Long.MAX_VALUE);
+            List<ProductResponse> page = new ArrayList<>();
+            if (sort == ProductSort.PRICE_ASC) {
+                int start = cursor == null
+                        ? from
+                        : Math.max(from, search(cursor.price(), after) + 1);
+                for (int i = start; i < to && page.size() < limit; i++) {
+                    page.add(products.get(ids[i]));
+                }
+            } else {
+                int end = cursor == null
+                        ? to
+                        : Math.min(to, search(cursor.price(), after));
+                for (int i = end - 1; i >= from && page.size() < limit; i--) {
+                    page.add(products.get(ids[i]));
+                }
+            }
+            return Optional.of(page);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(ProductResponse product) {
+        if (size == ids.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int position = search(product.price(), product.id());
+        System.arraycopy(prices, position, prices, position + 1,
+                size - position);
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        prices[position] = product.price();
+        ids[position] = product.id();
+        size++;
+        products.put(product.id(), product);
+    }
+
+    private void remove(Long productId) {
+        ProductResponse product = products.remove(productId);
+        if (product == null) {
+            return;
+        }
+        int position = search(product.price(), productId);
+        System.arraycopy(prices, position + 1, prices, position,
+                size - position - 1);
+        System.arraycopy(ids, position + 1, ids, position,
+                size - position - 1);
+        size--;
+    }
+
+    /**
+     * Finds the position of the first entry that is not before the given
+     * price and ID, which is the position of the entry itself if it exists.
+     */
+    private int search(double price, long id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Double.compare(prices[middle], price);
+            if (comparison == 0) {
+                comparison = Long.compare(ids[middle], id);
+            }
+            if (comparison < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
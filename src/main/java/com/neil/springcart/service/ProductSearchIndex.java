@@ -0,0 +1,298 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.ProductResponse;
+import com.neil.springcart.event.CatalogueImportedEvent;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.repository.ProductSnapshot;
+import com.neil.springcart.util.mapper.ProductMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index over the brand, name and description of the
+ * active products. The index is built when the application starts and kept
+ * up to date as products change, so searches never touch the database.
+ * <p>
+ * Every query term has to match a product for it to be returned, either as a
+ * whole word or as the start of one. Matches are ranked by how rare the word
+ * is across the catalogue and by the field it is in, with names counting more
+ * than brands and brands more than descriptions.
+ * <p>
+ * Changes are applied one at a time, each reading the product as it is when
+ * its turn comes, so a late event can't put back an older version of a
+ * product. Changes made while the index is being rebuilt are queued and
+ * applied once the new index is in place.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+    static final float NAME_WEIGHT = 3f;
+    static final float BRAND_WEIGHT = 2f;
+    static final float DESCRIPTION_WEIGHT = 1f;
+    // Prefix matches count for less than whole word matches
+    static final float PREFIX_FACTOR = 0.5f;
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Held while a change is read and applied, or while a rebuild starts and
+    // finishes, so changes are applied in the order they are read
+    private final Lock updateLock = new ReentrantLock();
+    private NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private Map<Long, IndexedProduct> products = new HashMap<>();
+    // The products changed during a rebuild, or null if there isn't one
+    private Set<Long> pendingChanges;
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              ProductMapper productMapper) {
+        this.productRepository = productRepository;
+        this.productMapper = productMapper;
+    }
+
+    /**
+     * Rebuilds the index from every active product in the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        updateLock.lock();
+        try {
+            pendingChanges = new HashSet<>();
+        } finally {
+            updateLock.unlock();
+        }
+        List<Product> activeProducts;
+        try {
+            activeProducts = productRepository.findActiveProducts();
+        } catch (RuntimeException ex) {
+            // The changes made meanwhile still have to reach the old index
+            finishRebuild(null, null);
+            throw ex;
+        }
+        NavigableMap<String, Map<Long, Float>> newPostings = new TreeMap<>();
+        Map<Long, IndexedProduct> newProducts = new HashMap<>();
+        for (Product product : activeProducts) {
+            addProduct(product, newPostings, newProducts);
+        }
+        finishRebuild(newPostings, newProducts);
+        log.info("Search index built with {} products ({} terms)",
+                newProducts.size(), newPostings.size());
+    }
+
+    /**
+     * Swaps in the rebuilt index, if there is one, and then applies the
+     * changes made while it was being built.
+     */
+    private void finishRebuild(
+            NavigableMap<String, Map<Long, Float>> newPostings,
+            Map<Long, IndexedProduct> newProducts) {
+        updateLock.lock();
+        try {
+            if (newPostings != null) {
+                lock.writeLock().lock();
+                try {
+                    postings = newPostings;
+                    products = newProducts;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            // The rebuild may have read the products before these changes
+            Set<Long> changes = pendingChanges;
+            pendingChanges = null;
+            changes.forEach(this::reindex);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index once a bulk import has finished, rather than
+     * re-indexing each product it created.
+     * @param event The catalogue imported event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleCatalogueImported(CatalogueImportedEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Re-indexes a product once the transaction that changed it has
+     * committed. Archived products are removed from the index.
+     * @param event The product changed event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleProductChanged(ProductChangedEvent event) {
+        updateLock.lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(event.productId());
+            } else {
+                reindex(event.productId());
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the product and replaces it in the index. Must be called while
+     * holding the update lock. The product is read as a snapshot, as the
+     * transaction that published the event may have left an older copy of
+     * it loaded.
+     */
+    private void reindex(Long productId) {
+        Optional<Product> product = productRepository
+                .findSnapshotById(productId)
+                .filter(ProductSnapshot::isActive)
+                .map(ProductSnapshot::toProduct);
+        lock.writeLock().lock();
+        try {
+            removeProduct(productId);
+            product.ifPresent(p -> addProduct(p, postings, products));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the index for products matching every term in the query.
+     * @param query The search query.
+     * @param limit The maximum number of products to return.
+     * @return The matching products, best match first.
+     */
+    public List<ProductResponse> search(String query, int limit) {
+        List<String> queryTerms = tokenize(query).stream()
+                .distinct()
+                .toList();
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Float> scores = null;
+            for (String queryTerm : queryTerms) {
+                Map<Long, Float> termScores = scoreTerm(queryTerm);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // Keep only the products that match every term so far
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) ->
+                            score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Float>comparingByValue()
+                            .reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .map(entry -> products.get(entry.getKey()).response())
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of products in the index.
+     * @return The number of indexed products.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return products.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores every product containing a word that equals or starts with the
+     * given term. A product's score is its best scoring matching word.
+     */
+    private Map<Long, Float> scoreTerm(String queryTerm) {
+        Map<Long, Float> scores = new HashMap<>();
+        SortedMap<String, Map<Long, Float>> matches = postings.subMap(
+                queryTerm, queryTerm + Character.MAX_VALUE);
+        for (Map.Entry<String, Map<Long, Float>> match : matches.entrySet()) {
+            Map<Long, Float> termPostings = match.getValue();
+            float idf = (float) Math.log(1.0 + (double) products.size()
+                    / termPostings.size());
+            float factor = match.getKey().equals(queryTerm)
+                    ? 1f
+                    : PREFIX_FACTOR;
+            termPostings.forEach((id, weight) ->
+                    scores.merge(id, weight * idf * factor, Math::max));
+        }
+        return scores;
+    }
+
+    private void addProduct(Product product,
+                            Map<String, Map<Long, Float>> postings,
+                            Map<Long, IndexedProduct> products) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, product.getName(), NAME_WEIGHT);
+        addField(weights, product.getBrand(), BRAND_WEIGHT);
+        addField(weights, product.getDescription(), DESCRIPTION_WEIGHT);
+        weights.forEach((term, weight) -> postings
+                .computeIfAbsent(term, key -> new HashMap<>())
+                .put(product.getId(), weight));
+        products.put(product.getId(), new IndexedProduct(
+                productMapper.mapToResponse(product),
+                Set.copyOf(weights.keySet())));
+    }
+
+    private void addField(Map<String, Float> weights, String value,
+                          float weight) {
+        for (String term : tokenize(value)) {
+            weights.merge(term, weight, Float::sum);
+        }
+    }
+
+    private void removeProduct(Long productId) {
+        IndexedProduct removed = products.remove(productId);
+        if (removed == null) {
+            return;
+        }
+        for (String term : removed.terms()) {
+            Map<Long, Float> termPostings = postings.get(term);
+            termPostings.remove(productId);
+            if (termPostings.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Splits text into lower case words, treating anything other than a letter
+     * or digit as a separator.
+     * @param text The text to split.
+     * @return The words in the text.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT)
+                        .split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .toList();
+    }
+
+    private record IndexedProduct(ProductResponse response,
+                                  Set<String> terms) {}
+}
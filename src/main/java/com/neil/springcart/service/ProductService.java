@@ -1,7 +1,14 @@
 package com.neil.springcart.service;
 
 import com.neil.springcart.dto.DetailedProductResponse;
+import com.neil.springcart.dto.FacetedProductPage;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.ProductFilter;
+import com.neil.springcart.dto.ProductPage;
 import com.neil.springcart.dto.ProductResponse;
+import com.neil.springcart.dto.ProductSort;
+import com.neil.springcart.dto.SerializedListing;
+import com.neil.springcart.exception.BadRequestException;
 import com.neil.springcart.exception.NotFoundException;
 import com.neil.springcart.model.Product;
 import com.neil.springcart.model.ProductCategory;
@@ -10,6 +17,8 @@ import com.neil.springcart.repository.ProductRepository;
 import com.neil.springcart.util.mapper.ProductMapper;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -18,17 +27,27 @@ import java.util.List;
 @AllArgsConstructor
 @Slf4j
 public class ProductService {
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
+    private final InventoryService inventoryService;
+    private final CatalogueCache catalogueCache;
+    private final SerializedListingCache serializedListingCache;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final ProductPriceIndex productPriceIndex;
 
     /**
      * Gets all active products.
      * @return A list of all the active products.
      */
     public List<ProductResponse> getAllProducts() {
-        List<Product> products = productRepository.findActiveProducts();
-        log.info("{} active products found", products.size());
-        return productMapper.mapListToResponse(products);
+        return catalogueCache.getListing(null, null, () -> {
+            List<Product> products = productRepository.findActiveProducts();
+            log.info("{} active products found", products.size());
+            return productMapper.mapListToResponse(products);
+        });
     }
 
     /**
@@ -37,9 +56,11 @@ public class ProductService {
      * @return A list of products for the given gender.
      */
     public List<ProductResponse> getProductsByGender(ProductGender gender) {
-        List<Product> products = productRepository.findAllByGender(gender);
-        log.info("{} active {} products found", products.size(), gender);
-        return productMapper.mapListToResponse(products);
+        return catalogueCache.getListing(gender, null, () -> {
+            List<Product> products = productRepository.findAllByGender(gender);
+            log.info("{} active {} products found", products.size(), gender);
+            return productMapper.mapListToResponse(products);
+        });
     }
 
     /**
@@ -50,13 +71,197 @@ public class ProductService {
      */
     public List<ProductResponse> getProductsByGenderAndCategory(
             ProductGender gender, ProductCategory category) {
-        List<Product> products = productRepository
-                .findAllByGenderAndCategory(gender, category);
-        log.info("{} active {} {} products found", products.size(), gender,
-                category);
+        return catalogueCache.getListing(gender, category, () -> {
+            List<Product> products = productRepository
+                    .findAllByGenderAndCategory(gender, category);
+            log.info("{} active {} {} products found", products.size(), gender,
+                    category);
+            return productMapper.mapListToResponse(products);
+        });
+    }
+
+    /**
+     * Gets the serialized JSON of the active products, optionally filtered by
+     * gender and category.
+     * @param gender The gender of the products, or {@code null} for all.
+     * @param category The category of the products, or {@code null} for all.
+     *                 Only used if a gender is given.
+     * @return The serialized listing and its ETag.
+     */
+    public SerializedListing getSerializedProducts(ProductGender gender,
+                                                   ProductCategory category) {
+        return serializedListingCache.getListing(gender, category, () -> {
+            if (gender == null) {
+                return getAllProducts();
+            } else if (category == null) {
+                return getProductsByGender(gender);
+            }
+            return getProductsByGenderAndCategory(gender, category);
+        });
+    }
+
+    /**
+     * Gets a page of active products, optionally filtered by gender and
+     * category. Pages are keyed on the product ID, so each page is a single
+     * index range scan no matter how deep into the catalogue it is.
+     * @param gender The gender of the products, or {@code null} for all.
+     * @param category The category of the products, or {@code null} for all.
+     *                 Only used if a gender is given.
+     * @param after The ID of the last product on the previous page, or
+     *              {@code null} for the first page.
+     * @param limit The maximum number of products on the page.
+     * @return A page of active products.
+     * @throws BadRequestException If the limit is out of range.
+     */
+    public ProductPage getProductPage(ProductGender gender,
+                                      ProductCategory category, Long after,
+                                      int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Limit must be between 1 and "
+                    + MAX_PAGE_SIZE);
+        }
+        long afterId = after == null ? 0L : after;
+        // Fetch one extra product to find out if there is a next page
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Product> products;
+        if (gender == null) {
+            products = productRepository.findActiveProductsAfter(afterId,
+                    pageable);
+        } else if (category == null) {
+            products = productRepository.findActiveProductsByGenderAfter(
+                    gender, afterId, pageable);
+        } else {
+            products = productRepository
+                    .findActiveProductsByGenderAndCategoryAfter(gender,
+                            category, afterId, pageable);
+        }
+        boolean hasNextPage = products.size() > limit;
+        List<Product> page = hasNextPage
+                ? products.subList(0, limit)
+                : products;
+        log.info("{} active products found after ID {}", page.size(), afterId);
+        return ProductPage.builder()
+                .items(productMapper.mapListToResponse(page))
+                .nextCursor(hasNextPage ? page.get(limit - 1).getId() : null)
+                .build();
+    }
+
+    /**
+     * Gets a page of active products in a price range, sorted by price. Pages
+     * are served from the in-memory price index, falling back to the database
+     * if the index can't serve them.
+     * @param sort The order of the products.
+     * @param minPrice The minimum price, or {@code null} for no minimum.
+     * @param maxPrice The maximum price, or {@code null} for no maximum.
+     * @param after The ID of the last product on the previous page, or
+     *              {@code null} for the first page.
+     * @param limit The maximum number of products on the page.
+     * @return A page of active products sorted by price.
+     * @throws BadRequestException If the limit or price range is invalid, or
+     *                             the cursor isn't an active product.
+     */
+    public ProductPage getProductPageByPrice(ProductSort sort, Double minPrice,
+                                             Double maxPrice, Long after,
+                                             int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Limit must be between 1 and "
+                    + MAX_PAGE_SIZE);
+        }
+        double min = minPrice == null ? 0 : minPrice;
+        double max = maxPrice == null ? Double.MAX_VALUE : maxPrice;
+        if (min < 0 || min > max) {
+            throw new BadRequestException("Invalid price range");
+        }
+        // Fetch one extra product to find out if there is a next page
+        List<ProductResponse> products = productPriceIndex.getPage(sort, min,
+                max, after, limit + 1)
+                .orElseGet(() -> getProductsByPriceFromDatabase(sort, min, max,
+                        after, limit + 1));
+        boolean hasNextPage = products.size() > limit;
+        List<ProductResponse> page = hasNextPage
+                ? products.subList(0, limit)
+                : products;
+        log.info("{} active products found between {} and {}", page.size(),
+                min, max);
+        return ProductPage.builder()
+                .items(page)
+                .nextCursor(hasNextPage ? page.get(limit - 1).id() : null)
+                .build();
+    }
+
+    private List<ProductResponse> getProductsByPriceFromDatabase(
+            ProductSort sort, double min, double max, Long after, int limit) {
+        log.info("Price index unavailable, querying the database");
+        Pageable pageable = PageRequest.of(0, limit);
+        Product cursor = after == null ? null : productRepository
+                .findById(after)
+                .filter(Product::isActive)
+                .orElseThrow(() -> new BadRequestException("Invalid cursor"));
+        List<Product> products;
+        if (sort == ProductSort.PRICE_ASC) {
+            products = cursor == null
+                    ? productRepository.findActiveProductsByPriceAscAfter(min,
+                            max, min, 0L, pageable)
+                    : productRepository.findActiveProductsByPriceAscAfter(min,
+                            max, cursor.getPrice(), cursor.getId(), pageable);
+        } else {
+            products = cursor == null
+                    ? productRepository.findActiveProductsByPriceDescBefore(
+                            min, max, max, Long.MAX_VALUE, pageable)
+                    : productRepository.findActiveProductsByPriceDescBefore(
+                            min, max, cursor.getPrice(), cursor.getId(),
+                            pageable);
+        }
         return productMapper.mapListToResponse(products);
     }
 
+    /**
+     * Gets a page of active products matching the given facet filter, along
+     * with the number of products for each facet value. Served from the
+     * in-memory facet index rather than the database.
+     * @param filter The facet values to filter by.
+     * @param after The ID of the last product on the previous page, or
+     *              {@code null} for the first page.
+     * @param limit The maximum number of products on the page.
+     * @return A page of matching products and the facet counts.
+     * @throws BadRequestException If the limit is out of range.
+     */
+    public FacetedProductPage getFacetedProductPage(ProductFilter filter,
+                                                    Long after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Limit must be between 1 and "
+                    + MAX_PAGE_SIZE);
+        }
+        FacetedProductPage page = productFacetIndex.query(filter,
+                after == null ? 0L : after, limit);
+        log.info("{} products match the filter ({} on this page)",
+                page.total(), page.items().size());
+        return page;
+    }
+
+    /**
+     * Searches the active products by brand, name and description. Served from
+     * the in-memory search index rather than the database.
+     * @param query The search query.
+     * @param limit The maximum number of products to return.
+     * @return The matching products, best match first.
+     * @throws BadRequestException If the query is blank or the limit is out of
+     *                             range.
+     */
+    public List<ProductResponse> searchProducts(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Search query must not be blank");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("Limit must be between 1 and "
+                    + MAX_PAGE_SIZE);
+        }
+        List<ProductResponse> products = productSearchIndex.search(query,
+                limit);
+        log.info("{} products found for search '{}'", products.size(), query);
+        return products;
+    }
+
     /**
      * Gets the product with the given ID.
      * @param id The ID of the product.
@@ -68,6 +273,8 @@ public class ProductService {
             new NotFoundException("Product with ID" + id + " doesn't exist")
         );
         log.info("Product (ID: {}) retrieved from database", product.getId());
-        return productMapper.mapToDetailedResponse(product);
+        List<InventoryDto> inventory = inventoryService.getAvailableStock(
+                product);
+        return productMapper.mapToDetailedResponse(product, inventory);
     }
 }
@@ -0,0 +1,109 @@
+package com.neil.springcart.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neil.springcart.dto.ProductResponse;
+import com.neil.springcart.dto.SerializedListing;
+import com.neil.springcart.event.CatalogueImportedEvent;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.util.cache.BoundedCache;
+import com.neil.springcart.util.cache.CacheRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Caches the serialized JSON of each product listing so listing requests can
+ * skip serialization. When disabled, listings are serialized on every
+ * request but still get an ETag.
+ */
+@Component
+public class SerializedListingCache {
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final BoundedCache<ListingKey, SerializedListing> cache;
+
+    public SerializedListingCache(
+            ObjectMapper objectMapper,
+            CacheRegistry cacheRegistry,
+            @Value("${catalogue.serialized-cache.enabled:true}") boolean enabled,
+            @Value("${catalogue.cache.max-entries:64}") int maxEntries,
+            @Value("${catalogue.cache.ttl:PT10M}") Duration ttl) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.cache = new BoundedCache<>(maxEntries, ttl);
+        cacheRegistry.register("serialized-listings", cache);
+    }
+
+    /**
+     * Gets the serialized listing for the given gender and category,
+     * serializing the listing from the given loader on a miss.
+     * @param gender The gender, or {@code null} for all genders.
+     * @param category The category, or {@code null} for all categories.
+     * @param loader Loads the listing.
+     * @return The serialized listing.
+     */
+    public SerializedListing getListing(ProductGender gender,
+                                        ProductCategory category,
+                                        Supplier<List<ProductResponse>> loader) {
+        if (!enabled) {
+            return serialize(loader.get());
+        }
+        return cache.get(new ListingKey(gender, category),
+                key -> serialize(loader.get()));
+    }
+
+    /**
+     * Invalidates every serialized listing once the transaction that changed a
+     * product has committed. Runs after the catalogue cache is invalidated so
+     * a listing can't be re-serialized from stale products.
+     * @param event The product changed event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(1)
+    public void handleProductChanged(ProductChangedEvent event) {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Invalidates every serialized listing once a bulk import has finished,
+     * after the catalogue cache is invalidated.
+     * @param event The catalogue imported event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(1)
+    public void handleCatalogueImported(CatalogueImportedEvent event) {
+        cache.invalidateAll();
+    }
+
+    private SerializedListing serialize(List<ProductResponse> products) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(products);
+            return new SerializedListing(body, computeEtag(body));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unable to serialize listing", ex);
+        }
+    }
+
+    private String computeEtag(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(hash) + "\"";
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private record ListingKey(ProductGender gender,
+                              ProductCategory category) {}
+}
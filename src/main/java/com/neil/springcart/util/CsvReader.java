@@ -0,0 +1,82 @@
+package com.neil.springcart.util;
+
+import com.neil.springcart.exception.BadRequestException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads CSV records one at a time from a reader, so large files never need to
+ * be held in memory. Supports quoted fields containing commas, escaped quotes
+ * ({@code ""}) and line breaks.
+ */
+public class CsvReader {
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private final BufferedReader reader;
+    private boolean finished;
+
+    /**
+     * Creates a CSV reader.
+     * @param reader The reader to read from.
+     */
+    public CsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record.
+     * @return The fields of the record, or {@code null} at the end of the
+     * input.
+     * @throws BadRequestException If a record is longer than 64 KB, which
+     * usually means a quote was never closed.
+     */
+    public List<String> readRecord() throws IOException {
+        if (finished) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean hasContent = false;
+        int length = 0;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (++length > MAX_RECORD_LENGTH) {
+                throw new BadRequestException("CSV record is too long");
+            }
+            hasContent = true;
+            if (inQuotes) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                inQuotes = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        finished = true;
+        if (!hasContent) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -1,11 +1,12 @@
 package com.neil.springcart.util;
 
+import com.neil.springcart.model.AccountUser;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
-import lombok.AllArgsConstructor;
 import org.springframework.core.env.Environment;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -14,24 +15,46 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.UUID;
 
 /**
  * A utility class containing methods to generate and validate JWT tokens and to
  * get user information from JWT tokens.
  */
 @Component
-@AllArgsConstructor
 public class JwtUtil {
-    private final Environment environment;
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+
+    private final Key signInKey;
+    private final JwtParser jwtParser;
+
+    /**
+     * Creates the signing key and parser once so they can be reused for every
+     * token.
+     * @param environment The environment containing the jwt.key property.
+     */
+    public JwtUtil(Environment environment) {
+        this.signInKey = createSignInKey(environment.getProperty("jwt.key"));
+        this.jwtParser = Jwts
+                .parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+    }
 
     /**
-     * Generates a JWT token from the given user details.
+     * Generates a JWT token from the given user details. The user's ID and
+     * role are added as claims when the user is an {@link AccountUser}.
      * @param userDetails The user details of the user making the request.
      * @return A JWT token.
      */
     public String generateToken(UserDetails userDetails) {
-        return generateToken(new HashMap<>(), userDetails);
+        Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof AccountUser user) {
+            claims.put(USER_ID_CLAIM, user.getId());
+            claims.put(ROLE_CLAIM, user.getRole().name());
+        }
+        return generateToken(claims, userDetails);
     }
 
     /**
@@ -47,12 +70,24 @@ public class JwtUtil {
                 .builder()
                 .setClaims(extraClaims)
                 .setSubject(userDetails.getUsername())
+                .setId(UUID.randomUUID().toString())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + ONE_WEEK))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Parses the given token once, verifying its signature and expiration.
+     * @param token A JWT token.
+     * @return The verified claims of the token.
+     * @throws io.jsonwebtoken.ExpiredJwtException If the token has expired.
+     * @throws io.jsonwebtoken.JwtException If the token is invalid.
+     */
+    public Claims validateToken(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
     /**
      * Checks if the given token is not expired and is the token generated for
      * the user making the request.
@@ -61,71 +96,37 @@ public class JwtUtil {
      * @return `true` if the token is valid and `false` if not.
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return username.equals(userDetails.getUsername())
-                && !isTokenExpired(token);
-    }
-
-    /**
-     * Extracts the username (email) from the given JWT token.
-     * @param token A JWT token.
-     * @return The username (email) stored in the token.
-     */
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return isTokenValid(validateToken(token), userDetails);
     }
 
     /**
-     * Checks if the given JWT token is expired or not.
-     * @param token A JWT token.
-     * @return `true` if the token is expired, `false` if not.
-     */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    /**
-     * Extracts the expiration datetime from the given JWT token.
-     * @param token A JWT token.
-     * @return The expiration date of the JWT token.
-     */
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
-    /**
-     * Extracts a claim from the given token by using the given claimsResolver.
-     * @param token A JWT token.
-     * @param claimsResolver A method from the Claims interface.
-     * @return The value of the claim.
+     * Checks if the given verified claims are not expired and belong to the
+     * user making the request.
+     * @param claims The verified claims of a token.
+     * @param userDetails The user details of the user making the request.
+     * @return `true` if the token is valid and `false` if not.
      */
-    private <T> T extractClaim(String token,
-                               Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return userDetails.getUsername().equals(claims.getSubject())
+                && claims.getExpiration().after(new Date());
     }
 
     /**
-     * Extracts all the claims from the given token.
+     * Extracts the username (email) from the given JWT token.
      * @param token A JWT token.
-     * @return the claims from a JWT token.
+     * @return The username (email) stored in the token.
      */
-    private Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public String extractUsername(String token) {
+        return validateToken(token).getSubject();
     }
 
     /**
-     * Creates a key from a JWT token from a secret key string
+     * Creates a key from a secret key string.
+     * @param secretKey The Base64 encoded secret key.
      * @return A key.
      */
-    private Key getSignInKey() {
-        String SECRET_KEY = environment.getProperty("jwt.key");
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
+    private static Key createSignInKey(String secretKey) {
+        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
         return Keys.hmacShaKeyFor(keyBytes);
     }
-}
\ No newline at end of file
+}
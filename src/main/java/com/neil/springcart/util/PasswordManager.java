@@ -1,13 +1,84 @@
 package com.neil.springcart.util;
 
-import lombok.AllArgsConstructor;
+import com.neil.springcart.exception.ServiceUnavailableException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes and checks passwords on a dedicated, bounded pool of threads so a
+ * burst of sign ins can't take up every CPU core. By default the pool has half
+ * as many threads as there are cores, leaving the rest for other requests.
+ * Requests beyond the pool's queue are rejected with a 503 instead of piling
+ * up.
+ * <p>
+ * A request that times out waiting for its hash gets a 503 as well. If the
+ * hash is still queued it is cancelled, but BCrypt and Argon2 don't respond
+ * to interrupts, so a hash that has already started runs to the end and keeps
+ * its thread busy. The pool size, not the timeout, is what bounds the CPU
+ * time spent on hashing.
+ */
 @Component
-@AllArgsConstructor
+@Slf4j
 public class PasswordManager {
+    private static final String BUSY_MESSAGE =
+            "Too many sign in requests, please try again shortly";
+
     private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+
+    /**
+     * Creates the password hashing pool.
+     * @param passwordEncoder The encoder used to hash passwords.
+     * @param threads The number of hashing threads, or 0 for half the cores.
+     * @param queueCapacity How many hashes can wait for a free thread.
+     * @param timeout How long a request waits for its hash before giving up.
+     */
+    public PasswordManager(
+            PasswordEncoder passwordEncoder,
+            @Value("${password.hashing.threads:0}") int threads,
+            @Value("${password.hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${password.hashing.timeout:PT10S}") Duration timeout) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0
+                ? threads
+                : defaultPoolSize(Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Gets the default number of hashing threads, half the cores and at least
+     * one.
+     * @param cores The number of available cores.
+     * @return The number of hashing threads.
+     */
+    static int defaultPoolSize(int cores) {
+        return Math.max(1, cores / 2);
+    }
 
     /**
      * Checks if the given raw password is the same as the given encrypted
@@ -16,17 +87,63 @@ public class PasswordManager {
      * @param encryptedPassword The encrypted password.
      * @return {@code true} if the raw password matches the encrypted password,
      * {@code false} otherwise.
+     * @throws ServiceUnavailableException If the hashing pool is saturated.
      */
     public boolean isPasswordValid(String password, String encryptedPassword) {
-        return passwordEncoder.matches(password, encryptedPassword);
+        return runHashTask(() ->
+                passwordEncoder.matches(password, encryptedPassword));
     }
 
     /**
      * Encrypts the given raw password.
      * @param rawPassword The password to be encrypted.
      * @return An encrypted password.
+     * @throws ServiceUnavailableException If the hashing pool is saturated.
      */
     public String encryptPassword(String rawPassword) {
-        return passwordEncoder.encode(rawPassword);
+        return runHashTask(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Checks if the given encrypted password was hashed with weaker settings
+     * than the current ones, and should be hashed again on the next sign in.
+     * @param encryptedPassword The encrypted password.
+     * @return {@code true} if the password should be hashed again,
+     * {@code false} otherwise.
+     */
+    public boolean needsRehash(String encryptedPassword) {
+        return passwordEncoder.upgradeEncoding(encryptedPassword);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T runHashTask(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException ex) {
+            log.warn("Password hashing queue is full, rejecting request");
+            throw new ServiceUnavailableException(BUSY_MESSAGE);
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            // Only stops a hash that hasn't started yet
+            future.cancel(true);
+            log.warn("Password hashing timed out after {} ms", timeoutMillis);
+            throw new ServiceUnavailableException(BUSY_MESSAGE);
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException(BUSY_MESSAGE);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
     }
 }
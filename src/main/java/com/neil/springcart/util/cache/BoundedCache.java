@@ -0,0 +1,139 @@
+package com.neil.springcart.util.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A thread-safe, size-bounded LRU cache with an optional time-to-live for
+ * entries. Keeps hit, miss and eviction counts.
+ * @param <K> The type of the keys.
+ * @param <V> The type of the cached values.
+ */
+public class BoundedCache<K, V> {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Clock clock;
+    // Access-ordered so the eldest entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    // Bumped on every invalidation so loads that started before it are not
+    // cached afterwards
+    private long generation;
+
+    /**
+     * Creates a cache.
+     * @param maxSize The maximum number of entries.
+     * @param ttl How long entries live for, or {@link Duration#ZERO} for no
+     *            expiry.
+     */
+    public BoundedCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, Clock.systemUTC());
+    }
+
+    public BoundedCache(int maxSize, Duration ttl, Clock clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the cached value for the given key.
+     * @param key The key.
+     * @return The cached value, or {@code null} if there isn't a live one.
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            entries.remove(key);
+            evictions++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    /**
+     * Gets the cached value for the given key, loading and caching it with
+     * the given loader if there isn't a live one. The loader runs outside the
+     * cache lock, so concurrent misses for the same key may both load.
+     * @param key The key.
+     * @param loader Loads the value for a key.
+     * @return The cached or loaded value.
+     */
+    public V get(K key, Function<K, V> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            V value = get(key);
+            if (value != null) {
+                return value;
+            }
+            loadGeneration = generation;
+        }
+        V value = loader.apply(key);
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Caches the given value, evicting the least recently used entry if the
+     * cache is full.
+     * @param key The key.
+     * @param value The value.
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, clock.millis()));
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet()
+                .iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the cached value for the given key.
+     * @param key The key.
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+        generation++;
+    }
+
+    /**
+     * Removes every cached value.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        generation++;
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(entries.size(), maxSize, hits, misses,
+                evictions);
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return ttlMillis > 0 && clock.millis() - entry.createdAt() >= ttlMillis;
+    }
+
+    private record Entry<V>(V value, long createdAt) {}
+}
@@ -0,0 +1,36 @@
+package com.neil.springcart.util.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the application's in-memory caches so their stats can be
+ * reported in one place.
+ */
+@Component
+public class CacheRegistry {
+    private final Map<String, BoundedCache<?, ?>> caches =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Registers a cache under the given name.
+     * @param name The name of the cache.
+     * @param cache The cache.
+     */
+    public void register(String name, BoundedCache<?, ?> cache) {
+        caches.put(name, cache);
+    }
+
+    /**
+     * Gets the stats for every registered cache.
+     * @return The stats for each cache, keyed by cache name.
+     */
+    public Map<String, CacheStats> getStats() {
+        Map<String, CacheStats> stats = new TreeMap<>();
+        caches.forEach((name, cache) -> stats.put(name, cache.getStats()));
+        return stats;
+    }
+}
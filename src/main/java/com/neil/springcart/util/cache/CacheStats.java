@@ -0,0 +1,15 @@
+package com.neil.springcart.util.cache;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A snapshot of the size and hit/miss/eviction counts of a cache.
+ */
+public record CacheStats(int size, int maxSize, long hits, long misses,
+                         long evictions) {
+    @JsonProperty("hitRate")
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,12 @@
+package com.neil.springcart.util.converter;
+
+import com.neil.springcart.dto.ProductSort;
+import org.springframework.core.convert.converter.Converter;
+
+public class StringToProductSortConverter
+        implements Converter<String, ProductSort> {
+    @Override
+    public ProductSort convert(String source) {
+        return ProductSort.valueOf(source.toUpperCase());
+    }
+}
@@ -1,19 +1,32 @@
 package com.neil.springcart.util.mapper;
 
+import com.neil.springcart.dto.CartItemResponse;
 import com.neil.springcart.dto.CartResponse;
-import com.neil.springcart.model.Cart;
+import com.neil.springcart.model.CartItem;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 @AllArgsConstructor
 public class CartMapper {
     private final ProductMapper productMapper;
 
-    public CartResponse mapToResponse(Cart cart) {
+    public CartResponse mapToResponse(Long cartId, List<CartItem> items) {
         return CartResponse.builder()
-                .cartId(cart.getId())
-                .items(productMapper.mapListToResponse(cart.getProducts()))
+                .cartId(cartId)
+                .items(items.stream()
+                        .map(this::mapToItemResponse)
+                        .toList())
+                .build();
+    }
+
+    public CartItemResponse mapToItemResponse(CartItem item) {
+        return CartItemResponse.builder()
+                .product(productMapper.mapToResponse(item.getProduct()))
+                .size(item.getSize())
+                .quantity(item.getQuantity())
                 .build();
     }
 }
@@ -4,6 +4,8 @@ import com.neil.springcart.dto.InventoryDto;
 import com.neil.springcart.model.InventoryItem;
 import com.neil.springcart.model.Product;
 import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.repository.ProductSizeStockCount;
+import com.neil.springcart.repository.SizeStockCount;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -36,15 +38,21 @@ public class InventoryMapper {
                 .build();
     }
 
-    public List<InventoryDto> mapToDtoList(List<InventoryItem> inventory) {
-        // Get product size count
-        Map<ProductSize, Long> productSizeCount = inventory.stream()
-                .collect(Collectors.groupingBy(InventoryItem::getSize,
-                        Collectors.counting()));
-        // Map to InventoryDto
-        return productSizeCount.entrySet().stream()
-                .map(entry -> new InventoryDto(entry.getKey(),
-                        Math.toIntExact(entry.getValue())))
+    public List<InventoryDto> mapToDtoList(List<SizeStockCount> counts) {
+        return counts.stream()
+                .map(count -> new InventoryDto(count.getSize(),
+                        Math.toIntExact(count.getStock())))
                 .toList();
     }
+
+    public Map<Long, List<InventoryDto>> mapToDtoMap(
+            List<ProductSizeStockCount> counts) {
+        return counts.stream()
+                .collect(Collectors.groupingBy(
+                        ProductSizeStockCount::getProductId,
+                        Collectors.mapping(count -> new InventoryDto(
+                                count.getSize(),
+                                Math.toIntExact(count.getStock())),
+                                Collectors.toList())));
+    }
 }
@@ -16,7 +16,7 @@ public class OrderMapper {
                 .id(order.getId())
                 .date(order.getDate())
                 .shippingAddress(order.getShippingAddress())
-                .items(order.getItems().size())
+                .items(order.getUnitCount())
                 .price(order.getTotalAmount())
                 .build();
     }
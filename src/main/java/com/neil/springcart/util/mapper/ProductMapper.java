@@ -2,18 +2,15 @@ package com.neil.springcart.util.mapper;
 
 import com.neil.springcart.dto.DetailedProductResponse;
 import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.ProductExport;
 import com.neil.springcart.dto.ProductResponse;
 import com.neil.springcart.model.Product;
-import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 
 @Component
-@AllArgsConstructor
 public class ProductMapper {
-    private final InventoryMapper inventoryMapper;
-
     public ProductResponse mapToResponse(Product product) {
         return ProductResponse.builder()
                 .id(product.getId())
@@ -31,9 +28,8 @@ public class ProductMapper {
                 .toList();
     }
 
-    public DetailedProductResponse mapToDetailedResponse(Product product) {
-        List<InventoryDto> inventory = inventoryMapper.mapToDtoList(
-                product.getInventory());
+    public DetailedProductResponse mapToDetailedResponse(Product product,
+            List<InventoryDto> inventory) {
         return DetailedProductResponse.builder()
                 .id(product.getId())
                 .sku(product.getSku())
@@ -46,4 +42,20 @@ public class ProductMapper {
                 .inventory(inventory)
                 .build();
     }
+
+    public ProductExport mapToExport(Product product,
+                                     List<InventoryDto> inventory) {
+        return ProductExport.builder()
+                .id(product.getId())
+                .sku(product.getSku())
+                .brand(product.getBrand())
+                .name(product.getName())
+                .description(product.getDescription())
+                .gender(product.getGender())
+                .category(product.getCategory())
+                .price(product.getPrice())
+                .active(product.isActive())
+                .inventory(inventory)
+                .build();
+    }
 }
@@ -0,0 +1,52 @@
+-- Moves an existing database from one order_line_item row per unit to one row
+-- per product size of an order, with a quantity. Run once, with the previous
+-- version stopped, before deploying, then run db/order-line-item-unit.sql to
+-- create the order_line_item_unit view.
+--
+-- The lowest ID of each product size of an order is kept as its line. Sold
+-- inventory items are linked to that line instead of the line linking to one
+-- item, and the returned units are kept as a count on the line.
+BEGIN;
+
+ALTER TABLE order_line_item ADD COLUMN quantity integer;
+ALTER TABLE order_line_item ADD COLUMN returned_quantity integer;
+ALTER TABLE inventory ADD COLUMN order_line_item_id bigint;
+
+CREATE TEMPORARY TABLE order_line_item_group ON COMMIT DROP AS
+SELECT id,
+       MIN(id) OVER (PARTITION BY order_id, product_id, size) AS line_id,
+       inventory_item_id,
+       is_returned
+FROM order_line_item;
+
+UPDATE inventory i
+SET order_line_item_id = g.line_id
+FROM order_line_item_group g
+WHERE g.inventory_item_id = i.id;
+
+UPDATE order_line_item l
+SET quantity = g.quantity,
+    returned_quantity = g.returned_quantity
+FROM (
+    SELECT line_id,
+           COUNT(*) AS quantity,
+           COUNT(*) FILTER (WHERE is_returned) AS returned_quantity
+    FROM order_line_item_group
+    GROUP BY line_id
+) g
+WHERE l.id = g.line_id;
+
+DELETE FROM order_line_item l
+USING order_line_item_group g
+WHERE l.id = g.id AND g.id <> g.line_id;
+
+ALTER TABLE order_line_item
+    ALTER COLUMN quantity SET NOT NULL,
+    ALTER COLUMN returned_quantity SET NOT NULL,
+    DROP COLUMN inventory_item_id,
+    DROP COLUMN is_returned;
+ALTER TABLE inventory
+    ADD CONSTRAINT inventory_order_line_item_fk
+    FOREIGN KEY (order_line_item_id) REFERENCES order_line_item (id);
+
+COMMIT;
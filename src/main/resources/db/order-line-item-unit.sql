@@ -0,0 +1,34 @@
+-- One row per unit ordered, in the shape of the old order_line_item table, for
+-- reports and returns tooling that work with individual units. The first
+-- returned_quantity units of a line count as returned, and each unit is
+-- matched to a sold inventory item when units are stored individually.
+--
+-- Hibernate runs this after creating a new schema (see
+-- hibernate.hbm2ddl.import_files). Existing databases get it from
+-- db/order-line-item-quantity.sql. The unit numbers come from a recursive
+-- query rather than generate_series so the view also builds on H2 in tests.
+CREATE OR REPLACE VIEW order_line_item_unit AS
+WITH RECURSIVE units (unit) AS (
+    SELECT 1
+    UNION ALL
+    SELECT unit + 1
+    FROM units
+    WHERE unit < (SELECT MAX(quantity) FROM order_line_item)
+)
+SELECT l.id AS order_line_item_id,
+       l.order_id,
+       l.product_id,
+       l.size,
+       u.unit,
+       i.id AS inventory_item_id,
+       u.unit <= l.returned_quantity AS is_returned
+FROM order_line_item l
+JOIN units u ON u.unit <= l.quantity
+LEFT JOIN (
+    SELECT id,
+           order_line_item_id,
+           ROW_NUMBER() OVER (PARTITION BY order_line_item_id ORDER BY id)
+               AS unit
+    FROM inventory
+    WHERE order_line_item_id IS NOT NULL
+) i ON i.order_line_item_id = l.id AND i.unit = u.unit;
@@ -0,0 +1,30 @@
+-- Switches the entity sequences of an existing database to the pooled-lo ID
+-- allocation used by PooledSequenceGenerator. Run once before deploying, with
+-- the increment matching spring.jpa.properties.springcart.id.block_size.
+--
+-- Instances of the previous version that are already running can keep
+-- serving requests after the change: every nextval after it is above the
+-- current maximum ID, and each value reserves the block above it, so
+-- instances allocating one ID at a time and instances allocating blocks never
+-- hand out the same ID.
+--
+-- An instance of the previous version that starts after the change will
+-- refuse to boot, as Hibernate checks that each sequence's increment matches
+-- the entity's allocation size of 1. Roll out in this order:
+--   1. Stop autoscaling and restarts of the previous version.
+--   2. Run this script.
+--   3. Deploy the new version and retire the previous one.
+-- If previous instances may still restart during the rollout, start them
+-- with spring.jpa.properties.hibernate.id.sequence.increment_size_mismatch_strategy=LOG
+-- so they keep allocating one ID at a time. Don't use FIX: it switches them
+-- to the pooled optimizer, which hands out the block below each value and
+-- clashes with the blocks above it handed out by the new version.
+ALTER SEQUENCE admin_sequence INCREMENT BY 50;
+ALTER SEQUENCE cart_sequence INCREMENT BY 50;
+ALTER SEQUENCE customer_sequence INCREMENT BY 50;
+ALTER SEQUENCE inventory_sequence INCREMENT BY 50;
+ALTER SEQUENCE order_sequence INCREMENT BY 50;
+ALTER SEQUENCE order_line_item_sequence INCREMENT BY 50;
+ALTER SEQUENCE product_sequence INCREMENT BY 50;
+ALTER SEQUENCE product_stock_sequence INCREMENT BY 50;
+ALTER SEQUENCE stock_movement_sequence INCREMENT BY 50;
@@ -0,0 +1,4 @@
+-- Adds the index used by the price sorted product listings when they fall back
+-- to the database. Run once on an existing database before deploying.
+CREATE INDEX IF NOT EXISTS product_active_price_idx
+    ON product (is_active, price, id);
@@ -0,0 +1,173 @@
+package com.neil.springcart.benchmark;
+
+import com.neil.springcart.dto.CreateOrderRequest;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.OrderLineItemDto;
+import com.neil.springcart.model.*;
+import com.neil.springcart.repository.*;
+import com.neil.springcart.service.InventoryService;
+import com.neil.springcart.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures rows written per second for a bulk restock and a large order, with
+ * one statement per row and with JDBC batching. Each mode gets its own
+ * in-memory database. Run with {@code ./mvnw test -Pbenchmark}, or point
+ * {@code spring.datasource.url} at PostgreSQL for real numbers.
+ */
+@Tag("benchmark")
+@Slf4j
+class BatchWriteBenchmark {
+    private static final int RESTOCK_UNITS = 20_000;
+    private static final int ORDER_UNITS = 2_000;
+    private static final int RUNS = 3;
+
+    @Nested
+    @ActiveProfiles("test")
+    @SpringBootTest(properties = {
+            "inventory.mode=items",
+            "spring.datasource.url=jdbc:h2:mem:unbatched;DB_CLOSE_DELAY=-1",
+            "spring.jpa.properties.hibernate.jdbc.batch_size=1",
+            "spring.jpa.properties.springcart.id.block_size=1"
+    })
+    class OneStatementPerRow extends Scenario {
+        OneStatementPerRow() {
+            super("one statement per row");
+        }
+    }
+
+    @Nested
+    @ActiveProfiles("test")
+    @SpringBootTest(properties = {
+            "inventory.mode=items",
+            "spring.datasource.url=jdbc:h2:mem:batched;DB_CLOSE_DELAY=-1",
+            "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+            "spring.jpa.properties.springcart.id.block_size=50"
+    })
+    class Batched extends Scenario {
+        Batched() {
+            super("batched");
+        }
+    }
+
+    abstract static class Scenario {
+        private final String mode;
+
+        @Autowired
+        private InventoryService inventoryService;
+        @Autowired
+        private OrderService orderService;
+        @Autowired
+        private OrderRepository orderRepository;
+        @Autowired
+        private OrderLineItemRepository orderLineItemRepository;
+        @Autowired
+        private InventoryItemRepository inventoryItemRepository;
+        @Autowired
+        private CustomerRepository customerRepository;
+        @Autowired
+        private ProductRepository productRepository;
+
+        Scenario(String mode) {
+            this.mode = mode;
+        }
+
+        @AfterEach
+        void tearDown() {
+            // Sold inventory items reference their order line item
+            inventoryItemRepository.deleteAllInBatch();
+            orderLineItemRepository.deleteAllInBatch();
+            orderRepository.deleteAllInBatch();
+            customerRepository.deleteAllInBatch();
+            productRepository.deleteAllInBatch();
+        }
+
+        @Test
+        void bulkRestock() {
+            for (int run = 0; run < RUNS; run++) {
+                Product product = productRepository.save(buildProduct());
+                long start = System.nanoTime();
+                inventoryService.addStock(product, List.of(
+                        new InventoryDto(ProductSize.S, RESTOCK_UNITS / 2),
+                        new InventoryDto(ProductSize.M, RESTOCK_UNITS / 2)
+                ));
+                logRate("restock", RESTOCK_UNITS, System.nanoTime() - start);
+            }
+            assertThat(inventoryItemRepository.count())
+                    .isEqualTo((long) RESTOCK_UNITS * RUNS);
+        }
+
+        @Test
+        void largeOrder() {
+            Customer customer = customerRepository.save(buildCustomer());
+            for (int run = 0; run < RUNS; run++) {
+                Product product = productRepository.save(buildProduct());
+                inventoryService.addStock(product, List.of(
+                        new InventoryDto(ProductSize.M, ORDER_UNITS)
+                ));
+                CreateOrderRequest request = new CreateOrderRequest(
+                        customer.getId(),
+                        List.of(new OrderLineItemDto(product.getId(),
+                                ProductSize.M, ORDER_UNITS)),
+                        buildAddress());
+                long start = System.nanoTime();
+                orderService.createOrder(request);
+                logRate("order", ORDER_UNITS, System.nanoTime() - start);
+            }
+            // Each order is one line for all of its units
+            assertThat(orderLineItemRepository.count()).isEqualTo(RUNS);
+            assertThat(inventoryItemRepository.findAll())
+                    .allMatch(InventoryItem::isSold);
+        }
+
+        private void logRate(String operation, int rows, long nanos) {
+            double rowsPerSecond = rows / (nanos / 1e9);
+            log.info("{} ({}): {} rows in {} ms, {} rows/sec", operation, mode,
+                    rows, String.format("%.1f", nanos / 1e6),
+                    String.format("%.0f", rowsPerSecond));
+        }
+    }
+
+    private static Customer buildCustomer() {
+        return Customer.builder()
+                .name("name")
+                .email("benchmark@gmail.com")
+                .password("password")
+                .build();
+    }
+
+    private static Product buildProduct() {
+        return Product.builder()
+                .brand("brand")
+                .name("name")
+                .description("description")
+                .category(ProductCategory.SPORTSWEAR)
+                .gender(ProductGender.MALE)
+                .price(50)
+                .isActive(true)
+                .inventory(new ArrayList<>())
+                .build();
+    }
+
+    private static Address buildAddress() {
+        return Address.builder()
+                .streetAddress("123 test st")
+                .suburb("suburb")
+                .state(AuState.NSW)
+                .postcode(2000)
+                .country("Australia")
+                .build();
+    }
+}
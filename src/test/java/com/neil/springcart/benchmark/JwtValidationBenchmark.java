@@ -0,0 +1,92 @@
+package com.neil.springcart.benchmark;
+
+import com.neil.springcart.model.Customer;
+import com.neil.springcart.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the token checks the JWT filter used to make, parsing the token
+ * three times and rebuilding the key and parser each time, with a single parse
+ * against the parser built at startup. Run with
+ * {@code ./mvnw test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JwtValidationBenchmark {
+    private String secretKey;
+    private JwtUtil jwtUtil;
+    private Customer customer;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        byte[] keyBytes = new byte[64];
+        new SecureRandom().nextBytes(keyBytes);
+        secretKey = Encoders.BASE64.encode(keyBytes);
+        jwtUtil = new JwtUtil(new MockEnvironment()
+                .withProperty("jwt.key", secretKey));
+        customer = Customer.builder()
+                .id(1L)
+                .name("name")
+                .email("test@gmail.com")
+                .password("password")
+                .build();
+        token = jwtUtil.generateToken(customer);
+    }
+
+    @Benchmark
+    public boolean rebuildParserAndParseThreeTimes() {
+        // extractUsername in the filter, then extractUsername and
+        // extractExpiration in isTokenValid
+        String username = parseWithNewParser(token).getSubject();
+        return username.equals(customer.getUsername())
+                && parseWithNewParser(token).getSubject().equals(username)
+                && parseWithNewParser(token).getExpiration().after(new Date());
+    }
+
+    @Benchmark
+    public boolean validateTokenOnce() {
+        return jwtUtil.isTokenValid(jwtUtil.validateToken(token), customer);
+    }
+
+    @Test
+    void runBenchmarks() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtValidationBenchmark.class.getSimpleName())
+                // Run in the test JVM so the Surefire classpath is reused
+                .forks(0)
+                .build();
+        new Runner(options).run();
+    }
+
+    private Claims parseWithNewParser(String token) {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        return Jwts
+                .parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,140 @@
+package com.neil.springcart.benchmark;
+
+import com.neil.springcart.dto.CreateOrderRequest;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.OrderLineItemDto;
+import com.neil.springcart.model.*;
+import com.neil.springcart.repository.*;
+import com.neil.springcart.service.InventoryService;
+import com.neil.springcart.service.OrderService;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the time and the number of SQL statements it takes to create an
+ * order with 1, 10 and 100 lines, each for a different product. Products and
+ * their stock are looked up with one query each however many lines there
+ * are, so only the stock reservations and inserts grow with the order. Run
+ * with {@code ./mvnw test -Pbenchmark}, or point
+ * {@code spring.datasource.url} at PostgreSQL for real numbers.
+ */
+@Tag("benchmark")
+@Slf4j
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "inventory.mode=items",
+        "spring.datasource.url=jdbc:h2:mem:orderlookup;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class OrderLookupBenchmark {
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 10;
+
+    @Autowired
+    private InventoryService inventoryService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderLineItemRepository orderLineItemRepository;
+    @Autowired
+    private InventoryItemRepository inventoryItemRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        // Sold inventory items reference their order line item
+        inventoryItemRepository.deleteAllInBatch();
+        orderLineItemRepository.deleteAllInBatch();
+        orderRepository.deleteAllInBatch();
+        customerRepository.deleteAllInBatch();
+        productRepository.deleteAllInBatch();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 10, 100 })
+    void createOrder(int lines) {
+        Customer customer = customerRepository.save(buildCustomer());
+        int runs = WARMUP_RUNS + RUNS;
+        List<OrderLineItemDto> items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            Product product = productRepository.save(buildProduct());
+            inventoryService.addStock(product, List.of(
+                    new InventoryDto(ProductSize.M, runs)));
+            items.add(new OrderLineItemDto(product.getId(), ProductSize.M, 1));
+        }
+        CreateOrderRequest request = new CreateOrderRequest(customer.getId(),
+                items, buildAddress());
+        Statistics statistics = entityManagerFactory
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+
+        for (int run = 0; run < WARMUP_RUNS; run++) {
+            orderService.createOrder(request);
+        }
+        statistics.clear();
+        long start = System.nanoTime();
+        for (int run = 0; run < RUNS; run++) {
+            orderService.createOrder(request);
+        }
+        long nanos = System.nanoTime() - start;
+
+        log.info("order with {} line(s): {} ms per order, {} statements per "
+                        + "order", lines,
+                String.format("%.2f", nanos / 1e6 / RUNS),
+                statistics.getPrepareStatementCount() / RUNS);
+        assertThat(orderLineItemRepository.count())
+                .isEqualTo((long) lines * runs);
+    }
+
+    private static Customer buildCustomer() {
+        return Customer.builder()
+                .name("name")
+                .email("benchmark@gmail.com")
+                .password("password")
+                .build();
+    }
+
+    private static Product buildProduct() {
+        return Product.builder()
+                .brand("brand")
+                .name("name")
+                .description("description")
+                .category(ProductCategory.SPORTSWEAR)
+                .gender(ProductGender.MALE)
+                .price(50)
+                .isActive(true)
+                .inventory(new ArrayList<>())
+                .build();
+    }
+
+    private static Address buildAddress() {
+        return Address.builder()
+                .streetAddress("123 test st")
+                .suburb("suburb")
+                .state(AuState.NSW)
+                .postcode(2000)
+                .country("Australia")
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.neil.springcart.benchmark;
+
+import com.neil.springcart.security.PasswordEncoders;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of checking a password at sign in for each supported
+ * algorithm, with the settings the application uses. Reports the latency of a
+ * single check on an idle machine, and the number of checks per second with
+ * every core busy. Run with {@code ./mvnw test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Slf4j
+public class PasswordHashingBenchmark {
+    private static final int BCRYPT_STRENGTH = 10;
+
+    @Param({ PasswordEncoders.BCRYPT, PasswordEncoders.ARGON2,
+            PasswordEncoders.PBKDF2 })
+    public String algorithm;
+
+    private PasswordEncoder passwordEncoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        passwordEncoder = PasswordEncoders.createEncoders(BCRYPT_STRENGTH)
+                .get(algorithm);
+        hash = passwordEncoder.encode("password");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches("password", hash);
+    }
+
+    @Test
+    void runBenchmarks() throws RunnerException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Options latency = new OptionsBuilder()
+                .include(PasswordHashingBenchmark.class.getSimpleName())
+                .mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MILLISECONDS)
+                .threads(1)
+                // Run in the test JVM so the Surefire classpath is reused
+                .forks(0)
+                .build();
+        Options throughput = new OptionsBuilder()
+                .include(PasswordHashingBenchmark.class.getSimpleName())
+                .mode(Mode.Throughput)
+                .timeUnit(TimeUnit.SECONDS)
+                .threads(cores)
+                .forks(0)
+                .build();
+
+        Collection<RunResult> latencyResults = new Runner(latency).run();
+        Collection<RunResult> throughputResults = new Runner(throughput).run();
+        latencyResults.forEach(result -> log.info("{}: {} ms per login",
+                result.getParams().getParam("algorithm"),
+                String.format("%.2f", result.getPrimaryResult().getScore())));
+        throughputResults.forEach(result -> log.info(
+                "{}: {} logins per second on {} cores",
+                result.getParams().getParam("algorithm"),
+                String.format("%.1f", result.getPrimaryResult().getScore()),
+                cores));
+    }
+}
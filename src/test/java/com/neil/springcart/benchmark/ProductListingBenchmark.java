@@ -0,0 +1,88 @@
+package com.neil.springcart.benchmark;
+
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the gender and category listing query as archived products pile
+ * up. Only the active products should be read, so the time per query should
+ * stay roughly flat. Run with {@code ./mvnw test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@DataJpaTest
+@ActiveProfiles("test")
+@Slf4j
+class ProductListingBenchmark {
+    private static final int ACTIVE_PRODUCTS = 200;
+    private static final int[] ARCHIVED_PRODUCTS = { 0, 10_000, 50_000 };
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 100;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void findAllByGenderAndCategoryStaysFlatAsArchivedProductsAccumulate() {
+        saveProducts(ACTIVE_PRODUCTS, true);
+        int archived = 0;
+        for (int target : ARCHIVED_PRODUCTS) {
+            saveProducts(target - archived, false);
+            archived = target;
+
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                runListingQuery();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertThat(runListingQuery()).isEqualTo(ACTIVE_PRODUCTS);
+            }
+            double averageMs = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+            log.info("{} archived products: {} ms per listing query", archived,
+                    String.format("%.3f", averageMs));
+        }
+    }
+
+    private int runListingQuery() {
+        int size = productRepository.findAllByGenderAndCategory(
+                ProductGender.MALE, ProductCategory.SPORTSWEAR).size();
+        // Don't let the persistence context cache the results between runs
+        entityManager.clear();
+        return size;
+    }
+
+    private void saveProducts(int count, boolean isActive) {
+        for (int i = 0; i < count; i++) {
+            entityManager.persist(Product.builder()
+                    .brand("brand")
+                    .name("product " + i)
+                    .description("description")
+                    .category(ProductCategory.SPORTSWEAR)
+                    .gender(ProductGender.MALE)
+                    .price(50)
+                    .isActive(isActive)
+                    .inventory(new ArrayList<>())
+                    .build());
+            if (i % 1000 == 999) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -3,6 +3,7 @@ package com.neil.springcart.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neil.springcart.dto.CartRequest;
 import com.neil.springcart.model.*;
+import com.neil.springcart.repository.CartItemRepository;
 import com.neil.springcart.repository.CartRepository;
 import com.neil.springcart.repository.CustomerRepository;
 import com.neil.springcart.repository.ProductRepository;
@@ -21,7 +22,6 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -41,12 +41,15 @@ class CartControllerTest {
     @Autowired
     private CartRepository cartRepository;
     @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
     private ProductRepository productRepository;
     @Autowired
     private JwtUtil jwtUtil;
 
     @AfterEach
     void tearDown() {
+        cartItemRepository.deleteAll();
         customerRepository.deleteAll();
         cartRepository.deleteAll();
         productRepository.deleteAll();
@@ -56,7 +59,7 @@ class CartControllerTest {
     void getCustomerCartShouldReturnCartDetails() throws Exception {
         // Given a customer makes a request to get their cart details
         Customer customer = saveCustomer();
-        Cart cart = saveCart(customer, new ArrayList<>());
+        Cart cart = saveCart(customer);
         String token = getToken(customer);
         HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
         String endpoint = "/api/v1/cart/customer/" + customer.getId();
@@ -74,11 +77,11 @@ class CartControllerTest {
         // Given the product with ID 1 is not in the cart with ID 1
         Product product = saveProduct(1L);
         Customer customer = saveCustomer();
-        Cart cart = saveCart(customer, new ArrayList<>());
+        Cart cart = saveCart(customer);
         String token = getToken(customer);
         HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
         CartRequest request = new CartRequest(customer.getId(),
-                product.getId());
+                product.getId(), ProductSize.M, 2);
         String requestJson = objectMapper.writeValueAsString(request);
         // When a request is made with cart ID 1 and product ID 1
         mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/cart/add")
@@ -86,9 +89,35 @@ class CartControllerTest {
                         .headers(headers)
                         .content(requestJson))
                 .andExpect(status().isOk());
-        Optional<Cart> optionalCart = cartRepository.findById(cart.getId());
-        assertThat(optionalCart.isPresent()).isTrue();
-        assertThat(optionalCart.get().getProducts().size()).isEqualTo(1);
+        List<CartItem> items = cartItemRepository.findAllByCartId(
+                cart.getId());
+        assertThat(items.size()).isEqualTo(1);
+        assertThat(items.get(0).getQuantity()).isEqualTo(2);
+    }
+
+    @Test
+    void addProductToCartShouldAddToTheQuantityOfAnExistingLine() throws Exception {
+        // Given the cart already has 1 of the product in size M
+        Customer customer = saveCustomer();
+        Product product = saveProduct(1L);
+        Cart cart = saveCart(customer);
+        saveCartItem(cart, product, ProductSize.M);
+        String token = getToken(customer);
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        CartRequest request = new CartRequest(customer.getId(),
+                product.getId(), ProductSize.M, 3);
+        String requestJson = objectMapper.writeValueAsString(request);
+        // When a request is made to add 3 more in size M
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/cart/add")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .headers(headers)
+                        .content(requestJson))
+                .andExpect(status().isOk());
+        // Then the cart still has one line with a quantity of 4
+        List<CartItem> items = cartItemRepository.findAllByCartId(
+                cart.getId());
+        assertThat(items.size()).isEqualTo(1);
+        assertThat(items.get(0).getQuantity()).isEqualTo(4);
     }
 
     @Test
@@ -96,13 +125,12 @@ class CartControllerTest {
         // Given the product with ID 1 is in the cart with ID 1
         Customer customer = saveCustomer();
         Product product = saveProduct(1L);
-        List<Product> cartProducts = new ArrayList<>();
-        cartProducts.add(product);
-        Cart cart = saveCart(customer, cartProducts);
+        Cart cart = saveCart(customer);
+        saveCartItem(cart, product, ProductSize.M);
         String token = getToken(customer);
         HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
         CartRequest request = new CartRequest(customer.getId(),
-                product.getId());
+                product.getId(), ProductSize.M, null);
         String requestJson = objectMapper.writeValueAsString(request);
         // When a request is made with cart ID 1 and product ID 1
         mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/cart/remove")
@@ -110,9 +138,8 @@ class CartControllerTest {
                         .headers(headers)
                         .content(requestJson))
                 .andExpect(status().isOk());
-        Optional<Cart> optionalCart = cartRepository.findById(cart.getId());
-        assertThat(optionalCart.isPresent()).isTrue();
-        assertThat(optionalCart.get().getProducts().size()).isEqualTo(0);
+        assertThat(cartItemRepository.findAllByCartId(cart.getId()).size())
+                .isEqualTo(0);
     }
 
     private Product saveProduct(Long id) {
@@ -135,18 +162,28 @@ class CartControllerTest {
                 .build();
     }
 
-    private Cart saveCart(Customer customer, List<Product> products) {
-        Cart cart = buildCart(customer, products);
+    private Cart saveCart(Customer customer) {
+        Cart cart = buildCart(customer);
         return cartRepository.save(cart);
     }
 
-    private Cart buildCart(Customer customer, List<Product> products) {
+    private Cart buildCart(Customer customer) {
         return Cart.builder()
-                .products(products)
+                .items(new ArrayList<>())
                 .customer(customer)
                 .build();
     }
 
+    private CartItem saveCartItem(Cart cart, Product product,
+                                  ProductSize size) {
+        return cartItemRepository.save(CartItem.builder()
+                .cart(cart)
+                .product(product)
+                .size(size)
+                .quantity(1)
+                .build());
+    }
+
     private String getToken(Customer customer) {
         return jwtUtil.generateToken(customer);
     }
@@ -6,6 +6,7 @@ import com.neil.springcart.dto.RegisterRequest;
 import com.neil.springcart.model.Customer;
 import com.neil.springcart.repository.CartRepository;
 import com.neil.springcart.repository.CustomerRepository;
+import com.neil.springcart.util.JwtUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +34,8 @@ class CustomerAuthControllerTest {
     private CartRepository cartRepository;
     @Autowired
     private PasswordEncoder passwordEncoder;
+    @Autowired
+    private JwtUtil jwtUtil;
 
     @AfterEach
     void tearDown() {
@@ -124,6 +127,22 @@ class CustomerAuthControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void logoutRouteShouldRevokeTheToken() throws Exception {
+        // Given a customer is signed in with a JWT token
+        Customer customer = buildCustomer("test@gmail.com", "password");
+        customerRepository.save(customer);
+        String token = jwtUtil.generateToken(customer);
+        // When a request is made to the /logout route
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/logout")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isNoContent());
+        // Then the token can no longer be used to authenticate
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/auth/logout")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
     private void saveCustomerToDb(String email) {
         Customer customer = buildCustomer(email, "password");
         customerRepository.save(customer);
@@ -10,6 +10,7 @@ import com.neil.springcart.repository.AdminRepository;
 import com.neil.springcart.repository.CustomerRepository;
 import com.neil.springcart.repository.InventoryItemRepository;
 import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.service.ProductSearchIndex;
 import com.neil.springcart.util.JwtUtil;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -29,6 +30,8 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ActiveProfiles("test")
@@ -49,6 +52,8 @@ class InternalProductControllerTest {
     private InventoryItemRepository inventoryItemRepository;
     @Autowired
     private JwtUtil jwtUtils;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
 
     @AfterEach
     void tearDown() {
@@ -80,6 +85,52 @@ class InternalProductControllerTest {
                 .isEqualTo(getTotalStock(request));
     }
 
+    @Test
+    @WithMockUser(authorities = { "ADMIN" })
+    void handleCsvImportCreatesProductsAndReportsInvalidRows()
+            throws Exception {
+        // When an admin uploads a CSV file with a valid and an invalid row
+        Admin admin = createAdmin();
+        String token = generateUserToken(admin);
+        String csv = "brand,name,description,category,gender,price,inventory\n"
+                + "brand,imported,description,SPORTSWEAR,MALE,50,S:5|L:10\n"
+                + "brand,name,description,SPORTSWEAR,MALE,free,S:5\n";
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        // Then a 200 status is returned with a report of the import, and the
+        // valid row is saved in the database
+        mockMvc.perform(MockMvcRequestBuilders.post("/internal/products/import")
+                        .contentType("text/csv")
+                        .headers(requestHeaders)
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productsCreated").value(1))
+                .andExpect(jsonPath("$.rowsFailed").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].message")
+                        .value("Invalid price"));
+        assertThat(productRepository.findAll().size()).isEqualTo(1);
+        assertThat(inventoryItemRepository.findAll().size()).isEqualTo(15);
+        // And the search index is rebuilt to include the new product
+        assertThat(productSearchIndex.search("imported", 10)).hasSize(1);
+    }
+
+    @Test
+    @WithMockUser(authorities = { "ADMIN" })
+    void handleGetRunningImportsReturnsAnEmptyListWhenNothingIsImporting()
+            throws Exception {
+        // When an admin asks for the running imports while none are running
+        Admin admin = createAdmin();
+        String token = generateUserToken(admin);
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        // Then a 200 status is returned with an empty list
+        mockMvc.perform(MockMvcRequestBuilders.get("/internal/products/import")
+                        .headers(requestHeaders))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
     @Test
     void handleNewProductReturns403StatusWhenANonAdminMakesTheRequest()
             throws Exception {
@@ -208,6 +259,35 @@ class InternalProductControllerTest {
         updatedProduct.ifPresent(p -> assertThat(p.isActive()).isTrue());
     }
 
+    @Test
+    @WithMockUser(authorities = { "ADMIN" })
+    void handleExportWritesProductsWithStockAsCsv() throws Exception {
+        // When a request is coming from an admin and their JWT token and
+        // a product has 2 items of inventory
+        Admin admin = createAdmin();
+        String token = generateUserToken(admin);
+        Product product = saveProductToDb("name", "soft, cotton", List.of(
+                buildInventory(ProductSize.S),
+                buildInventory(ProductSize.S)
+        ));
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.set(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        // Then a 200 status is returned with the product and its stock as
+        // a CSV attachment
+        String csv = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/internal/products/export")
+                        .param("format", "CSV")
+                        .headers(requestHeaders))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"products.csv\""))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(csv.split("\n")).containsExactly(
+                "id,sku,brand,name,description,category,gender,price,active,inventory",
+                product.getId() + "," + product.getSku()
+                        + ",brand,name,\"soft, cotton\",SPORTSWEAR,MALE,50.0,true,S:2");
+    }
+
     private String generateUserToken(UserDetails user) {
         return jwtUtils.generateToken(user);
     }
@@ -1,6 +1,7 @@
 package com.neil.springcart.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neil.springcart.dto.CheckoutRequest;
 import com.neil.springcart.dto.CreateOrderRequest;
 import com.neil.springcart.dto.OrderLineItemDto;
 import com.neil.springcart.model.*;
@@ -46,13 +47,19 @@ class OrderControllerTest {
     @Autowired
     private InventoryItemRepository inventoryItemRepository;
     @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
     private JwtUtil jwtUtil;
 
     @AfterEach
     void tearDown() {
         orderLineItemRepository.deleteAll();
         orderRepository.deleteAll();
+        cartItemRepository.deleteAll();
         customerRepository.deleteAll();
+        cartRepository.deleteAll();
         inventoryItemRepository.deleteAll();
         productRepository.deleteAll();
     }
@@ -79,10 +86,76 @@ class OrderControllerTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isCreated());
 
-        // Then an order is created and 2 items are included in the order
+        // Then an order is created with 1 line for 2 items
         assertThat(orderRepository.findAll().size()).isEqualTo(1);
-        assertThat(orderLineItemRepository.findAll().size())
-                .isEqualTo(2);
+        List<OrderLineItem> lines = orderLineItemRepository.findAll();
+        assertThat(lines.size()).isEqualTo(1);
+        assertThat(lines.get(0).getQuantity()).isEqualTo(2);
+    }
+
+    @Test
+    void createOrderFromCartCreatesAnOrderAndEmptiesTheCart() throws Exception {
+        // Given the customer's cart has 2 of a product in size S, which has
+        // 3 inventory items in stock
+        Customer customer = saveCustomer();
+        Product product = saveProduct();
+        saveInventory(product, ProductSize.S, 3);
+        Cart cart = cartRepository.save(Cart.builder()
+                .customer(customer)
+                .items(new ArrayList<>())
+                .build());
+        cartItemRepository.save(CartItem.builder()
+                .cart(cart)
+                .product(product)
+                .size(ProductSize.S)
+                .quantity(2)
+                .build());
+
+        // When a request is made to check out the cart
+        CheckoutRequest request = new CheckoutRequest(customer.getId(),
+                buildAddress());
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(
+                getCustomerToken(customer));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/orders/from-cart")
+                .headers(headers)
+                .content(objectMapper.writeValueAsString(request))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated());
+
+        // Then an order with 1 line for 2 items is created, the stock is
+        // taken and the cart is empty
+        assertThat(orderRepository.findAll().size()).isEqualTo(1);
+        List<OrderLineItem> lines = orderLineItemRepository.findAll();
+        assertThat(lines.size()).isEqualTo(1);
+        assertThat(lines.get(0).getQuantity()).isEqualTo(2);
+        assertThat(inventoryItemRepository.findAll().stream()
+                .filter(InventoryItem::isSold)
+                .count()).isEqualTo(2);
+        assertThat(cartItemRepository.findAllByCartId(cart.getId())).isEmpty();
+    }
+
+    @Test
+    void createOrderFromCartReturnsBadRequestIfTheCartIsEmpty() throws Exception {
+        // Given the customer's cart is empty
+        Customer customer = saveCustomer();
+        cartRepository.save(Cart.builder()
+                .customer(customer)
+                .items(new ArrayList<>())
+                .build());
+
+        // When a request is made to check out the cart
+        CheckoutRequest request = new CheckoutRequest(customer.getId(),
+                buildAddress());
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(
+                getCustomerToken(customer));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/orders/from-cart")
+                .headers(headers)
+                .content(objectMapper.writeValueAsString(request))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        // Then no order is created
+        assertThat(orderRepository.findAll()).isEmpty();
     }
 
     @Test
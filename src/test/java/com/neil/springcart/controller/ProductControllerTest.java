@@ -1,11 +1,16 @@
 package com.neil.springcart.controller;
 
+import com.jayway.jsonpath.JsonPath;
+import com.neil.springcart.dto.ProductSort;
 import com.neil.springcart.model.Customer;
 import com.neil.springcart.model.Product;
 import com.neil.springcart.model.ProductCategory;
 import com.neil.springcart.model.ProductGender;
 import com.neil.springcart.repository.CustomerRepository;
 import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.service.ProductFacetIndex;
+import com.neil.springcart.service.ProductPriceIndex;
+import com.neil.springcart.service.ProductSearchIndex;
 import com.neil.springcart.util.HttpUtil;
 import com.neil.springcart.util.JwtUtil;
 import org.junit.jupiter.api.AfterEach;
@@ -13,13 +18,20 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doReturn;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ActiveProfiles("test")
@@ -34,11 +46,128 @@ class ProductControllerTest {
     private ProductRepository productRepository;
     @Autowired
     private JwtUtil jwtUtil;
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+    @SpyBean
+    private ProductPriceIndex productPriceIndex;
 
     @AfterEach
     void tearDown() {
         customerRepository.deleteAll();
         productRepository.deleteAll();
+        productSearchIndex.rebuild();
+        productFacetIndex.rebuild();
+        productPriceIndex.rebuild();
+    }
+
+    @Test
+    void getProductPageByPriceReturnsProductsInThePriceRange() throws Exception {
+        // Given there are products priced 20, 50 and 80
+        saveProduct("cheap", 20);
+        saveProduct("mid", 50);
+        saveProduct("dear", 80);
+        productPriceIndex.rebuild();
+        String token = getToken();
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        // When a request is made for products from 30 upwards, most expensive
+        // first, then the two products in the range are returned in order
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/by-price")
+                        .param("sort", "price_desc")
+                        .param("minPrice", "30")
+                        .headers(headers))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].name").value("dear"))
+                .andExpect(jsonPath("$.items[1].name").value("mid"));
+    }
+
+    @Test
+    void getProductPageByPricePagesThroughEveryProductFromTheIndex() throws Exception {
+        // Given there are 5 products, two of them with the same price
+        savePricedProducts();
+        productPriceIndex.rebuild();
+        String token = getToken();
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        // When the products are paged through 2 at a time in both directions
+        // Then every product is returned once, in order of price and then ID
+        assertThat(getAllPagesByPrice(ProductSort.PRICE_ASC, headers))
+                .containsExactly("a", "b", "c", "d", "e");
+        assertThat(getAllPagesByPrice(ProductSort.PRICE_DESC, headers))
+                .containsExactly("e", "d", "c", "b", "a");
+    }
+
+    @Test
+    void getProductPageByPricePagesThroughEveryProductFromTheDatabase() throws Exception {
+        // Given there are 5 products, two of them with the same price, and the
+        // price index is unavailable
+        savePricedProducts();
+        doReturn(Optional.empty()).when(productPriceIndex).getPage(any(),
+                anyDouble(), anyDouble(), any(), anyInt());
+        String token = getToken();
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        // When the products are paged through 2 at a time in both directions
+        // Then every product is returned once, in order of price and then ID
+        assertThat(getAllPagesByPrice(ProductSort.PRICE_ASC, headers))
+                .containsExactly("a", "b", "c", "d", "e");
+        assertThat(getAllPagesByPrice(ProductSort.PRICE_DESC, headers))
+                .containsExactly("e", "d", "c", "b", "a");
+    }
+
+    @Test
+    void browseProductsReturnsMatchingProductsWithFacetCounts() throws Exception {
+        // Given there is a male t-shirt, a female t-shirt and a male pair of
+        // pants
+        saveProduct("tee", ProductGender.MALE, ProductCategory.TSHIRTS);
+        saveProduct("tee", ProductGender.FEMALE, ProductCategory.TSHIRTS);
+        saveProduct("pants", ProductGender.MALE, ProductCategory.PANTS);
+        productFacetIndex.rebuild();
+        String token = getToken();
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        // When a request is made for male t-shirts, then the male t-shirt is
+        // returned along with the counts for each facet
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/browse")
+                        .param("gender", "male")
+                        .param("category", "TSHIRTS")
+                        .headers(headers))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.facets.gender.FEMALE").value(1))
+                .andExpect(jsonPath("$.facets.category.PANTS").value(1))
+                .andExpect(jsonPath("$.facets.priceBand.FROM_50_TO_100")
+                        .value(1));
+    }
+
+    @Test
+    void searchProductsReturnsMatchingActiveProducts() throws Exception {
+        // Given there are 3 products, one of which doesn't match and one of
+        // which is archived
+        saveProduct("running jacket", true);
+        saveProduct("running shorts", false);
+        saveProduct("hoodie", true);
+        productSearchIndex.rebuild();
+        String token = getToken();
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        // When a search is made for "run", then only the active matching
+        // product is returned
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/search")
+                        .param("q", "run")
+                        .headers(headers))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("running jacket"));
+    }
+
+    @Test
+    void searchProductsReturnsBadRequestIfTheQueryIsBlank() throws Exception {
+        String token = getToken();
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/search")
+                        .param("q", " ")
+                        .headers(headers))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -56,6 +185,28 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.length()").value(1));
     }
 
+    @Test
+    void getAllProductsReturnsNotModifiedIfTheEtagMatches() throws Exception {
+        // Given a client already has the current product listing
+        saveProduct("product", true);
+        String token = getToken();
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        String etag = mockMvc.perform(MockMvcRequestBuilders
+                        .get("/api/v1/products")
+                        .headers(headers))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+        // When it requests the listing again with the ETag
+        // Then a 304 is returned
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products")
+                .headers(headers)
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
     @Test
     void getProductsByGenderReturnsOneProductIfThereIsOneProductForTheGivenGender() throws Exception {
         // Given there are 2 products and one of them is MALE
@@ -93,6 +244,22 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.length()").value(1));
     }
 
+    @Test
+    void getProductPageReturnsAPageWithANextCursorIfALimitIsGiven() throws Exception {
+        // Given there are 2 active products
+        saveProduct("product 1", true);
+        saveProduct("product 2", true);
+        String token = getToken();
+        HttpHeaders headers = HttpUtil.generateAuthorizationHeader(token);
+        // When a request is made with a limit of 1
+        // Then one product is returned with a cursor for the next page
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products?limit=1")
+                .headers(headers))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.nextCursor").isNumber());
+    }
+
     @Test
     void getProductReturnsProductDetailsIfAProductWithTheIdExists() throws Exception {
         // Given a product with ID 1 exists
@@ -108,6 +275,44 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.name").value(product.getName()));
     }
 
+    private void savePricedProducts() {
+        saveProduct("a", 20);
+        saveProduct("b", 50);
+        saveProduct("c", 50);
+        saveProduct("d", 80);
+        saveProduct("e", 110);
+    }
+
+    /**
+     * Follows the next cursor from the first page of products sorted by price
+     * to the last, and returns the names of the products in the order they
+     * were returned.
+     */
+    private List<String> getAllPagesByPrice(ProductSort sort,
+                                            HttpHeaders headers)
+            throws Exception {
+        List<String> names = new ArrayList<>();
+        Number cursor = null;
+        do {
+            MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                    .get("/api/v1/products/by-price")
+                    .param("sort", sort.name())
+                    .param("limit", "2")
+                    .headers(headers);
+            if (cursor != null) {
+                request.param("after", cursor.toString());
+            }
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            names.addAll(JsonPath.read(body, "$.items[*].name"));
+            cursor = JsonPath.read(body, "$.nextCursor");
+        } while (cursor != null);
+        return names;
+    }
+
     private Product saveProduct(String name, ProductGender gender,
                              ProductCategory category) {
         Product product = buildProduct(name, gender, category, true);
@@ -120,6 +325,13 @@ class ProductControllerTest {
         return productRepository.save(product);
     }
 
+    private Product saveProduct(String name, double price) {
+        Product product = buildProduct(name, ProductGender.UNISEX,
+                ProductCategory.SPORTSWEAR, true);
+        product.setPrice(price);
+        return productRepository.save(product);
+    }
+
     private Product saveProduct(String name, boolean isActive) {
         Product product = buildProduct(name, ProductGender.UNISEX,
                 ProductCategory.SPORTSWEAR, isActive);
@@ -0,0 +1,129 @@
+package com.neil.springcart.repository;
+
+import com.neil.springcart.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class CartItemRepositoryTest {
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+
+    @AfterEach
+    void tearDown() {
+        cartItemRepository.deleteAll();
+        cartRepository.deleteAll();
+        customerRepository.deleteAll();
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void incrementQuantityShouldOnlyUpdateTheLineForTheProductSize() {
+        // Given a cart has a product in sizes S and M
+        Cart cart = saveCart();
+        Product product = saveProduct();
+        saveCartItem(cart, product, ProductSize.S, 1);
+        saveCartItem(cart, product, ProductSize.M, 1);
+        // When incrementQuantity() is called for size M
+        int updated = cartItemRepository.incrementQuantity(cart.getId(),
+                product.getId(), ProductSize.M, 2);
+        // Then only the size M line is updated
+        assertThat(updated).isEqualTo(1);
+        List<CartItem> items = cartItemRepository.findAllByCartId(
+                cart.getId());
+        assertThat(items).extracting(CartItem::getQuantity)
+                .containsExactly(1, 3);
+    }
+
+    @Test
+    void incrementQuantityShouldReturnZeroIfTheProductSizeIsNotInTheCart() {
+        // Given a cart is empty
+        Cart cart = saveCart();
+        Product product = saveProduct();
+        // When incrementQuantity() is called
+        int updated = cartItemRepository.incrementQuantity(cart.getId(),
+                product.getId(), ProductSize.M, 1);
+        // Then no lines are updated
+        assertThat(updated).isEqualTo(0);
+    }
+
+    @Test
+    void deleteItemShouldOnlyDeleteTheLineForTheProductSize() {
+        // Given a cart has a product in sizes S and M
+        Cart cart = saveCart();
+        Product product = saveProduct();
+        saveCartItem(cart, product, ProductSize.S, 1);
+        saveCartItem(cart, product, ProductSize.M, 1);
+        // When deleteItem() is called for size S
+        int deleted = cartItemRepository.deleteItem(cart.getId(),
+                product.getId(), ProductSize.S);
+        // Then only the size M line is left
+        assertThat(deleted).isEqualTo(1);
+        assertThat(cartItemRepository.findAllByCartId(cart.getId()))
+                .extracting(CartItem::getSize)
+                .containsExactly(ProductSize.M);
+    }
+
+    @Test
+    void saveShouldRejectASecondLineForTheSameProductSize() {
+        // Given a cart has a product in size M
+        Cart cart = saveCart();
+        Product product = saveProduct();
+        saveCartItem(cart, product, ProductSize.M, 1);
+        // When another line is saved for the same product size
+        // Then the unique key rejects it
+        assertThatThrownBy(() -> saveCartItem(cart, product, ProductSize.M, 1))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private CartItem saveCartItem(Cart cart, Product product, ProductSize size,
+                                  int quantity) {
+        return cartItemRepository.saveAndFlush(CartItem.builder()
+                .cart(cart)
+                .product(product)
+                .size(size)
+                .quantity(quantity)
+                .build());
+    }
+
+    private Cart saveCart() {
+        Customer customer = customerRepository.save(Customer.builder()
+                .name("name")
+                .email("email")
+                .password("password")
+                .build());
+        return cartRepository.save(Cart.builder()
+                .customer(customer)
+                .items(new ArrayList<>())
+                .build());
+    }
+
+    private Product saveProduct() {
+        return productRepository.save(Product.builder()
+                .brand("brand")
+                .name("name")
+                .description("description")
+                .category(ProductCategory.SPORTSWEAR)
+                .gender(ProductGender.MALE)
+                .price(50)
+                .isActive(true)
+                .build());
+    }
+}
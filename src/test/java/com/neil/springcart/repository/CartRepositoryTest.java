@@ -56,7 +56,7 @@ class CartRepositoryTest {
     private Cart buildCart(Customer customer) {
         return Cart.builder()
                 .customer(customer)
-                .products(new ArrayList<>())
+                .items(new ArrayList<>())
                 .build();
     }
 
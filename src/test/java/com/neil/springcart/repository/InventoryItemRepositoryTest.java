@@ -8,6 +8,8 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -99,6 +101,93 @@ class InventoryItemRepositoryTest {
         assertThat(productInventory.size()).isEqualTo(0);
     }
 
+    @Test
+    void lockAvailableIdsByProductIdAndSizeShouldReturnAtMostTheRequestedQuantity() {
+        // Given there are 3 size small inventory items for a product
+        Product product = buildProduct();
+        List<InventoryItem> inventory = List.of(
+                buildInventory(ProductSize.S, product),
+                buildInventory(ProductSize.S, product),
+                buildInventory(ProductSize.S, product)
+        );
+        product.setInventory(inventory);
+        productRepository.save(product);
+        // When lockAvailableIdsByProductIdAndSize() is called for 2 items
+        List<Long> lockedIds = inventoryItemRepository
+                .lockAvailableIdsByProductIdAndSize(product.getId(),
+                        ProductSize.S.name(), 2);
+        // Then only 2 inventory item IDs are returned
+        assertThat(lockedIds.size()).isEqualTo(2);
+    }
+
+    @Test
+    void countAvailableByProductIdAndSizeShouldNotCountSoldItems() {
+        // Given there are 2 size small inventory items for a product and one
+        // of them has been sold
+        Product product = buildProduct();
+        InventoryItem soldItem = buildInventory(ProductSize.S, product);
+        soldItem.setSold(true);
+        product.setInventory(List.of(
+                buildInventory(ProductSize.S, product),
+                soldItem
+        ));
+        productRepository.save(product);
+        // When countAvailableByProductIdAndSize() is called
+        long count = inventoryItemRepository.countAvailableByProductIdAndSize(
+                product.getId(), ProductSize.S);
+        // Then only the unsold item is counted
+        assertThat(count).isEqualTo(1);
+    }
+
+    @Test
+    void countAvailableByProductIdGroupBySizeShouldReturnTheUnsoldCountForEachSize() {
+        // Given a product has 2 small items, 1 medium item, and 1 sold large
+        // item
+        Product product = buildProduct();
+        InventoryItem soldItem = buildInventory(ProductSize.L, product);
+        soldItem.setSold(true);
+        product.setInventory(List.of(
+                buildInventory(ProductSize.S, product),
+                buildInventory(ProductSize.S, product),
+                buildInventory(ProductSize.M, product),
+                soldItem
+        ));
+        productRepository.save(product);
+        // When countAvailableByProductIdGroupBySize() is called
+        Map<ProductSize, Long> counts = inventoryItemRepository
+                .countAvailableByProductIdGroupBySize(product.getId())
+                .stream()
+                .collect(Collectors.toMap(SizeStockCount::getSize,
+                        SizeStockCount::getStock));
+        // Then the unsold items are counted for each size
+        assertThat(counts).isEqualTo(Map.of(ProductSize.S, 2L,
+                ProductSize.M, 1L));
+    }
+
+    @Test
+    void countAvailableByProductIdsGroupBySizeShouldCountEachProductSeparately() {
+        // Given one product has 2 small items and another has 1 medium item
+        Product first = buildProduct();
+        first.setInventory(List.of(
+                buildInventory(ProductSize.S, first),
+                buildInventory(ProductSize.S, first)
+        ));
+        Product second = buildProduct();
+        second.setInventory(List.of(buildInventory(ProductSize.M, second)));
+        productRepository.saveAll(List.of(first, second));
+        // When countAvailableByProductIdsGroupBySize() is called for both
+        List<ProductSizeStockCount> counts = inventoryItemRepository
+                .countAvailableByProductIdsGroupBySize(List.of(first.getId(),
+                        second.getId()));
+        // Then the unsold items are counted for each product and size
+        assertThat(counts.stream()
+                .collect(Collectors.toMap(
+                        count -> count.getProductId() + ":" + count.getSize(),
+                        ProductSizeStockCount::getStock)))
+                .isEqualTo(Map.of(first.getId() + ":S", 2L,
+                        second.getId() + ":M", 1L));
+    }
+
     private Product buildProduct() {
         return Product.builder()
                 .brand("brand")
@@ -1,6 +1,7 @@
 package com.neil.springcart.repository;
 
 import com.neil.springcart.model.*;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +27,8 @@ class OrderLineItemRepositoryTest {
     private ProductRepository productRepository;
     @Autowired
     private CustomerRepository customerRepository;
+    @Autowired
+    private EntityManager entityManager;
 
     @AfterEach
     void tearDown() {
@@ -63,6 +66,47 @@ class OrderLineItemRepositoryTest {
         assertThat(orderLineItems.size()).isEqualTo(2);
     }
 
+    @Test
+    void orderLineItemUnitViewHasARowForEachUnitOfALine() {
+        // Given a line of 3 units, 2 of them stored as sold inventory items,
+        // and 1 of them returned
+        Product product = productRepository.save(buildProduct());
+        Order order = orderRepository.save(buildOrder());
+        List<InventoryItem> inventoryItems = inventoryItemRepository.saveAll(
+                List.of(buildInventoryItem(ProductSize.M, product),
+                        buildInventoryItem(ProductSize.M, product)));
+        OrderLineItem line = orderLineItemRepository.save(OrderLineItem
+                .builder()
+                .product(product)
+                .size(ProductSize.M)
+                .order(order)
+                .quantity(3)
+                .inventoryItems(inventoryItems)
+                .returnedQuantity(1)
+                .build());
+        entityManager.flush();
+        // When the order_line_item_unit view is queried for the line
+        @SuppressWarnings("unchecked")
+        List<Object[]> units = entityManager.createNativeQuery("""
+                        SELECT unit, inventory_item_id, is_returned
+                        FROM order_line_item_unit
+                        WHERE order_line_item_id = :id
+                        ORDER BY unit""")
+                .setParameter("id", line.getId())
+                .getResultList();
+        // Then there is a row for each unit, matched to the inventory items in
+        // order, with the first unit returned
+        assertThat(units).hasSize(3);
+        assertThat(units).extracting(unit -> ((Number) unit[0]).intValue())
+                .containsExactly(1, 2, 3);
+        assertThat(units).extracting(unit -> unit[1] == null ? null
+                        : ((Number) unit[1]).longValue())
+                .containsExactly(inventoryItems.get(0).getId(),
+                        inventoryItems.get(1).getId(), null);
+        assertThat(units).extracting(unit -> unit[2])
+                .containsExactly(true, false, false);
+    }
+
     private Order buildOrder() {
         Customer customer = customerRepository.save(buildCustomer());
         return Order.builder()
@@ -100,8 +144,9 @@ class OrderLineItemRepositoryTest {
                 .product(product)
                 .size(inventoryItem.getSize())
                 .order(order)
-                .inventoryItem(inventoryItem)
-                .isReturned(false)
+                .quantity(1)
+                .inventoryItems(List.of(inventoryItem))
+                .returnedQuantity(0)
                 .build();
     }
 
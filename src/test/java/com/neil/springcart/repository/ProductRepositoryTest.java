@@ -7,6 +7,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.ArrayList;
@@ -19,6 +21,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 class ProductRepositoryTest {
     @Autowired
     private ProductRepository productRepository;
+    @Autowired
+    private TestEntityManager entityManager;
 
     @AfterEach
     void tearDown() {
@@ -79,6 +83,17 @@ class ProductRepositoryTest {
         assertThat(products.size()).isEqualTo(2);
     }
 
+    @Test
+    void findAllByGenderShouldNotReturnArchivedProducts() {
+        // Given there is one archived unisex product
+        saveProduct("archived product", false);
+        // When findAllByGender() is called
+        List<Product> products = productRepository
+                .findAllByGender(ProductGender.MALE);
+        // Then an empty list will be returned
+        assertThat(products.isEmpty()).isTrue();
+    }
+
     @Test
     void findAllByGenderAndCategoryShouldReturnOneProductIfThereIsOneProductWithTheGivenGenderAndCategory() {
         // Given there are two products with one being MALE and SPORTSWEAR
@@ -96,6 +111,56 @@ class ProductRepositoryTest {
         assertThat(products.size()).isEqualTo(1);
     }
 
+    @Test
+    void findActiveProductsAfterShouldOnlyReturnActiveProductsAfterTheGivenIdUpToTheLimit() {
+        // Given there are 3 active products and 1 archived product
+        saveProduct("product 1", true);
+        saveProduct("product 2", false);
+        saveProduct("product 3", true);
+        saveProduct("product 4", true);
+        Long firstId = productRepository.findActiveProducts().stream()
+                .mapToLong(Product::getId)
+                .min()
+                .orElseThrow();
+        // When findActiveProductsAfter() is called after the first product
+        // with a limit of 1
+        List<Product> products = productRepository.findActiveProductsAfter(
+                firstId, PageRequest.of(0, 1));
+        // Then only the next active product is returned
+        assertThat(products.size()).isEqualTo(1);
+        assertThat(products.get(0).getName()).isEqualTo("product 3");
+    }
+
+    @Test
+    void findSnapshotByIdShouldReadTheProductFromTheDatabase() {
+        // Given a product is loaded and then renamed and archived in the
+        // database behind the loaded copy's back
+        Product product = productRepository.saveAndFlush(buildProduct(
+                "product", ProductGender.MALE, ProductCategory.SPORTSWEAR,
+                true));
+        entityManager.getEntityManager()
+                .createNativeQuery("UPDATE product SET name = 'renamed', "
+                        + "is_active = false WHERE id = ?1")
+                .setParameter(1, product.getId())
+                .executeUpdate();
+        // When findSnapshotById() is called
+        ProductSnapshot snapshot = productRepository
+                .findSnapshotById(product.getId())
+                .orElseThrow();
+        // Then the snapshot has the changes the loaded copy doesn't
+        assertThat(productRepository.findById(product.getId()).orElseThrow()
+                .getName()).isEqualTo("product");
+        assertThat(snapshot.getName()).isEqualTo("renamed");
+        assertThat(snapshot.isActive()).isFalse();
+        assertThat(snapshot.toProduct().getGender())
+                .isEqualTo(ProductGender.MALE);
+    }
+
+    @Test
+    void findSnapshotByIdShouldReturnAnEmptyOptionalIfThereIsNoProduct() {
+        assertThat(productRepository.findSnapshotById(1L)).isEmpty();
+    }
+
     private void saveProduct(String name, ProductGender gender,
                              ProductCategory category) {
         Product product = buildProduct(name, gender, category, true);
@@ -0,0 +1,134 @@
+package com.neil.springcart.repository;
+
+import com.neil.springcart.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+class ProductStockRepositoryTest {
+    @Autowired
+    private ProductStockRepository productStockRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @AfterEach
+    void tearDown() {
+        productStockRepository.deleteAll();
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void decrementStockTakesTheStockIfThereIsEnoughOnHand() {
+        // Given there are 5 units of size S on hand
+        Product product = saveProductWithStock(ProductSize.S, 5);
+        // When decrementStock() is called for 2 units
+        int updated = productStockRepository.decrementStock(product.getId(),
+                ProductSize.S, 2);
+        // Then the counter is updated and 3 units are left on hand
+        assertThat(updated).isEqualTo(1);
+        assertThat(getOnHand(product)).isEqualTo(3);
+    }
+
+    @Test
+    void decrementStockDoesNothingIfThereIsNotEnoughOnHand() {
+        // Given there is 1 unit of size S on hand
+        Product product = saveProductWithStock(ProductSize.S, 1);
+        // When decrementStock() is called for 2 units
+        int updated = productStockRepository.decrementStock(product.getId(),
+                ProductSize.S, 2);
+        // Then the counter isn't updated
+        assertThat(updated).isEqualTo(0);
+        assertThat(getOnHand(product)).isEqualTo(1);
+    }
+
+    @Test
+    void incrementStockReturnsZeroIfTheProductSizeHasNoCounter() {
+        // Given there is only a counter for size S
+        Product product = saveProductWithStock(ProductSize.S, 1);
+        // When incrementStock() is called for size M
+        int updated = productStockRepository.incrementStock(product.getId(),
+                ProductSize.M, 2);
+        // Then no counter is updated
+        assertThat(updated).isEqualTo(0);
+    }
+
+    @Test
+    void findStockByProductIdSeesBulkUpdatesToLoadedCounters() {
+        // Given the counter for size S is loaded with 5 units on hand
+        Product product = saveProductWithStock(ProductSize.S, 5);
+        productStockRepository.findAllByProductId(product.getId());
+        // When 2 units are taken with a bulk update
+        productStockRepository.decrementStock(product.getId(), ProductSize.S,
+                2);
+        // Then findStockByProductId() and findStockByProductIdIn() see the 3
+        // units left rather than the loaded counter
+        List<SizeStockCount> stock = productStockRepository
+                .findStockByProductId(product.getId());
+        assertThat(stock).hasSize(1);
+        assertThat(stock.get(0).getSize()).isEqualTo(ProductSize.S);
+        assertThat(stock.get(0).getStock()).isEqualTo(3);
+        List<ProductSizeStockCount> stockByProduct = productStockRepository
+                .findStockByProductIdIn(List.of(product.getId()));
+        assertThat(stockByProduct).hasSize(1);
+        assertThat(stockByProduct.get(0).getProductId())
+                .isEqualTo(product.getId());
+        assertThat(stockByProduct.get(0).getStock()).isEqualTo(3);
+    }
+
+    @Test
+    void findStockByProductIdLeavesOutSizesWithNothingOnHand() {
+        // Given size S has sold out
+        Product product = saveProductWithStock(ProductSize.S, 1);
+        productStockRepository.decrementStock(product.getId(), ProductSize.S,
+                1);
+        // When findStockByProductId() and findStockByProductIdIn() are called
+        // Then size S is left out, as it is when units are stored one per row
+        assertThat(productStockRepository.findStockByProductId(
+                product.getId())).isEmpty();
+        assertThat(productStockRepository.findStockByProductIdIn(
+                List.of(product.getId()))).isEmpty();
+    }
+
+    private Product saveProductWithStock(ProductSize size, int onHand) {
+        Product product = productRepository.save(buildProduct());
+        productStockRepository.save(ProductStock.builder()
+                .product(product)
+                .size(size)
+                .onHand(onHand)
+                .build());
+        return product;
+    }
+
+    private int getOnHand(Product product) {
+        // Bulk updates bypass the persistence context
+        entityManager.clear();
+        List<ProductStock> stock = productStockRepository.findAllByProductId(
+                product.getId());
+        return stock.get(0).getOnHand();
+    }
+
+    private Product buildProduct() {
+        return Product.builder()
+                .brand("brand")
+                .name("name")
+                .description("description")
+                .category(ProductCategory.SPORTSWEAR)
+                .gender(ProductGender.MALE)
+                .price(50)
+                .isActive(true)
+                .inventory(new ArrayList<>())
+                .build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.neil.springcart.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordEncodersTest {
+    @ParameterizedTest
+    @ValueSource(strings = { PasswordEncoders.BCRYPT, PasswordEncoders.ARGON2,
+            PasswordEncoders.PBKDF2 })
+    void createDelegatingEncoderPrefixesHashesWithTheAlgorithmId(String id) {
+        // Given an encoder for the algorithm
+        PasswordEncoder encoder = PasswordEncoders.createDelegatingEncoder(id,
+                4);
+        // When a password is hashed
+        String hash = encoder.encode("password");
+        // Then the hash is prefixed with the id and can be checked
+        assertThat(hash).startsWith("{" + id + "}");
+        assertThat(encoder.matches("password", hash)).isTrue();
+        assertThat(encoder.matches("incorrect", hash)).isFalse();
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+    }
+
+    @Test
+    void createDelegatingEncoderChecksUnprefixedHashesAsBCrypt() {
+        // Given a hash created before the id prefixes were added
+        String legacyHash = new BCryptPasswordEncoder(4).encode("password");
+        // When it is checked
+        PasswordEncoder encoder = PasswordEncoders.createDelegatingEncoder(
+                PasswordEncoders.BCRYPT, 4);
+        // Then it still matches but should be rehashed with a prefix
+        assertThat(encoder.matches("password", legacyHash)).isTrue();
+        assertThat(encoder.upgradeEncoding(legacyHash)).isTrue();
+    }
+
+    @Test
+    void createDelegatingEncoderChecksHashesFromOtherAlgorithms() {
+        // Given a hash created with BCrypt
+        String hash = PasswordEncoders.createDelegatingEncoder(
+                PasswordEncoders.BCRYPT, 4).encode("password");
+        // When new passwords are hashed with Argon2 instead
+        PasswordEncoder encoder = PasswordEncoders.createDelegatingEncoder(
+                PasswordEncoders.ARGON2, 4);
+        // Then the BCrypt hash still matches but should be rehashed
+        assertThat(encoder.matches("password", hash)).isTrue();
+        assertThat(encoder.upgradeEncoding(hash)).isTrue();
+    }
+
+    @Test
+    void createDelegatingEncoderThrowsForUnknownAlgorithms() {
+        assertThatThrownBy(() -> PasswordEncoders.createDelegatingEncoder(
+                "md5", 4)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
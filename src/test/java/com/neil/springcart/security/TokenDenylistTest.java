@@ -0,0 +1,72 @@
+package com.neil.springcart.security;
+
+import com.neil.springcart.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenDenylistTest {
+    private static final long ONE_HOUR = 60 * 60 * 1000;
+
+    private TokenDenylist tokenDenylist;
+
+    @BeforeEach
+    void setUp() {
+        tokenDenylist = new TokenDenylist(2);
+    }
+
+    @Test
+    void isRevokedReturnsTrueForARevokedToken() {
+        // Given a token has been revoked
+        tokenDenylist.revoke("token", inOneHour());
+        // Then it is reported as revoked while other tokens are not
+        assertThat(tokenDenylist.isRevoked("token")).isTrue();
+        assertThat(tokenDenylist.isRevoked("other")).isFalse();
+    }
+
+    @Test
+    void revokeIgnoresTokensThatHaveAlreadyExpired() {
+        // When an expired token is revoked
+        tokenDenylist.revoke("token", new Date(System.currentTimeMillis() - 1));
+        // Then it isn't stored as it can no longer be used anyway
+        assertThat(tokenDenylist.size()).isZero();
+    }
+
+    @Test
+    void revokeKeepsEveryRevokedTokenAndRejectsNewOnesWhenFull() {
+        // Given the denylist is full of tokens that haven't expired
+        long now = System.currentTimeMillis();
+        tokenDenylist.revoke("first", new Date(now + ONE_HOUR));
+        tokenDenylist.revoke("second", new Date(now + 2 * ONE_HOUR));
+        // When more tokens are revoked
+        // Then they are rejected and the tokens already revoked stay revoked
+        for (int i = 0; i < 100; i++) {
+            String tokenId = "token " + i;
+            assertThatThrownBy(() -> tokenDenylist.revoke(tokenId,
+                    new Date(now + 3 * ONE_HOUR)))
+                    .isInstanceOf(ServiceUnavailableException.class);
+        }
+        assertThat(tokenDenylist.size()).isEqualTo(2);
+        assertThat(tokenDenylist.isRevoked("first")).isTrue();
+        assertThat(tokenDenylist.isRevoked("second")).isTrue();
+    }
+
+    @Test
+    void revokeAcceptsATokenThatIsAlreadyRevokedWhenFull() {
+        // Given the denylist is full
+        tokenDenylist.revoke("first", inOneHour());
+        tokenDenylist.revoke("second", inOneHour());
+        // When a token in the list is revoked again, as on a repeated logout
+        tokenDenylist.revoke("first", inOneHour());
+        // Then it is still revoked
+        assertThat(tokenDenylist.isRevoked("first")).isTrue();
+    }
+
+    private Date inOneHour() {
+        return new Date(System.currentTimeMillis() + ONE_HOUR);
+    }
+}
@@ -0,0 +1,73 @@
+package com.neil.springcart.security;
+
+import com.neil.springcart.util.cache.CacheRegistry;
+import com.neil.springcart.util.cache.CacheStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VerifiedTokenCacheTest {
+    private CacheRegistry cacheRegistry;
+    private VerifiedTokenCache verifiedTokenCache;
+    private AtomicInteger verifications;
+
+    @BeforeEach
+    void setUp() {
+        cacheRegistry = new CacheRegistry();
+        verifiedTokenCache = new VerifiedTokenCache(cacheRegistry, true, 10,
+                Duration.ofMinutes(5));
+        verifications = new AtomicInteger();
+    }
+
+    @Test
+    void getOnlyVerifiesATokenOnce() {
+        // When the same token is used twice
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        VerifiedToken first = verifiedTokenCache.get("token",
+                token -> verify(expiresAt));
+        VerifiedToken second = verifiedTokenCache.get("token",
+                token -> verify(expiresAt));
+        // Then it is only verified the first time
+        assertThat(second).isSameAs(first);
+        assertThat(verifications.get()).isEqualTo(1);
+        CacheStats stats = cacheRegistry.getStats().get("verified-tokens");
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+    }
+
+    @Test
+    void getVerifiesTheTokenAgainOnceItHasExpired() {
+        // Given a cached token has expired
+        long expiresAt = System.currentTimeMillis() - 1;
+        verifiedTokenCache.get("token", token -> verify(expiresAt));
+        // When it is used again
+        verifiedTokenCache.get("token", token -> verify(expiresAt));
+        // Then it is verified again
+        assertThat(verifications.get()).isEqualTo(2);
+    }
+
+    @Test
+    void getDoesNotCacheTokensThatFailVerification() {
+        // When a token that doesn't belong to a user is used twice
+        verifiedTokenCache.get("token", token -> {
+            verifications.incrementAndGet();
+            return null;
+        });
+        verifiedTokenCache.get("token", token -> {
+            verifications.incrementAndGet();
+            return null;
+        });
+        // Then it is verified both times
+        assertThat(verifications.get()).isEqualTo(2);
+    }
+
+    private VerifiedToken verify(long expiresAt) {
+        verifications.incrementAndGet();
+        return new VerifiedToken("test@gmail.com", List.of(), "jti", expiresAt);
+    }
+}
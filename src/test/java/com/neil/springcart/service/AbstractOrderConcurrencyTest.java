@@ -0,0 +1,189 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.CreateOrderRequest;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.OrderLineItemDto;
+import com.neil.springcart.exception.BadRequestException;
+import com.neil.springcart.model.*;
+import com.neil.springcart.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Places hundreds of orders for the same product size in parallel and checks
+ * that exactly the available stock is sold, and that orders listing the same
+ * product sizes in different orders don't deadlock. Subclasses pick the
+ * inventory mode.
+ */
+abstract class AbstractOrderConcurrencyTest {
+    static final int STOCK = 100;
+    static final int ORDERS = 300;
+    static final int THREADS = 16;
+
+    @Autowired
+    OrderService orderService;
+    @Autowired
+    InventoryService inventoryService;
+    @Autowired
+    OrderRepository orderRepository;
+    @Autowired
+    OrderLineItemRepository orderLineItemRepository;
+    @Autowired
+    CustomerRepository customerRepository;
+    @Autowired
+    ProductRepository productRepository;
+    @Autowired
+    InventoryItemRepository inventoryItemRepository;
+    @Autowired
+    ProductStockRepository productStockRepository;
+    @Autowired
+    StockMovementRepository stockMovementRepository;
+
+    @AfterEach
+    void tearDown() {
+        orderLineItemRepository.deleteAll();
+        orderRepository.deleteAll();
+        inventoryItemRepository.deleteAll();
+        stockMovementRepository.deleteAll();
+        productStockRepository.deleteAll();
+        customerRepository.deleteAll();
+        productRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentOrdersNeverSellMoreThanTheAvailableStock() throws Exception {
+        // Given there are 100 units of a product size in stock
+        Customer customer = customerRepository.save(buildCustomer());
+        Product product = productRepository.save(buildProduct());
+        inventoryService.addStock(product, List.of(
+                new InventoryDto(ProductSize.M, STOCK)
+        ));
+
+        // When 300 orders for one unit each are placed in parallel
+        CreateOrderRequest request = new CreateOrderRequest(customer.getId(),
+                List.of(new OrderLineItemDto(product.getId(), ProductSize.M, 1)),
+                buildAddress());
+        AtomicInteger successfulOrders = new AtomicInteger();
+        AtomicInteger rejectedOrders = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    orderService.createOrder(request);
+                    successfulOrders.incrementAndGet();
+                } catch (BadRequestException ex) {
+                    rejectedOrders.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then exactly 100 orders succeed and nothing is oversold
+        assertThat(successfulOrders.get()).isEqualTo(STOCK);
+        assertThat(rejectedOrders.get()).isEqualTo(ORDERS - STOCK);
+        assertThat(orderLineItemRepository.count()).isEqualTo(STOCK);
+        assertNothingOversold(product);
+    }
+
+    @Test
+    void concurrentOrdersForTheSameSizesInOppositeOrdersAllSucceed()
+            throws Exception {
+        // Given there are 2 products with enough stock for every order
+        Customer customer = customerRepository.save(buildCustomer());
+        Product first = productRepository.save(buildProduct());
+        Product second = productRepository.save(buildProduct());
+        for (Product product : List.of(first, second)) {
+            inventoryService.addStock(product, List.of(
+                    new InventoryDto(ProductSize.M, STOCK)
+            ));
+        }
+
+        // When orders for both products are placed in parallel, half listing
+        // them one way round and half the other
+        OrderLineItemDto firstLine = new OrderLineItemDto(first.getId(),
+                ProductSize.M, 1);
+        OrderLineItemDto secondLine = new OrderLineItemDto(second.getId(),
+                ProductSize.M, 1);
+        List<CreateOrderRequest> requests = List.of(
+                new CreateOrderRequest(customer.getId(),
+                        List.of(firstLine, secondLine), buildAddress()),
+                new CreateOrderRequest(customer.getId(),
+                        List.of(secondLine, firstLine), buildAddress()));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < STOCK; i++) {
+            CreateOrderRequest request = requests.get(i % 2);
+            futures.add(executor.submit(() -> {
+                start.await();
+                orderService.createOrder(request);
+                return null;
+            }));
+        }
+        start.countDown();
+
+        // Then every order succeeds without deadlocking and all the stock is
+        // sold
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertThat(orderRepository.count()).isEqualTo(STOCK);
+        assertNothingOversold(first);
+        assertNothingOversold(second);
+    }
+
+    /**
+     * Checks the inventory mode's own records agree that all the stock was
+     * sold exactly once.
+     * @param product The product that was ordered.
+     */
+    abstract void assertNothingOversold(Product product);
+
+    private Customer buildCustomer() {
+        return Customer.builder()
+                .name("name")
+                .email("concurrency@gmail.com")
+                .password("password")
+                .build();
+    }
+
+    private Product buildProduct() {
+        return Product.builder()
+                .brand("brand")
+                .name("name")
+                .description("description")
+                .category(ProductCategory.SPORTSWEAR)
+                .gender(ProductGender.MALE)
+                .price(50)
+                .isActive(true)
+                .inventory(new ArrayList<>())
+                .build();
+    }
+
+    private Address buildAddress() {
+        return Address.builder()
+                .streetAddress("123 test st")
+                .suburb("suburb")
+                .state(AuState.NSW)
+                .postcode(2000)
+                .country("Australia")
+                .build();
+    }
+}
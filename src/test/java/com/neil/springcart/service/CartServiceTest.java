@@ -1,115 +1,169 @@
 package com.neil.springcart.service;
 
 import com.neil.springcart.dto.CartRequest;
+import com.neil.springcart.dto.CartResponse;
 import com.neil.springcart.exception.BadRequestException;
 import com.neil.springcart.model.*;
+import com.neil.springcart.repository.CartItemRepository;
 import com.neil.springcart.repository.CartRepository;
 import com.neil.springcart.repository.ProductRepository;
 import com.neil.springcart.util.mapper.CartMapper;
-import com.neil.springcart.util.mapper.InventoryMapper;
 import com.neil.springcart.util.mapper.ProductMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 @ActiveProfiles("test")
 class CartServiceTest {
+    private static final Long CUSTOMER_ID = 1L;
+    private static final Long CART_ID = 1L;
+    private static final Long PRODUCT_ID = 1L;
+
     private CartService cartService;
     @Mock
     private CartRepository cartRepository;
     @Mock
+    private CartItemRepository cartItemRepository;
+    @Mock
     private ProductRepository productRepository;
+    @Mock
+    private CartStore cartStore;
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @BeforeEach
     void setUp() {
-        InventoryMapper inventoryMapper = new InventoryMapper();
-        ProductMapper productMapper = new ProductMapper(inventoryMapper);
+        ProductMapper productMapper = new ProductMapper();
         CartMapper cartMapper = new CartMapper(productMapper);
-        cartService = new CartService(cartRepository, productRepository,
-                cartMapper);
+        cartService = new CartService(cartRepository, cartItemRepository,
+                productRepository, cartMapper, cartStore, transactionManager);
     }
 
     @AfterEach
     void tearDown() {
-        reset(cartRepository, productRepository);
+        reset(cartRepository, cartItemRepository, productRepository,
+                cartStore);
     }
 
     @Test
-    void addProductToCartShouldThrowABadRequestExceptionIfTheProductIsAlreadyInTheCart() {
-        // Given that the product with ID 1 is already in the cart with ID 1
-        Customer customer = buildCustomer();
-        Long productId = 1L;
-        Product product = buildProduct(productId);
-        Cart cart = buildCart(customer, List.of(product));
-        customer.setCart(cart);
-        given(productRepository.findById(productId))
-                .willReturn(Optional.of(product));
-        given(cartRepository.findByCustomerId(customer.getId()))
-                .willReturn(Optional.of(cart));
-
-        // When addProductToCart() is called with customer ID 1 and product ID 1
-        CartRequest request = new CartRequest(customer.getId(), productId);
+    void getCustomerCartDetailsShouldReturnEachLineWithItsSizeAndQuantity() {
+        // Given the cart has 2 of a product in size M
+        given(cartRepository.findIdByCustomerId(CUSTOMER_ID))
+                .willReturn(Optional.of(CART_ID));
+        given(cartItemRepository.findAllByCartId(CART_ID)).willReturn(List.of(
+                buildCartItem(ProductSize.M, 2)));
+        // When getCustomerCartDetails() is called
+        CartResponse response = cartService.getCustomerCartDetails(
+                CUSTOMER_ID);
+        // Then the line is returned with its size and quantity
+        assertThat(response.cartId()).isEqualTo(CART_ID);
+        assertThat(response.items()).hasSize(1);
+        assertThat(response.items().get(0).product().id())
+                .isEqualTo(PRODUCT_ID);
+        assertThat(response.items().get(0).size()).isEqualTo(ProductSize.M);
+        assertThat(response.items().get(0).quantity()).isEqualTo(2);
+    }
 
-        // Then a BadRequestException is thrown
+    @Test
+    void addProductToCartShouldThrowABadRequestExceptionIfTheProductIsNotActive() {
+        // Given the product with ID 1 is not active
+        given(productRepository.existsActiveById(PRODUCT_ID))
+                .willReturn(false);
+        // When addProductToCart() is called with product ID 1
+        CartRequest request = new CartRequest(CUSTOMER_ID, PRODUCT_ID,
+                ProductSize.M, 1);
+        // Then a BadRequestException is thrown and the cart is not changed
         assertThrows(BadRequestException.class, () -> {
             cartService.addProductToCart(request);
         });
+        verifyNoInteractions(cartItemRepository);
     }
 
     @Test
-    void addProductToCartShouldAddProductToCartIfItIsNotAlreadyInCart() {
-        // Given that the product with ID is not already in the cart with ID 1
-        Customer customer = buildCustomer();
-        Cart cart = buildCart(customer, new ArrayList<>());
-        Cart cartSpy = spy(cart);
-        customer.setCart(cart);
-        Long productId = 1L;
-        Product product = buildProduct(productId);
-        given(productRepository.findById(productId))
-                .willReturn(Optional.of(product));
-        given(cartRepository.findByCustomerId(customer.getId()))
-                .willReturn(Optional.of(cartSpy));
-
-        // When addProductToCart() is called with customer ID 1 and product ID 1
-        CartRequest request = new CartRequest(customer.getId(), productId);
-        cartService.addProductToCart(request);
-
-        // Then the product is added to the cart
-        verify(cartSpy, times(1)).addProduct(product);
+    void addProductToCartShouldAddToTheQuantityIfTheProductSizeIsAlreadyInTheCart() {
+        // Given the product with ID 1 is already in the cart in size M
+        given(productRepository.existsActiveById(PRODUCT_ID)).willReturn(true);
+        given(cartRepository.findIdByCustomerId(CUSTOMER_ID))
+                .willReturn(Optional.of(CART_ID));
+        given(cartItemRepository.incrementQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.M, 2)).willReturn(1);
+        // When addProductToCart() is called with a quantity of 2
+        cartService.addProductToCart(new CartRequest(CUSTOMER_ID, PRODUCT_ID,
+                ProductSize.M, 2));
+        // Then the existing line is updated and no new line is saved
+        verify(cartItemRepository, never()).saveAndFlush(any());
     }
 
     @Test
-    void removeProductFromCartShouldThrowBadRequestExceptionIfProductWasNotInCart() {
-        // Given that a product with ID is not in the cart with ID 1
-        Customer customer = buildCustomer();
-        Cart cart = buildCart(customer, new ArrayList<>());
-        Cart cartSpy = spy(cart);
-        customer.setCart(cart);
-        Long productId = 1L;
-        Product product = buildProduct(productId);
-        given(productRepository.findById(productId))
-                .willReturn(Optional.of(product));
-        given(cartRepository.findByCustomerId(customer.getId()))
-                .willReturn(Optional.of(cartSpy));
-
-        // When removeProductFromCart() is called with customer ID 1 and product
-        // ID 1
-        CartRequest request = new CartRequest(customer.getId(), productId);
+    void addProductToCartShouldSaveANewLineIfTheProductSizeIsNotInTheCart() {
+        // Given the product with ID 1 is not in the cart
+        given(productRepository.existsActiveById(PRODUCT_ID)).willReturn(true);
+        given(cartRepository.findIdByCustomerId(CUSTOMER_ID))
+                .willReturn(Optional.of(CART_ID));
+        given(cartItemRepository.incrementQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.M, 1)).willReturn(0);
+        // When addProductToCart() is called without a quantity
+        cartService.addProductToCart(new CartRequest(CUSTOMER_ID, PRODUCT_ID,
+                ProductSize.M, null));
+        // Then a new line with a quantity of 1 is saved
+        ArgumentCaptor<CartItem> captor = ArgumentCaptor.forClass(
+                CartItem.class);
+        verify(cartItemRepository).saveAndFlush(captor.capture());
+        assertThat(captor.getValue().getSize()).isEqualTo(ProductSize.M);
+        assertThat(captor.getValue().getQuantity()).isEqualTo(1);
+    }
+
+    @Test
+    void addProductToCartShouldAddToTheLineIfAConcurrentRequestSavedItFirst() {
+        // Given the product with ID 1 is not in the cart, but another request
+        // adds it in size M before this one can
+        given(productRepository.existsActiveById(PRODUCT_ID)).willReturn(true);
+        given(cartRepository.findIdByCustomerId(CUSTOMER_ID))
+                .willReturn(Optional.of(CART_ID));
+        given(cartItemRepository.incrementQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.M, 2)).willReturn(0, 1);
+        given(cartItemRepository.saveAndFlush(any(CartItem.class)))
+                .willThrow(new DataIntegrityViolationException("duplicate"));
+        // When addProductToCart() is called with a quantity of 2
+        cartService.addProductToCart(new CartRequest(CUSTOMER_ID, PRODUCT_ID,
+                ProductSize.M, 2));
+        // Then the first attempt is rolled back and the retry adds to the
+        // line the other request saved
+        verify(transactionManager).rollback(any());
+        verify(cartItemRepository, times(2)).incrementQuantity(CART_ID,
+                PRODUCT_ID, ProductSize.M, 2);
+        verify(cartItemRepository, times(1)).saveAndFlush(any());
+    }
 
+    @Test
+    void removeProductFromCartShouldThrowBadRequestExceptionIfProductWasNotInCart() {
+        // Given that the product with ID 1 is not in the cart
+        given(cartRepository.findIdByCustomerId(CUSTOMER_ID))
+                .willReturn(Optional.of(CART_ID));
+        given(cartItemRepository.deleteItem(CART_ID, PRODUCT_ID,
+                ProductSize.M)).willReturn(0);
+        // When removeProductFromCart() is called with product ID 1
+        CartRequest request = new CartRequest(CUSTOMER_ID, PRODUCT_ID,
+                ProductSize.M, null);
         // Then a BadRequestException is thrown
         assertThrows(BadRequestException.class, () -> {
             cartService.removeProductFromCart(request);
@@ -117,45 +171,64 @@ class CartServiceTest {
     }
 
     @Test
-    void removeProductFromCartShouldRemoveProductFromCartIfItIsInTheCart() {
-        // Given that the product with ID 1 is already in the cart with ID 1
-        Customer customer = buildCustomer();
-        Long productId = 1L;
-        Product product = buildProduct(productId);
-        // Create immutable list of products so it can be removed
-        List<Product> products = new ArrayList<>();
-        products.add(product);
-        Cart cart = buildCart(customer, products);
-        Cart cartSpy = spy(cart);
-        customer.setCart(cart);
-        given(productRepository.findById(productId))
-                .willReturn(Optional.of(product));
-        given(cartRepository.findByCustomerId(customer.getId()))
-                .willReturn(Optional.of(cartSpy));
-
-        // When removeProductFromCart() is called with customer ID 1 and product
-        // ID 1
-        CartRequest request = new CartRequest(customer.getId(), productId);
-        cartService.removeProductFromCart(request);
-
-        // Then the product is removed from the cart
-        verify(cartSpy, times(1)).removeProduct(product);
+    void removeProductFromCartShouldDeleteTheLineIfItIsInTheCart() {
+        // Given that the product with ID 1 is in the cart in size M
+        given(cartRepository.findIdByCustomerId(CUSTOMER_ID))
+                .willReturn(Optional.of(CART_ID));
+        given(cartItemRepository.deleteItem(CART_ID, PRODUCT_ID,
+                ProductSize.M)).willReturn(1);
+        // When removeProductFromCart() is called with product ID 1
+        cartService.removeProductFromCart(new CartRequest(CUSTOMER_ID,
+                PRODUCT_ID, ProductSize.M, null));
+        // Then only that line is deleted
+        verify(cartItemRepository, times(1)).deleteItem(CART_ID, PRODUCT_ID,
+                ProductSize.M);
     }
 
-    private Cart buildCart(Customer customer, List<Product> products) {
-        return Cart.builder()
-                .id(customer.getId())
-                .products(products)
-                .customer(customer)
-                .build();
+    @Test
+    void addProductToCartShouldOnlyChangeTheStoreIfItIsEnabled() {
+        // Given the cart store is enabled
+        given(cartStore.isEnabled()).willReturn(true);
+        given(productRepository.existsActiveById(PRODUCT_ID)).willReturn(true);
+        given(cartStore.add(CUSTOMER_ID, PRODUCT_ID, ProductSize.M, 2))
+                .willReturn(CART_ID);
+        // When addProductToCart() is called
+        cartService.addProductToCart(new CartRequest(CUSTOMER_ID, PRODUCT_ID,
+                ProductSize.M, 2));
+        // Then the store is changed and the cart is not written to directly
+        verify(cartStore).add(CUSTOMER_ID, PRODUCT_ID, ProductSize.M, 2);
+        verifyNoInteractions(cartRepository, cartItemRepository);
     }
 
-    private Customer buildCustomer() {
-        return Customer.builder()
+    @Test
+    void getCustomerCartDetailsShouldReadTheStoreIfItIsEnabled() {
+        // Given the cart store is enabled and has 3 of a product in size L
+        given(cartStore.isEnabled()).willReturn(true);
+        given(cartStore.getCart(CUSTOMER_ID)).willReturn(
+                new CartStore.StoredCart(CART_ID, List.of(
+                        new CartStore.StoredCartLine(PRODUCT_ID,
+                                ProductSize.L, 3))));
+        given(productRepository.findAllById(List.of(PRODUCT_ID)))
+                .willReturn(List.of(buildProduct(PRODUCT_ID)));
+        // When getCustomerCartDetails() is called
+        CartResponse response = cartService.getCustomerCartDetails(
+                CUSTOMER_ID);
+        // Then the line from the store is returned with its product
+        assertThat(response.cartId()).isEqualTo(CART_ID);
+        assertThat(response.items()).hasSize(1);
+        assertThat(response.items().get(0).product().id())
+                .isEqualTo(PRODUCT_ID);
+        assertThat(response.items().get(0).size()).isEqualTo(ProductSize.L);
+        assertThat(response.items().get(0).quantity()).isEqualTo(3);
+        verifyNoInteractions(cartItemRepository);
+    }
+
+    private CartItem buildCartItem(ProductSize size, int quantity) {
+        return CartItem.builder()
                 .id(1L)
-                .name("name")
-                .email("email")
-                .password("password")
+                .product(buildProduct(PRODUCT_ID))
+                .size(size)
+                .quantity(quantity)
                 .build();
     }
 
@@ -173,4 +246,4 @@ class CartServiceTest {
                 .isActive(true)
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,218 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.exception.BadRequestException;
+import com.neil.springcart.model.CartItem;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.repository.CartItemRepository;
+import com.neil.springcart.repository.CartRepository;
+import com.neil.springcart.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartStoreTest {
+    private static final Long CUSTOMER_ID = 1L;
+    private static final Long CART_ID = 2L;
+    private static final Long PRODUCT_ID = 3L;
+
+    private CartStore cartStore;
+    @Mock
+    private CartRepository cartRepository;
+    @Mock
+    private CartItemRepository cartItemRepository;
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        // Disabled so no background flushes run, the tests flush by hand
+        cartStore = new CartStore(cartRepository, cartItemRepository,
+                productRepository, transactionManager, false, 4,
+                Duration.ofSeconds(5), Duration.ofMinutes(30));
+        lenient().when(cartRepository.findIdByCustomerId(CUSTOMER_ID))
+                .thenReturn(Optional.of(CART_ID));
+    }
+
+    @Test
+    void getCartShouldLoadTheCartFromTheDatabaseOnlyOnce() {
+        // Given the cart has 2 of a product in size M in the database
+        given(cartItemRepository.findAllByCartId(CART_ID)).willReturn(List.of(
+                buildCartItem(ProductSize.M, 2)));
+        // When getCart() is called twice
+        cartStore.getCart(CUSTOMER_ID);
+        CartStore.StoredCart cart = cartStore.getCart(CUSTOMER_ID);
+        // Then the cart is only read from the database the first time
+        assertThat(cart.cartId()).isEqualTo(CART_ID);
+        assertThat(cart.lines()).containsExactly(new CartStore.StoredCartLine(
+                PRODUCT_ID, ProductSize.M, 2));
+        verify(cartItemRepository, times(1)).findAllByCartId(CART_ID);
+    }
+
+    @Test
+    void addShouldOnlyWriteTheLineOnceWhenItIsFlushed() {
+        // Given the cart is empty
+        given(cartItemRepository.findAllByCartId(CART_ID))
+                .willReturn(List.of());
+        given(cartItemRepository.setQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.M, 3)).willReturn(0);
+        // When the same product size is added 3 times and the cart is flushed
+        for (int i = 0; i < 3; i++) {
+            cartStore.add(CUSTOMER_ID, PRODUCT_ID, ProductSize.M, 1);
+        }
+        verify(cartItemRepository, never()).save(any());
+        cartStore.flushAll();
+        // Then a single line with the total quantity is saved
+        ArgumentCaptor<CartItem> captor = ArgumentCaptor.forClass(
+                CartItem.class);
+        verify(cartItemRepository, times(1)).save(captor.capture());
+        assertThat(captor.getValue().getSize()).isEqualTo(ProductSize.M);
+        assertThat(captor.getValue().getQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    void removeShouldDeleteTheLineWhenItIsFlushed() {
+        // Given the cart has a product in size M
+        given(cartItemRepository.findAllByCartId(CART_ID)).willReturn(List.of(
+                buildCartItem(ProductSize.M, 1)));
+        // When the product size is removed and the cart is flushed
+        cartStore.remove(CUSTOMER_ID, PRODUCT_ID, ProductSize.M);
+        cartStore.flush(CUSTOMER_ID);
+        // Then the line is deleted and the store no longer has it
+        verify(cartItemRepository).deleteItem(CART_ID, PRODUCT_ID,
+                ProductSize.M);
+        assertThat(cartStore.getCart(CUSTOMER_ID).lines()).isEmpty();
+    }
+
+    @Test
+    void removeShouldThrowABadRequestExceptionIfTheProductIsNotInTheCart() {
+        // Given the cart is empty
+        given(cartItemRepository.findAllByCartId(CART_ID))
+                .willReturn(List.of());
+        // When remove() is called
+        // Then a BadRequestException is thrown and nothing is flushed
+        assertThrows(BadRequestException.class, () ->
+                cartStore.remove(CUSTOMER_ID, PRODUCT_ID, ProductSize.M));
+        cartStore.flushAll();
+        verify(cartItemRepository, never()).deleteItem(any(), any(), any());
+    }
+
+    @Test
+    void addShouldThrowABadRequestExceptionIfTheCustomerHasNoCart() {
+        // Given customer 9 doesn't have a cart
+        given(cartRepository.findIdByCustomerId(9L))
+                .willReturn(Optional.empty());
+        // When add() is called for customer 9
+        // Then a BadRequestException is thrown
+        assertThrows(BadRequestException.class, () ->
+                cartStore.add(9L, PRODUCT_ID, ProductSize.M, 1));
+    }
+
+    @Test
+    void flushAllShouldKeepTheChangesAndRetryIfTheFlushFails() {
+        // Given the cart is empty and the database fails on the first write
+        given(cartItemRepository.findAllByCartId(CART_ID))
+                .willReturn(List.of());
+        given(cartItemRepository.setQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.M, 2))
+                .willThrow(new DataAccessResourceFailureException("down"))
+                .willReturn(1);
+        cartStore.add(CUSTOMER_ID, PRODUCT_ID, ProductSize.M, 2);
+        // When the cart is flushed twice
+        cartStore.flushAll();
+        cartStore.flushAll();
+        // Then the line is written again by the second flush
+        verify(cartItemRepository, times(2)).setQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.M, 2);
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void flushShouldThrowIfTheChangesCouldNotBeWritten() {
+        // Given the database is down
+        given(cartItemRepository.findAllByCartId(CART_ID))
+                .willReturn(List.of());
+        given(cartItemRepository.setQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.M, 1))
+                .willThrow(new DataAccessResourceFailureException("down"));
+        cartStore.add(CUSTOMER_ID, PRODUCT_ID, ProductSize.M, 1);
+        // When flush() is called, as it is on checkout
+        // Then the failure is passed on so checkout doesn't go ahead
+        assertThrows(DataAccessResourceFailureException.class, () ->
+                cartStore.flush(CUSTOMER_ID));
+    }
+
+    @Test
+    void flushShouldThrowIfATransactionIsActive() {
+        // Given a transaction is active
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            // When flush() is called
+            // Then an IllegalStateException is thrown and nothing is written
+            assertThrows(IllegalStateException.class, () ->
+                    cartStore.flush(CUSTOMER_ID));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(
+                    false);
+        }
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void shutdownShouldFlushEveryDirtyCart() {
+        // Given a change that hasn't been flushed
+        given(cartItemRepository.findAllByCartId(CART_ID)).willReturn(List.of(
+                buildCartItem(ProductSize.S, 1)));
+        given(cartItemRepository.setQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.S, 5)).willReturn(1);
+        cartStore.add(CUSTOMER_ID, PRODUCT_ID, ProductSize.S, 4);
+        // When the application shuts down
+        cartStore.shutdown();
+        // Then the change is written to the database
+        verify(cartItemRepository).setQuantity(CART_ID, PRODUCT_ID,
+                ProductSize.S, 5);
+    }
+
+    @Test
+    void evictShouldDiscardTheCartSoItIsLoadedAgain() {
+        // Given a change that hasn't been flushed
+        given(cartItemRepository.findAllByCartId(CART_ID))
+                .willReturn(List.of());
+        cartStore.add(CUSTOMER_ID, PRODUCT_ID, ProductSize.M, 1);
+        // When the cart is evicted
+        cartStore.evict(CUSTOMER_ID);
+        // Then the change is never flushed and the cart is loaded again
+        cartStore.flushAll();
+        assertThat(cartStore.getCart(CUSTOMER_ID).lines()).isEmpty();
+        verify(cartItemRepository, never()).setQuantity(any(), any(), any(),
+                anyInt());
+        verify(cartItemRepository, times(2)).findAllByCartId(CART_ID);
+    }
+
+    private CartItem buildCartItem(ProductSize size, int quantity) {
+        return CartItem.builder()
+                .product(Product.builder().id(PRODUCT_ID).build())
+                .size(size)
+                .quantity(quantity)
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.neil.springcart.service;
 
+import com.neil.springcart.dto.LoginRequest;
 import com.neil.springcart.dto.RegisterRequest;
 import com.neil.springcart.model.Customer;
 import com.neil.springcart.repository.CartRepository;
@@ -13,6 +14,8 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Optional;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -113,4 +116,44 @@ class CustomerAuthServiceTest {
         // Then a cart is created
         verify(cartRepository, times(1)).save(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void authenticateCustomer_itShouldRehashPasswordsHashedWithWeakerSettings() {
+        // Given a customer whose password was hashed with a lower strength
+        Customer customer = Customer.builder()
+                .email("email")
+                .password("old hash")
+                .build();
+        when(customerRepository.findByEmail("email"))
+                .thenReturn(Optional.of(customer));
+        when(passwordManager.isPasswordValid("password", "old hash"))
+                .thenReturn(true);
+        when(passwordManager.needsRehash("old hash")).thenReturn(true);
+        when(passwordManager.encryptPassword("password"))
+                .thenReturn("new hash");
+        // When authenticateCustomer() is called
+        customerAuthService.authenticateCustomer(
+                new LoginRequest("email", "password"));
+        // Then the password is hashed again and saved
+        assertThat(customer.getPassword()).isEqualTo("new hash");
+        verify(customerRepository).save(customer);
+    }
+
+    @Test
+    void authenticateCustomer_itShouldNotRehashUpToDatePasswords() {
+        // Given a customer whose password was hashed with the current settings
+        Customer customer = Customer.builder()
+                .email("email")
+                .password("hash")
+                .build();
+        when(customerRepository.findByEmail("email"))
+                .thenReturn(Optional.of(customer));
+        when(passwordManager.isPasswordValid("password", "hash"))
+                .thenReturn(true);
+        // When authenticateCustomer() is called
+        customerAuthService.authenticateCustomer(
+                new LoginRequest("email", "password"));
+        // Then the customer isn't saved
+        verify(customerRepository, never()).save(any());
+    }
+}
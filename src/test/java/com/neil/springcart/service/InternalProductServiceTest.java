@@ -4,6 +4,8 @@ import com.neil.springcart.dto.AddInventoryRequest;
 import com.neil.springcart.dto.InventoryDto;
 import com.neil.springcart.dto.NewProductRequest;
 import com.neil.springcart.dto.UpdateProductRequest;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.event.StockChangedEvent;
 import com.neil.springcart.model.*;
 import com.neil.springcart.repository.InventoryItemRepository;
 import com.neil.springcart.repository.ProductRepository;
@@ -16,6 +18,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.ArrayList;
@@ -35,18 +38,22 @@ class InternalProductServiceTest {
     private ProductRepository productRepository;
     @Mock
     private InventoryItemRepository inventoryItemRepository;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @BeforeEach
     void setUp() {
         NewProductMapper newProductMapper = new NewProductMapper();
         InventoryMapper inventoryMapper = new InventoryMapper();
+        InventoryService inventoryService = new ItemInventoryService(
+                inventoryItemRepository, inventoryMapper);
         internalProductService = new InternalProductService(productRepository,
-                inventoryItemRepository, newProductMapper, inventoryMapper);
+                inventoryService, newProductMapper, eventPublisher);
     }
 
     @AfterEach
     void tearDown() {
-        reset(productRepository, inventoryItemRepository);
+        reset(productRepository, inventoryItemRepository, eventPublisher);
     }
 
     @Test
@@ -74,6 +81,7 @@ class InternalProductServiceTest {
         verify(inventoryItemRepository).saveAll(argumentCaptor.capture());
         List<InventoryItem> inventory = argumentCaptor.getValue();
         assertThat(inventory.size()).isEqualTo(10);
+        verify(eventPublisher).publishEvent(new StockChangedEvent(productId));
     }
 
     @Test
@@ -138,6 +146,19 @@ class InternalProductServiceTest {
         assertThat(product.isActive()).isFalse();
     }
 
+    @Test
+    void archiveProductPublishesAProductChangedEvent() {
+        // Given a product is not archived
+        Product product = buildProduct("name", "description");
+        given(productRepository.findById(product.getId()))
+                .willReturn(Optional.of(product));
+        // When archiveProduct() is called
+        internalProductService.archiveProduct(product.getId());
+        // Then listeners are told the product changed
+        verify(eventPublisher).publishEvent(
+                new ProductChangedEvent(product.getId()));
+    }
+
     @Test
     void unarchiveProductUnarchivesTheProduct() {
         // Given a product is archived
@@ -0,0 +1,45 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.model.InventoryItem;
+import com.neil.springcart.model.OrderLineItem;
+import com.neil.springcart.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "inventory.mode=items")
+class ItemOrderConcurrencyTest extends AbstractOrderConcurrencyTest {
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    void assertNothingOversold(Product product) {
+        List<InventoryItem> inventory = inventoryItemRepository.findAll();
+        assertThat(inventory).allMatch(InventoryItem::isSold);
+        // The line items are read in a transaction to load their sold items
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                status -> {
+                    List<OrderLineItem> lines = orderLineItemRepository
+                            .findAll();
+                    // Each line has exactly as many sold items as units
+                    assertThat(lines).allSatisfy(line ->
+                            assertThat(line.getInventoryItems())
+                                    .hasSize(line.getQuantity()));
+                    // And every sold item belongs to exactly one line
+                    List<Long> linkedIds = lines.stream()
+                            .flatMap(line -> line.getInventoryItems().stream())
+                            .map(InventoryItem::getId)
+                            .toList();
+                    assertThat(linkedIds).containsExactlyInAnyOrderElementsOf(
+                            inventory.stream().map(InventoryItem::getId)
+                                    .toList());
+                });
+    }
+}
@@ -0,0 +1,181 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.exception.BadRequestException;
+import com.neil.springcart.model.*;
+import com.neil.springcart.repository.ProductStockRepository;
+import com.neil.springcart.repository.StockMovementRepository;
+import com.neil.springcart.util.mapper.InventoryMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("test")
+class LedgerInventoryServiceTest {
+    private LedgerInventoryService ledgerInventoryService;
+    @Mock
+    private ProductStockRepository productStockRepository;
+    @Mock
+    private StockMovementRepository stockMovementRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        ledgerInventoryService = new LedgerInventoryService(
+                productStockRepository, stockMovementRepository,
+                new InventoryMapper(), transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reset(productStockRepository, stockMovementRepository);
+    }
+
+    @Test
+    void addStockCreatesACounterIfTheProductSizeHasNoStockYet() {
+        // Given the product has no stock counter for size S
+        Product product = buildProduct();
+        given(productStockRepository.incrementStock(product.getId(),
+                ProductSize.S, 5000)).willReturn(0);
+        // When addStock() is called with 5000 units of size S
+        ledgerInventoryService.addStock(product, List.of(
+                new InventoryDto(ProductSize.S, 5000)
+        ));
+        // Then a single counter with 5000 units on hand is saved
+        ArgumentCaptor<ProductStock> argumentCaptor = ArgumentCaptor
+                .forClass(ProductStock.class);
+        verify(productStockRepository).saveAndFlush(argumentCaptor
+                .capture());
+        assertThat(argumentCaptor.getValue().getOnHand()).isEqualTo(5000);
+    }
+
+    @Test
+    void addStockIncrementsTheCounterIfAConcurrentRestockCreatedItFirst() {
+        // Given the product has no stock counter for size S, but another
+        // restock creates it before this one can
+        Product product = buildProduct();
+        given(productStockRepository.incrementStock(product.getId(),
+                ProductSize.S, 5)).willReturn(0, 1);
+        given(productStockRepository.saveAndFlush(any(ProductStock.class)))
+                .willThrow(new DataIntegrityViolationException("duplicate"));
+        // When addStock() is called
+        ledgerInventoryService.addStock(product, List.of(
+                new InventoryDto(ProductSize.S, 5)
+        ));
+        // Then the first attempt is rolled back and the retry increments the
+        // counter the other restock created
+        verify(transactionManager).rollback(any());
+        verify(productStockRepository, times(2)).incrementStock(
+                product.getId(), ProductSize.S, 5);
+        verify(productStockRepository, times(1)).saveAndFlush(any());
+    }
+
+    @Test
+    void addStockDoesNotRetryInsideTheCallersTransaction() {
+        // Given addStock() is called inside a transaction, such as an import,
+        // and another restock creates the counter for size S first
+        Product product = buildProduct();
+        given(productStockRepository.incrementStock(product.getId(),
+                ProductSize.S, 5)).willReturn(0);
+        given(productStockRepository.saveAndFlush(any(ProductStock.class)))
+                .willThrow(new DataIntegrityViolationException("duplicate"));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            // When addStock() is called
+            // Then the clash is passed on without a retry, as the caller's
+            // transaction can only be rolled back
+            assertThrows(DataIntegrityViolationException.class, () ->
+                    ledgerInventoryService.addStock(product, List.of(
+                            new InventoryDto(ProductSize.S, 5))));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(
+                    false);
+        }
+        verify(productStockRepository, times(1)).incrementStock(
+                product.getId(), ProductSize.S, 5);
+    }
+
+    @Test
+    void addStockIncrementsTheCounterIfTheProductSizeAlreadyHasStock() {
+        // Given the product already has a stock counter for size S
+        Product product = buildProduct();
+        given(productStockRepository.incrementStock(product.getId(),
+                ProductSize.S, 10)).willReturn(1);
+        // When addStock() is called
+        ledgerInventoryService.addStock(product, List.of(
+                new InventoryDto(ProductSize.S, 10)
+        ));
+        // Then no new counter is created and a restock movement is logged
+        verify(productStockRepository, never()).saveAndFlush(any());
+        ArgumentCaptor<List<StockMovement>> argumentCaptor = ArgumentCaptor
+                .forClass(List.class);
+        verify(stockMovementRepository).saveAll(argumentCaptor.capture());
+        StockMovement movement = argumentCaptor.getValue().get(0);
+        assertThat(movement.getQuantity()).isEqualTo(10);
+        assertThat(movement.getReason()).isEqualTo(StockMovementReason.RESTOCK);
+    }
+
+    @Test
+    void reserveStockLogsAnOrderMovementIfThereIsEnoughStock() {
+        // Given there is enough stock for the order
+        Product product = buildProduct();
+        given(productStockRepository.decrementStock(product.getId(),
+                ProductSize.M, 2)).willReturn(1);
+        // When reserveStock() is called
+        ledgerInventoryService.reserveStock(product, ProductSize.M, 2);
+        // Then an order movement taking 2 units is logged
+        ArgumentCaptor<StockMovement> argumentCaptor = ArgumentCaptor
+                .forClass(StockMovement.class);
+        verify(stockMovementRepository).save(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue().getQuantity()).isEqualTo(-2);
+    }
+
+    @Test
+    void reserveStockThrowsBadRequestExceptionIfThereIsNotEnoughStock() {
+        // Given there isn't enough stock for the order
+        Product product = buildProduct();
+        given(productStockRepository.decrementStock(product.getId(),
+                ProductSize.M, 2)).willReturn(0);
+        // When reserveStock() is called
+        // Then a BadRequestException is thrown and nothing is logged
+        assertThrows(BadRequestException.class, () -> {
+            ledgerInventoryService.reserveStock(product, ProductSize.M, 2);
+        });
+        verify(stockMovementRepository, never()).save(any());
+    }
+
+    private Product buildProduct() {
+        return Product.builder()
+                .id(1L)
+                .sku(UUID.randomUUID())
+                .brand("brand")
+                .name("name")
+                .description("description")
+                .category(ProductCategory.SPORTSWEAR)
+                .gender(ProductGender.MALE)
+                .price(50)
+                .isActive(true)
+                .inventory(new ArrayList<>())
+                .build();
+    }
+}
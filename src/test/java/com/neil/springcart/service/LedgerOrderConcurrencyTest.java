@@ -0,0 +1,25 @@
+package com.neil.springcart.service;
+
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.StockMovement;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@SpringBootTest(properties = "inventory.mode=ledger")
+class LedgerOrderConcurrencyTest extends AbstractOrderConcurrencyTest {
+    @Override
+    void assertNothingOversold(Product product) {
+        assertThat(productStockRepository.findAllByProductId(product.getId()))
+                .singleElement()
+                .satisfies(stock -> assertThat(stock.getOnHand()).isZero());
+        // Restocks and orders in the movement log cancel out
+        int netMovement = stockMovementRepository
+                .findAllByProductId(product.getId()).stream()
+                .mapToInt(StockMovement::getQuantity)
+                .sum();
+        assertThat(netMovement).isZero();
+    }
+}
@@ -1,12 +1,16 @@
 package com.neil.springcart.service;
 
+import com.neil.springcart.dto.CheckoutRequest;
 import com.neil.springcart.dto.CreateOrderRequest;
 import com.neil.springcart.dto.OrderLineItemDto;
 import com.neil.springcart.dto.OrderResponse;
 import com.neil.springcart.dto.OrderSummary;
+import com.neil.springcart.event.CartCheckedOutEvent;
+import com.neil.springcart.event.StockChangedEvent;
 import com.neil.springcart.exception.BadRequestException;
 import com.neil.springcart.model.*;
 import com.neil.springcart.repository.*;
+import com.neil.springcart.util.mapper.InventoryMapper;
 import com.neil.springcart.util.mapper.OrderLineItemMapper;
 import com.neil.springcart.util.mapper.OrderMapper;
 import org.junit.jupiter.api.AfterEach;
@@ -14,10 +18,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -25,11 +32,11 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
-import static org.mockito.Mockito.reset;
-import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 @ActiveProfiles("test")
@@ -45,21 +52,33 @@ class OrderServiceTest {
     @Mock
     private ProductRepository productRepository;
     @Mock
+    private CartItemRepository cartItemRepository;
+    @Mock
     private InventoryItemRepository inventoryItemRepository;
+    @Mock
+    private CartStore cartStore;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @BeforeEach
     void setUp() {
         OrderLineItemMapper orderLineItemMapper = new OrderLineItemMapper();
         OrderMapper orderMapper = new OrderMapper(orderLineItemMapper);
+        InventoryService inventoryService = new ItemInventoryService(
+                inventoryItemRepository, new InventoryMapper());
         orderService = new OrderService(orderRepository,
                 orderLineItemRepository, customerRepository, productRepository,
-                inventoryItemRepository, orderMapper);
+                cartItemRepository, inventoryService, cartStore, orderMapper,
+                eventPublisher, transactionManager);
     }
 
     @AfterEach
     void tearDown() {
         reset(orderRepository, orderLineItemRepository, customerRepository,
-                productRepository, inventoryItemRepository);
+                productRepository, cartItemRepository, inventoryItemRepository,
+                cartStore, eventPublisher, transactionManager);
     }
 
     @Test
@@ -69,14 +88,12 @@ class OrderServiceTest {
                 .willReturn(Optional.of(buildCustomer()));
         Product product = buildProduct();
         ProductSize size = ProductSize.S;
-        given(productRepository.findById(product.getId()))
-                .willReturn(Optional.of(product));
-        List<InventoryItem> productInventory = List.of(
-                buildInventoryItem(size, product)
-        );
-        given(inventoryItemRepository.findAllByProductIdAndSize(
-                product.getId(), size))
-                .willReturn(productInventory);
+        given(productRepository.findAllById(List.of(product.getId())))
+                .willReturn(List.of(product));
+        givenStock(product, size, 1);
+        given(inventoryItemRepository.lockAvailableIdsByProductIdAndSize(
+                product.getId(), size.name(), 1))
+                .willReturn(List.of(1L));
         List<OrderLineItemDto> orderItems = List.of(
                 new OrderLineItemDto(product.getId(), size, 1)
         );
@@ -84,8 +101,10 @@ class OrderServiceTest {
         // When createOrder() is called
         orderService.createOrder(buildCreateOrderRequest(orderItems));
 
-        // Then an order is saved
+        // Then an order is saved and the product's stock is marked as changed
         verify(orderRepository).save(any());
+        verify(eventPublisher).publishEvent(new StockChangedEvent(
+                product.getId()));
     }
 
     @Test
@@ -101,22 +120,19 @@ class OrderServiceTest {
     }
 
     @Test
-    void createOrderCreatesMultipleOrderLineItemsForSameProductIfQuantityOfOrderLineItemDtoIsMoreThanOne() {
+    void createOrderCreatesOneOrderLineItemWithTheQuantityIfQuantityOfOrderLineItemDtoIsMoreThanOne() {
         // Given a create order request comes in with an OrderLineItemDto having
         // a quantity of 2
         given(customerRepository.findById(1L))
                 .willReturn(Optional.of(buildCustomer()));
         Product product = buildProduct();
         ProductSize size = ProductSize.S;
-        given(productRepository.findById(product.getId()))
-                .willReturn(Optional.of(product));
-        List<InventoryItem> productInventory = List.of(
-                buildInventoryItem(size, product),
-                buildInventoryItem(size, product)
-        );
-        given(inventoryItemRepository.findAllByProductIdAndSize(
-                product.getId(), size))
-                .willReturn(productInventory);
+        given(productRepository.findAllById(List.of(product.getId())))
+                .willReturn(List.of(product));
+        givenStock(product, size, 2);
+        given(inventoryItemRepository.lockAvailableIdsByProductIdAndSize(
+                product.getId(), size.name(), 2))
+                .willReturn(List.of(1L, 2L));
         List<OrderLineItemDto> orderItems = List.of(
                 new OrderLineItemDto(product.getId(), size, 2)
         );
@@ -124,12 +140,14 @@ class OrderServiceTest {
         // When createOrder() is called
         orderService.createOrder(buildCreateOrderRequest(orderItems));
 
-        // Then 2 order line items are saved
+        // Then 1 order line item with a quantity of 2 is saved
         ArgumentCaptor<List<OrderLineItem>> argumentCaptor = ArgumentCaptor
                 .forClass(List.class);
         verify(orderLineItemRepository).saveAll(argumentCaptor.capture());
         List<OrderLineItem> orderLineItems = argumentCaptor.getValue();
-        assertThat(orderLineItems.size()).isEqualTo(2);
+        assertThat(orderLineItems.size()).isEqualTo(1);
+        assertThat(orderLineItems.get(0).getQuantity()).isEqualTo(2);
+        assertThat(orderLineItems.get(0).getInventoryItems()).hasSize(2);
     }
 
     @Test
@@ -141,23 +159,159 @@ class OrderServiceTest {
                 .willReturn(Optional.of(buildCustomer()));
         Product product = buildProduct();
         ProductSize size = ProductSize.S;
-        given(productRepository.findById(product.getId()))
-                .willReturn(Optional.of(product));
-        List<InventoryItem> productInventory = List.of(
-                buildInventoryItem(size, product)
-        );
-        given(inventoryItemRepository.findAllByProductIdAndSize(
-                product.getId(), size))
-                .willReturn(productInventory);
+        given(productRepository.findAllById(List.of(product.getId())))
+                .willReturn(List.of(product));
+        givenStock(product, size, 1);
         List<OrderLineItemDto> orderItems = List.of(
                 new OrderLineItemDto(product.getId(), size, 2)
         );
 
         // When createOrder() is called
-        // Then a BadRequestException is thrown for not enough stock
+        // Then a BadRequestException is thrown for not enough stock before
+        // any stock is reserved
+        assertThrows(BadRequestException.class, () -> {
+            orderService.createOrder(buildCreateOrderRequest(orderItems));
+        });
+        verify(inventoryItemRepository, never())
+                .lockAvailableIdsByProductIdAndSize(any(), any(), anyInt());
+    }
+
+    @Test
+    void createOrderLooksUpEveryProductAndItsStockWithOneQueryEach() {
+        // Given an order for 3 different products
+        given(customerRepository.findById(1L))
+                .willReturn(Optional.of(buildCustomer()));
+        List<Product> products = List.of(buildProduct(1L), buildProduct(2L),
+                buildProduct(3L));
+        List<Long> ids = List.of(1L, 2L, 3L);
+        given(productRepository.findAllById(ids)).willReturn(products);
+        given(inventoryItemRepository.countAvailableByProductIdsGroupBySize(
+                ids)).willReturn(List.of(
+                new StockCount(1L, ProductSize.S, 1),
+                new StockCount(2L, ProductSize.S, 1),
+                new StockCount(3L, ProductSize.S, 1)));
+        given(inventoryItemRepository.lockAvailableIdsByProductIdAndSize(
+                any(), any(), anyInt())).willReturn(List.of(1L));
+        List<OrderLineItemDto> orderItems = ids.stream()
+                .map(id -> new OrderLineItemDto(id, ProductSize.S, 1))
+                .toList();
+
+        // When createOrder() is called
+        orderService.createOrder(buildCreateOrderRequest(orderItems));
+
+        // Then the products and their stock are each looked up once
+        verify(productRepository, times(1)).findAllById(ids);
+        verify(productRepository, never()).findById(any());
+        verify(inventoryItemRepository, times(1))
+                .countAvailableByProductIdsGroupBySize(ids);
+    }
+
+    @Test
+    void createOrderThrowsBadRequestExceptionWhenAProductDoesNotExist() {
+        // Given an order for a product that doesn't exist
+        given(customerRepository.findById(1L))
+                .willReturn(Optional.of(buildCustomer()));
+        given(productRepository.findAllById(List.of(5L)))
+                .willReturn(List.of());
+        List<OrderLineItemDto> orderItems = List.of(
+                new OrderLineItemDto(5L, ProductSize.S, 1)
+        );
+        // When createOrder() is called
+        // Then a BadRequestException is thrown
         assertThrows(BadRequestException.class, () -> {
             orderService.createOrder(buildCreateOrderRequest(orderItems));
         });
+        verifyNoInteractions(inventoryItemRepository);
+    }
+
+    @Test
+    void createOrderFromCartReservesStockForEveryLineAndEmptiesTheCart() {
+        // Given the cart has 2 of a product in size S and 1 in size M
+        given(customerRepository.findById(1L))
+                .willReturn(Optional.of(buildCustomer()));
+        Product product = buildProduct();
+        given(cartItemRepository.findAllByCustomerId(1L)).willReturn(List.of(
+                buildCartItem(product, ProductSize.M, 1),
+                buildCartItem(product, ProductSize.S, 2)));
+        given(inventoryItemRepository.countAvailableByProductIdsGroupBySize(
+                List.of(product.getId()))).willReturn(List.of(
+                new StockCount(product.getId(), ProductSize.S, 2),
+                new StockCount(product.getId(), ProductSize.M, 1)));
+        given(inventoryItemRepository.lockAvailableIdsByProductIdAndSize(
+                product.getId(), ProductSize.S.name(), 2))
+                .willReturn(List.of(1L, 2L));
+        given(inventoryItemRepository.lockAvailableIdsByProductIdAndSize(
+                product.getId(), ProductSize.M.name(), 1))
+                .willReturn(List.of(3L));
+
+        // When createOrderFromCart() is called
+        orderService.createOrderFromCart(buildCheckoutRequest());
+
+        // Then a line is saved for each size, the cart is emptied and the
+        // products aren't looked up again
+        ArgumentCaptor<List<OrderLineItem>> argumentCaptor = ArgumentCaptor
+                .forClass(List.class);
+        verify(orderLineItemRepository).saveAll(argumentCaptor.capture());
+        assertThat(argumentCaptor.getValue())
+                .extracting(OrderLineItem::getSize, OrderLineItem::getQuantity)
+                .containsExactly(tuple(ProductSize.S, 2),
+                        tuple(ProductSize.M, 1));
+        verify(cartItemRepository).deleteAllByCartId(2L);
+        verify(eventPublisher).publishEvent(new CartCheckedOutEvent(1L));
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void createOrderFromCartThrowsBadRequestExceptionWhenTheCartIsEmpty() {
+        // Given the customer's cart is empty
+        given(customerRepository.findById(1L))
+                .willReturn(Optional.of(buildCustomer()));
+        given(cartItemRepository.findAllByCustomerId(1L))
+                .willReturn(List.of());
+        // When createOrderFromCart() is called
+        // Then a BadRequestException is thrown and no order is saved
+        assertThrows(BadRequestException.class, () -> {
+            orderService.createOrderFromCart(buildCheckoutRequest());
+        });
+        verify(orderRepository, never()).save(any());
+    }
+
+    @Test
+    void createOrderFromCartThrowsBadRequestExceptionWhenAProductIsInactive() {
+        // Given the cart has a product that is no longer active
+        given(customerRepository.findById(1L))
+                .willReturn(Optional.of(buildCustomer()));
+        Product product = buildProduct();
+        product.setActive(false);
+        given(cartItemRepository.findAllByCustomerId(1L)).willReturn(List.of(
+                buildCartItem(product, ProductSize.S, 1)));
+        // When createOrderFromCart() is called
+        // Then a BadRequestException is thrown and no stock is reserved
+        assertThrows(BadRequestException.class, () -> {
+            orderService.createOrderFromCart(buildCheckoutRequest());
+        });
+        verifyNoInteractions(inventoryItemRepository);
+    }
+
+    @Test
+    void createOrderFromCartFlushesTheCartStoreBeforeStartingTheTransaction() {
+        // Given the cart store is enabled
+        given(cartStore.isEnabled()).willReturn(true);
+        given(customerRepository.findById(1L))
+                .willReturn(Optional.of(buildCustomer()));
+        given(cartItemRepository.findAllByCustomerId(1L))
+                .willReturn(List.of());
+        // When createOrderFromCart() is called
+        assertThrows(BadRequestException.class, () -> {
+            orderService.createOrderFromCart(buildCheckoutRequest());
+        });
+        // Then the customer's cart is flushed before the checkout transaction
+        // starts and the cart is read
+        InOrder inOrder = inOrder(cartStore, transactionManager,
+                cartItemRepository);
+        inOrder.verify(cartStore).flush(1L);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(cartItemRepository).findAllByCustomerId(1L);
     }
 
     @Test
@@ -217,6 +371,20 @@ class OrderServiceTest {
         return new CreateOrderRequest(1L, items, buildAddress());
     }
 
+    private CheckoutRequest buildCheckoutRequest() {
+        return new CheckoutRequest(1L, buildAddress());
+    }
+
+    private CartItem buildCartItem(Product product, ProductSize size,
+                                   int quantity) {
+        return CartItem.builder()
+                .cart(Cart.builder().id(2L).build())
+                .product(product)
+                .size(size)
+                .quantity(quantity)
+                .build();
+    }
+
     private Order buildOrder() {
         Customer customer = customerRepository.save(buildCustomer());
         return Order.builder()
@@ -255,14 +423,25 @@ class OrderServiceTest {
                 .product(product)
                 .size(inventoryItem.getSize())
                 .order(order)
-                .inventoryItem(inventoryItem)
-                .isReturned(false)
+                .quantity(1)
+                .inventoryItems(List.of(inventoryItem))
+                .returnedQuantity(0)
                 .build();
     }
 
+    private void givenStock(Product product, ProductSize size, long stock) {
+        given(inventoryItemRepository.countAvailableByProductIdsGroupBySize(
+                List.of(product.getId()))).willReturn(List.of(
+                new StockCount(product.getId(), size, stock)));
+    }
+
     private Product buildProduct() {
+        return buildProduct(1L);
+    }
+
+    private Product buildProduct(Long id) {
         return Product.builder()
-                .id(1L)
+                .id(id)
                 .brand("brand")
                 .name("name")
                 .description("description")
@@ -282,5 +461,21 @@ class OrderServiceTest {
                 .build();
     }
 
+    private record StockCount(Long productId, ProductSize size, long stock)
+            implements ProductSizeStockCount {
+        @Override
+        public Long getProductId() {
+            return productId;
+        }
 
-}
\ No newline at end of file
+        @Override
+        public ProductSize getSize() {
+            return size;
+        }
+
+        @Override
+        public long getStock() {
+            return stock;
+        }
+    }
+}
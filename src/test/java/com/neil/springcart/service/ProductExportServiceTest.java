@@ -0,0 +1,130 @@
+package com.neil.springcart.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.ProductExportFormat;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.util.mapper.ProductMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductExportServiceTest {
+    private ProductExportService productExportService;
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private InventoryService inventoryService;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        productExportService = new ProductExportService(productRepository,
+                inventoryService, new ProductMapper(), objectMapper,
+                entityManager, transactionManager, 2);
+    }
+
+    @Test
+    void exportProductsLooksUpStockOncePerChunk() throws Exception {
+        // Given three products and a chunk size of 2
+        List<Product> products = List.of(buildProduct(1L), buildProduct(2L),
+                buildProduct(3L));
+        given(productRepository.streamAllOrderById())
+                .willReturn(products.stream());
+        given(inventoryService.getAvailableStock(List.of(1L, 2L))).willReturn(
+                Map.of(1L, List.of(new InventoryDto(ProductSize.S, 5))));
+        given(inventoryService.getAvailableStock(List.of(3L)))
+                .willReturn(Map.of());
+        // When exportProducts() is called
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = productExportService.exportProducts(
+                ProductExportFormat.NDJSON, out);
+        // Then every product is written on its own line and the stock is
+        // looked up once for each chunk
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(exported).isEqualTo(3);
+        assertThat(lines).hasSize(3);
+        assertThat(objectMapper.readTree(lines[0]).get("inventory").size())
+                .isEqualTo(1);
+        assertThat(objectMapper.readTree(lines[2]).get("id").asLong())
+                .isEqualTo(3L);
+        verify(inventoryService, times(2)).getAvailableStock(anyCollection());
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void exportProductsWritesCsvWithInventoryColumn() throws Exception {
+        // Given a product with stock in two sizes
+        Product product = buildProduct(1L);
+        given(productRepository.streamAllOrderById())
+                .willReturn(Stream.of(product));
+        given(inventoryService.getAvailableStock(List.of(1L))).willReturn(
+                Map.of(1L, List.of(new InventoryDto(ProductSize.S, 5),
+                        new InventoryDto(ProductSize.M, 10))));
+        // When exportProducts() is called with the CSV format
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        productExportService.exportProducts(ProductExportFormat.CSV, out);
+        // Then a header is written followed by the product with its stock
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n"))
+                .containsExactly(
+                        String.join(",", ProductExportService.CSV_COLUMNS),
+                        "1," + product.getSku()
+                                + ",brand,name,\"soft, cotton\",SPORTSWEAR,MALE,20.0,true,S:5|M:10");
+    }
+
+    @Test
+    void exportProductsWritesOnlyTheHeaderForAnEmptyCatalogue()
+            throws Exception {
+        // Given there are no products
+        given(productRepository.streamAllOrderById())
+                .willReturn(Stream.empty());
+        // When exportProducts() is called with the CSV format
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = productExportService.exportProducts(
+                ProductExportFormat.CSV, out);
+        // Then only the header is written and no stock is looked up
+        assertThat(exported).isZero();
+        assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo(String.join(",", ProductExportService.CSV_COLUMNS)
+                        + "\n");
+        verifyNoInteractions(inventoryService);
+    }
+
+    private Product buildProduct(Long id) {
+        return Product.builder()
+                .id(id)
+                .sku(UUID.randomUUID())
+                .brand("brand")
+                .name("name")
+                .description("soft, cotton")
+                .category(ProductCategory.SPORTSWEAR)
+                .gender(ProductGender.MALE)
+                .price(20)
+                .isActive(true)
+                .build();
+    }
+}
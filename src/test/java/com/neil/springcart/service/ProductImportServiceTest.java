@@ -0,0 +1,224 @@
+package com.neil.springcart.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neil.springcart.dto.InventoryDto;
+import com.neil.springcart.dto.ProductImportError;
+import com.neil.springcart.dto.ProductImportProgress;
+import com.neil.springcart.dto.ProductImportReport;
+import com.neil.springcart.event.CatalogueImportedEvent;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.exception.BadRequestException;
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.util.mapper.NewProductMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+    private static final String CSV_HEADER =
+            "brand,name,description,category,gender,price,inventory\n";
+
+    private ProductImportService productImportService;
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private InventoryService inventoryService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        productImportService = new ProductImportService(productRepository,
+                inventoryService, new NewProductMapper(), eventPublisher,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ObjectMapper(), entityManager, transactionManager, 2);
+    }
+
+    @Test
+    void importCsvCreatesAProductWithInventoryForEachRow() throws Exception {
+        // Given a CSV file with two products, one with a quoted description
+        String csv = CSV_HEADER
+                + "brand,shirt,\"soft, \"\"cotton\"\" shirt\",TSHIRTS,MALE,20,S:5|M:10\n"
+                + "brand,pants,pants,PANTS,FEMALE,35.5,L:3\n";
+        // When importCsv() is called
+        ProductImportReport report = productImportService.importCsv(
+                toStream(csv));
+        // Then both products are saved with their inventory
+        ArgumentCaptor<Product> productCaptor = ArgumentCaptor.forClass(
+                Product.class);
+        verify(productRepository, times(2)).save(productCaptor.capture());
+        assertThat(productCaptor.getAllValues().get(0).getDescription())
+                .isEqualTo("soft, \"cotton\" shirt");
+        verify(inventoryService).addStock(productCaptor.getAllValues().get(0),
+                List.of(new InventoryDto(ProductSize.S, 5),
+                        new InventoryDto(ProductSize.M, 10)));
+        verify(eventPublisher).publishEvent(new CatalogueImportedEvent(2));
+        verify(eventPublisher, never())
+                .publishEvent(any(ProductChangedEvent.class));
+        assertThat(report.rowsRead()).isEqualTo(2);
+        assertThat(report.productsCreated()).isEqualTo(2);
+        assertThat(report.unitsAdded()).isEqualTo(18);
+        assertThat(report.errors()).isEmpty();
+    }
+
+    @Test
+    void importCsvReportsInvalidRowsAndImportsTheRest() throws Exception {
+        // Given a CSV file with a valid row between two invalid rows
+        String csv = CSV_HEADER
+                + ",no brand,description,TSHIRTS,MALE,20,S:5\n"
+                + "brand,name,description,TSHIRTS,MALE,20,S:5\n"
+                + "brand,name,description,HATS,MALE,20,S:5\n";
+        // When importCsv() is called
+        ProductImportReport report = productImportService.importCsv(
+                toStream(csv));
+        // Then only the valid row is saved and the others are reported
+        verify(productRepository, times(1)).save(any(Product.class));
+        assertThat(report.productsCreated()).isEqualTo(1);
+        assertThat(report.rowsFailed()).isEqualTo(2);
+        assertThat(report.errors()).containsExactly(
+                new ProductImportError(1, "Brand cannot be empty"),
+                new ProductImportError(3, "Invalid product category"));
+    }
+
+    @Test
+    void importCsvThrowsBadRequestWhenAColumnIsMissing() {
+        String csv = "brand,name,description\nbrand,name,description\n";
+        assertThatThrownBy(() -> productImportService.importCsv(toStream(csv)))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void importCsvReportsOnlyTheRowsThatFailToSaveWithTheirReason() throws Exception {
+        // Given saving the second product fails
+        given(productRepository.save(any(Product.class))).willAnswer(
+                invocation -> {
+                    Product product = invocation.getArgument(0);
+                    if (product.getName().equals("second")) {
+                        throw new IllegalStateException("database is down");
+                    }
+                    return product;
+                });
+        String csv = CSV_HEADER
+                + "brand,first,description,TSHIRTS,MALE,20,S:1\n"
+                + "brand,second,description,TSHIRTS,MALE,20,S:1\n"
+                + "brand,third,description,TSHIRTS,MALE,20,S:1\n";
+        // When importCsv() is called with chunks of 2 rows
+        ProductImportReport report = productImportService.importCsv(
+                toStream(csv));
+        // Then the failed chunk is saved again a row at a time, so only the
+        // second row is reported, with its reason, and the rest are saved
+        assertThat(report.productsCreated()).isEqualTo(2);
+        assertThat(report.unitsAdded()).isEqualTo(2);
+        assertThat(report.rowsFailed()).isEqualTo(1);
+        assertThat(report.errors()).containsExactly(
+                new ProductImportError(2L, "database is down"));
+        verify(transactionManager, times(2)).rollback(any());
+    }
+
+    @Test
+    void importCsvDetachesTheSavedProductsAfterEachChunk() throws Exception {
+        // Given a CSV file with three products
+        String csv = CSV_HEADER
+                + "brand,first,description,TSHIRTS,MALE,20,S:1\n"
+                + "brand,second,description,TSHIRTS,MALE,20,S:1\n"
+                + "brand,third,description,TSHIRTS,MALE,20,S:1\n";
+        // When importCsv() is called with chunks of 2 rows
+        productImportService.importCsv(toStream(csv));
+        // Then each of the 2 chunks is flushed and then detached
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void importCsvReportsItsProgressWhileItRuns() throws Exception {
+        // Given the progress is checked as the third product is saved
+        List<ProductImportProgress> progress = new ArrayList<>();
+        given(productRepository.save(any(Product.class))).willAnswer(
+                invocation -> {
+                    Product product = invocation.getArgument(0);
+                    if (product.getName().equals("third")) {
+                        progress.addAll(productImportService
+                                .getRunningImports());
+                    }
+                    return product;
+                });
+        String csv = CSV_HEADER
+                + "brand,first,description,TSHIRTS,MALE,20,S:1\n"
+                + "brand,second,description,TSHIRTS,MALE,20,S:1\n"
+                + "brand,third,description,TSHIRTS,MALE,20,S:1\n";
+        // When importCsv() is called with chunks of 2 rows
+        productImportService.importCsv(toStream(csv));
+        // Then the running import had saved the first chunk, and it is no
+        // longer listed once it has finished
+        assertThat(progress).singleElement().satisfies(running -> {
+            assertThat(running.rowsRead()).isEqualTo(3);
+            assertThat(running.productsCreated()).isEqualTo(2);
+            assertThat(running.unitsAdded()).isEqualTo(2);
+        });
+        assertThat(productImportService.getRunningImports()).isEmpty();
+    }
+
+    @Test
+    void importCsvDoesNotPublishAnEventIfNoProductsWereCreated()
+            throws Exception {
+        // Given a CSV file with only an invalid row
+        String csv = CSV_HEADER + ",no brand,description,TSHIRTS,MALE,20,S:5\n";
+        // When importCsv() is called
+        productImportService.importCsv(toStream(csv));
+        // Then nothing is published, as the catalogue hasn't changed
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void importNdjsonCreatesAProductForEachLine() throws Exception {
+        // Given an NDJSON file with a valid line and a malformed line
+        String ndjson = """
+                {"brand":"brand","name":"name","description":"description",\
+                "category":"TSHIRTS","gender":"MALE","price":20,\
+                "inventory":[{"size":"S","stock":5}]}
+                {"brand":"brand",
+                """;
+        // When importNdjson() is called
+        ProductImportReport report = productImportService.importNdjson(
+                toStream(ndjson));
+        // Then the valid line is saved and the malformed line is reported
+        verify(productRepository, times(1)).save(any(Product.class));
+        verify(inventoryService).addStock(any(Product.class), anyList());
+        assertThat(report.productsCreated()).isEqualTo(1);
+        assertThat(report.unitsAdded()).isEqualTo(5);
+        assertThat(report.errors()).extracting(ProductImportError::row)
+                .containsExactly(2L);
+    }
+
+    private InputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(
+                StandardCharsets.UTF_8));
+    }
+}
@@ -1,49 +1,97 @@
 package com.neil.springcart.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neil.springcart.dto.DetailedProductResponse;
+import com.neil.springcart.dto.FacetedProductPage;
+import com.neil.springcart.dto.ProductFilter;
+import com.neil.springcart.dto.ProductPage;
 import com.neil.springcart.dto.ProductResponse;
+import com.neil.springcart.dto.ProductSort;
+import com.neil.springcart.dto.SerializedListing;
+import com.neil.springcart.event.ProductChangedEvent;
+import com.neil.springcart.event.StockChangedEvent;
+import com.neil.springcart.exception.BadRequestException;
 import com.neil.springcart.exception.NotFoundException;
 import com.neil.springcart.model.Product;
 import com.neil.springcart.model.ProductCategory;
 import com.neil.springcart.model.ProductGender;
+import com.neil.springcart.model.ProductSize;
+import com.neil.springcart.repository.InventoryItemRepository;
 import com.neil.springcart.repository.ProductRepository;
+import com.neil.springcart.repository.ProductSnapshot;
+import com.neil.springcart.repository.ProductSizeStockCount;
+import com.neil.springcart.repository.SizeStockCount;
+import com.neil.springcart.util.cache.CacheRegistry;
 import com.neil.springcart.util.mapper.InventoryMapper;
 import com.neil.springcart.util.mapper.ProductMapper;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(MockitoExtension.class)
 @ActiveProfiles("test")
 class ProductServiceTest {
     private ProductService productService;
+    private CatalogueCache catalogueCache;
+    private ProductSearchIndex productSearchIndex;
+    private ProductFacetIndex productFacetIndex;
+    private ProductPriceIndex productPriceIndex;
     @Mock
     private ProductRepository productRepository;
+    @Mock
+    private InventoryItemRepository inventoryItemRepository;
 
     @BeforeEach
     void setUp() {
         InventoryMapper inventoryMapper = new InventoryMapper();
-        ProductMapper productMapper = new ProductMapper(inventoryMapper);
-        productService = new ProductService(productRepository, productMapper);
+        ProductMapper productMapper = new ProductMapper();
+        InventoryService inventoryService = new ItemInventoryService(
+                inventoryItemRepository, inventoryMapper);
+        catalogueCache = new CatalogueCache(new CacheRegistry(), true, 64,
+                Duration.ZERO);
+        SerializedListingCache serializedListingCache =
+                new SerializedListingCache(new ObjectMapper(),
+                        new CacheRegistry(), true, 64, Duration.ZERO);
+        productSearchIndex = new ProductSearchIndex(productRepository,
+                productMapper);
+        productFacetIndex = new ProductFacetIndex(productRepository,
+                inventoryService, productMapper, Duration.ZERO);
+        productPriceIndex = new ProductPriceIndex(productRepository,
+                productMapper);
+        productService = new ProductService(productRepository, productMapper,
+                inventoryService, catalogueCache, serializedListingCache,
+                productSearchIndex, productFacetIndex, productPriceIndex);
     }
 
     @AfterEach
     void tearDown() {
-        reset(productRepository);
+        reset(productRepository, inventoryItemRepository);
     }
 
     @Test
@@ -68,6 +116,37 @@ class ProductServiceTest {
         assertThat(products.size()).isEqualTo(1);
     }
 
+    @Test
+    void getAllProductsShouldOnlyQueryTheDatabaseOnceUntilAProductChanges() {
+        // Given there is 1 active product
+        given(productRepository.findActiveProducts())
+                .willReturn(List.of(buildProduct(1L, "product 1")));
+        // When getAllProducts() is called twice
+        productService.getAllProducts();
+        productService.getAllProducts();
+        // Then the database is only queried once
+        verify(productRepository, times(1)).findActiveProducts();
+        // And when a product changes the next call queries the database again
+        catalogueCache.handleProductChanged(new ProductChangedEvent(1L));
+        productService.getAllProducts();
+        verify(productRepository, times(2)).findActiveProducts();
+    }
+
+    @Test
+    void getSerializedProductsReturnsTheSameEtagUntilAProductChanges() {
+        // Given there is 1 active product
+        given(productRepository.findActiveProducts())
+                .willReturn(List.of(buildProduct(1L, "product 1")));
+        // When getSerializedProducts() is called twice
+        SerializedListing first = productService.getSerializedProducts(null,
+                null);
+        SerializedListing second = productService.getSerializedProducts(null,
+                null);
+        // Then the same serialized listing is returned
+        assertThat(second).isSameAs(first);
+        assertThat(first.etag()).startsWith("\"").endsWith("\"");
+    }
+
     @Test
     void getProductsByGenderShouldReturnAnEmptyListIfThereAreNoProductsForTheGivenGender() {
         // Given there are no MALE products
@@ -112,6 +191,423 @@ class ProductServiceTest {
         assertThat(products.size()).isEqualTo(1);
     }
 
+    @Test
+    void getProductPageReturnsANextCursorIfThereAreMoreProducts() {
+        // Given there are 3 active products after the cursor
+        given(productRepository.findActiveProductsAfter(eq(0L), any()))
+                .willReturn(new ArrayList<>(List.of(
+                        buildProduct(1L, "product 1"),
+                        buildProduct(2L, "product 2"),
+                        buildProduct(3L, "product 3")
+                )));
+        // When getProductPage() is called with a limit of 2
+        ProductPage page = productService.getProductPage(null, null, null, 2);
+        // Then 2 products are returned with the last one as the cursor
+        assertThat(page.items().size()).isEqualTo(2);
+        assertThat(page.nextCursor()).isEqualTo(2L);
+    }
+
+    @Test
+    void getProductPageReturnsNoCursorOnTheLastPage() {
+        // Given there is 1 active product after the cursor
+        given(productRepository.findActiveProductsAfter(eq(1L), any()))
+                .willReturn(new ArrayList<>(List.of(
+                        buildProduct(2L, "product 2")
+                )));
+        // When getProductPage() is called with a limit of 2
+        ProductPage page = productService.getProductPage(null, null, 1L, 2);
+        // Then there is no next cursor
+        assertThat(page.items().size()).isEqualTo(1);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    void getProductPageThrowsBadRequestExceptionIfTheLimitIsTooLarge() {
+        assertThrows(BadRequestException.class, () -> {
+            productService.getProductPage(null, null, null, 1000);
+        });
+    }
+
+    @Test
+    void searchProductsRanksNameMatchesAboveDescriptionMatches() {
+        // Given one product has "runner" in its name and another only in its
+        // description
+        Product inDescription = buildProduct(1L, "trainer");
+        inDescription.setDescription("a trainer for every runner");
+        Product inName = buildProduct(2L, "trail runner");
+        given(productRepository.findActiveProducts())
+                .willReturn(List.of(inDescription, inName));
+        productSearchIndex.rebuild();
+        // When searchProducts() is called with "runner"
+        List<ProductResponse> products = productService.searchProducts(
+                "Runner", 10);
+        // Then both products are returned with the name match first
+        assertThat(products).extracting(ProductResponse::id)
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    void searchProductsMatchesPrefixesAndRequiresEveryTerm() {
+        // Given two products that both start with "run" in their names
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                buildProduct(1L, "running shorts"),
+                buildProduct(2L, "running jacket")
+        ));
+        productSearchIndex.rebuild();
+        // When searchProducts() is called with a prefix and a whole word
+        List<ProductResponse> products = productService.searchProducts(
+                "run jacket", 10);
+        // Then only the product matching both terms is returned
+        assertThat(products).extracting(ProductResponse::id)
+                .containsExactly(2L);
+    }
+
+    @Test
+    void searchProductsReflectsProductChanges() {
+        // Given the index is built with one product
+        Product product = buildProduct(1L, "hoodie");
+        given(productRepository.findActiveProducts())
+                .willReturn(List.of(product));
+        productSearchIndex.rebuild();
+        // When the product is renamed
+        product.setName("sweater");
+        given(productRepository.findSnapshotById(1L)).willReturn(Optional.of(
+                snapshotOf(product)));
+        productSearchIndex.handleProductChanged(new ProductChangedEvent(1L));
+        // Then it is found by its new name and not its old one
+        assertThat(productService.searchProducts("sweater", 10)).hasSize(1);
+        assertThat(productService.searchProducts("hoodie", 10)).isEmpty();
+        // And when it is archived it is no longer found
+        product.setActive(false);
+        productSearchIndex.handleProductChanged(new ProductChangedEvent(1L));
+        assertThat(productService.searchProducts("sweater", 10)).isEmpty();
+    }
+
+    @Test
+    void searchProductsIncludesAProductChangedWhileTheIndexIsRebuilt() {
+        // Given a product is created after the rebuild has read the products
+        Product product = buildProduct(1L, "hoodie");
+        given(productRepository.findActiveProducts()).willAnswer(invocation -> {
+            productSearchIndex.handleProductChanged(
+                    new ProductChangedEvent(1L));
+            return List.of();
+        });
+        given(productRepository.findSnapshotById(1L)).willReturn(Optional.of(
+                snapshotOf(product)));
+        // When the index is rebuilt
+        productSearchIndex.rebuild();
+        // Then the change is applied once the new index is in place
+        assertThat(productService.searchProducts("hoodie", 10)).hasSize(1);
+    }
+
+    @Test
+    void searchProductsAppliesChangesMadeDuringAFailedRebuild() {
+        // Given the index is built and a product is created while a rebuild
+        // fails
+        given(productRepository.findActiveProducts()).willReturn(List.of());
+        productSearchIndex.rebuild();
+        given(productRepository.findActiveProducts()).willAnswer(invocation -> {
+            productSearchIndex.handleProductChanged(
+                    new ProductChangedEvent(1L));
+            throw new IllegalStateException("database is down");
+        });
+        given(productRepository.findSnapshotById(1L)).willReturn(Optional.of(
+                snapshotOf(buildProduct(1L, "hoodie"))));
+        assertThrows(IllegalStateException.class, () ->
+                productSearchIndex.rebuild());
+        // When searchProducts() is called
+        // Then the change is in the old index and later changes still apply
+        assertThat(productService.searchProducts("hoodie", 10)).hasSize(1);
+        given(productRepository.findSnapshotById(1L))
+                .willReturn(Optional.empty());
+        productSearchIndex.handleProductChanged(new ProductChangedEvent(1L));
+        assertThat(productService.searchProducts("hoodie", 10)).isEmpty();
+    }
+
+    @Test
+    void searchProductsThrowsBadRequestExceptionIfTheQueryIsBlank() {
+        assertThrows(BadRequestException.class, () -> {
+            productService.searchProducts(" ", 10);
+        });
+    }
+
+    @Test
+    void getProductPageByPriceReturnsProductsInTheRangeInPriceOrder() {
+        // Given there are 4 products priced 10, 20, 20 and 40
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                buildProductWithPrice(1L, 40),
+                buildProductWithPrice(2L, 20),
+                buildProductWithPrice(3L, 10),
+                buildProductWithPrice(4L, 20)
+        ));
+        productPriceIndex.rebuild();
+        // When getProductPageByPrice() is called for prices from 15 to 40
+        // with a limit of 2
+        ProductPage firstPage = productService.getProductPageByPrice(
+                ProductSort.PRICE_ASC, 15.0, 40.0, null, 2);
+        ProductPage secondPage = productService.getProductPageByPrice(
+                ProductSort.PRICE_ASC, 15.0, 40.0, firstPage.nextCursor(), 2);
+        // Then the products are returned cheapest first, with ties ordered by
+        // ID, and the cheapest product is left out
+        assertThat(firstPage.items()).extracting(ProductResponse::id)
+                .containsExactly(2L, 4L);
+        assertThat(secondPage.items()).extracting(ProductResponse::id)
+                .containsExactly(1L);
+        assertThat(secondPage.nextCursor()).isNull();
+        verify(productRepository, times(0)).findActiveProductsByPriceAscAfter(
+                anyDouble(), anyDouble(), anyDouble(), anyLong(), any());
+    }
+
+    @Test
+    void getProductPageByPriceReturnsProductsInDescendingPriceOrder() {
+        // Given there are 3 products priced 10, 20 and 40
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                buildProductWithPrice(1L, 10),
+                buildProductWithPrice(2L, 20),
+                buildProductWithPrice(3L, 40)
+        ));
+        productPriceIndex.rebuild();
+        // When getProductPageByPrice() is called for the second page in
+        // descending order
+        ProductPage page = productService.getProductPageByPrice(
+                ProductSort.PRICE_DESC, null, null, 3L, 10);
+        // Then the products after the most expensive one are returned
+        assertThat(page.items()).extracting(ProductResponse::id)
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    void getProductPageByPriceMovesAProductWhenItChanges() {
+        // Given there are 2 products priced 10 and 20
+        Product product = buildProductWithPrice(1L, 10);
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                product,
+                buildProductWithPrice(2L, 20)
+        ));
+        productPriceIndex.rebuild();
+        // When the cheaper product's price goes up to 30
+        product.setPrice(30);
+        given(productRepository.findSnapshotById(1L)).willReturn(Optional.of(
+                snapshotOf(product)));
+        productPriceIndex.handleProductChanged(new ProductChangedEvent(1L));
+        // Then it is now the most expensive product
+        ProductPage page = productService.getProductPageByPrice(
+                ProductSort.PRICE_ASC, null, null, null, 10);
+        assertThat(page.items()).extracting(ProductResponse::id)
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    void getProductPageByPriceIncludesAProductChangedWhileTheIndexIsRebuilt() {
+        // Given a product's price goes up to 30 after the rebuild has read it
+        // at 10, alongside a product priced 20
+        Product product = buildProductWithPrice(1L, 10);
+        given(productRepository.findActiveProducts()).willAnswer(invocation -> {
+            List<Product> products = List.of(
+                    buildProductWithPrice(1L, 10),
+                    buildProductWithPrice(2L, 20));
+            product.setPrice(30);
+            productPriceIndex.handleProductChanged(
+                    new ProductChangedEvent(1L));
+            return products;
+        });
+        given(productRepository.findSnapshotById(1L)).willReturn(Optional.of(
+                snapshotOf(product)));
+        // When the index is rebuilt
+        productPriceIndex.rebuild();
+        // Then the new price is applied once the new index is in place
+        ProductPage page = productService.getProductPageByPrice(
+                ProductSort.PRICE_ASC, null, null, null, 10);
+        assertThat(page.items()).extracting(ProductResponse::id)
+                .containsExactly(2L, 1L);
+    }
+
+    @Test
+    void getProductPageByPriceFallsBackToTheDatabaseUntilTheIndexIsBuilt() {
+        // Given the price index hasn't been built
+        given(productRepository.findActiveProductsByPriceAscAfter(eq(0.0),
+                eq(50.0), eq(0.0), eq(0L), any()))
+                .willReturn(List.of(buildProductWithPrice(1L, 25)));
+        // When getProductPageByPrice() is called
+        ProductPage page = productService.getProductPageByPrice(
+                ProductSort.PRICE_ASC, null, 50.0, null, 10);
+        // Then the products are fetched from the database
+        assertThat(page.items()).extracting(ProductResponse::id)
+                .containsExactly(1L);
+    }
+
+    @Test
+    void getProductPageByPriceThrowsBadRequestExceptionIfTheRangeIsInvalid() {
+        assertThrows(BadRequestException.class, () -> {
+            productService.getProductPageByPrice(ProductSort.PRICE_ASC, 50.0,
+                    10.0, null, 10);
+        });
+    }
+
+    @Test
+    void getFacetedProductPageMatchesAnyValueWithinAFacetAndEveryFacet() {
+        // Given a male t-shirt, a female t-shirt, a unisex hoodie and a male
+        // pair of pants
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                buildProductWithGenderAndCategory(1L, "tee",
+                        ProductGender.MALE, ProductCategory.TSHIRTS),
+                buildProductWithGenderAndCategory(2L, "tee",
+                        ProductGender.FEMALE, ProductCategory.TSHIRTS),
+                buildProductWithGenderAndCategory(3L, "hoodie",
+                        ProductGender.UNISEX,
+                        ProductCategory.SWEATS_AND_HOODIES),
+                buildProductWithGenderAndCategory(4L, "pants",
+                        ProductGender.MALE, ProductCategory.PANTS)
+        ));
+        productFacetIndex.rebuild();
+        // When getFacetedProductPage() is called for male t-shirts and hoodies
+        ProductFilter filter = ProductFilter.builder()
+                .genders(Set.of(ProductGender.MALE))
+                .categories(Set.of(ProductCategory.TSHIRTS,
+                        ProductCategory.SWEATS_AND_HOODIES))
+                .build();
+        FacetedProductPage page = productService.getFacetedProductPage(filter,
+                null, 10);
+        // Then the male t-shirt and the unisex hoodie are returned
+        assertThat(page.items()).extracting(ProductResponse::id)
+                .containsExactly(1L, 3L);
+        assertThat(page.total()).isEqualTo(2);
+        // And the category counts ignore the category filter but not the
+        // gender filter
+        assertThat(page.facets().category()).isEqualTo(Map.of(
+                ProductCategory.TSHIRTS, 1,
+                ProductCategory.SWEATS_AND_HOODIES, 1,
+                ProductCategory.PANTS, 1));
+        // And the gender counts ignore the gender filter
+        assertThat(page.facets().gender()).isEqualTo(Map.of(
+                ProductGender.MALE, 1,
+                ProductGender.FEMALE, 1,
+                ProductGender.UNISEX, 1));
+    }
+
+    @Test
+    void getFacetedProductPageFiltersBySizesInStock() {
+        // Given two products where only the first has size M in stock
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                buildProduct(1L, "product 1"),
+                buildProduct(2L, "product 2")
+        ));
+        given(inventoryItemRepository.countAvailableByProductIdsGroupBySize(
+                List.of(1L, 2L))).willReturn(List.of(
+                new StockCount(1L, ProductSize.M, 3),
+                new StockCount(2L, ProductSize.L, 1)));
+        productFacetIndex.rebuild();
+        // When getFacetedProductPage() is called for size M
+        FacetedProductPage page = productService.getFacetedProductPage(
+                ProductFilter.builder().sizes(Set.of(ProductSize.M)).build(),
+                null, 10);
+        // Then only the first product is returned
+        assertThat(page.items()).extracting(ProductResponse::id)
+                .containsExactly(1L);
+        assertThat(page.facets().size()).isEqualTo(Map.of(ProductSize.M, 1,
+                ProductSize.L, 1));
+        // And when the first product sells out of size M it is no longer
+        // returned
+        given(productRepository.findSnapshotById(1L)).willReturn(Optional.of(
+                snapshotOf(buildProduct(1L, "product 1"))));
+        given(inventoryItemRepository.countAvailableByProductIdGroupBySize(1L))
+                .willReturn(List.of());
+        productFacetIndex.handleStockChanged(new StockChangedEvent(1L));
+        assertThat(productService.getFacetedProductPage(ProductFilter.builder()
+                .sizes(Set.of(ProductSize.M)).build(), null, 10).items())
+                .isEmpty();
+    }
+
+    @Test
+    void getFacetedProductPageIncludesStockChangedWhileTheIndexIsRebuilt() {
+        // Given a product is restocked in size M after the rebuild has read
+        // its stock
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                buildProduct(1L, "product 1")));
+        given(inventoryItemRepository.countAvailableByProductIdsGroupBySize(
+                List.of(1L))).willAnswer(invocation -> {
+            productFacetIndex.handleStockChanged(new StockChangedEvent(1L));
+            return List.of();
+        });
+        given(productRepository.findSnapshotById(1L)).willReturn(Optional.of(
+                snapshotOf(buildProduct(1L, "product 1"))));
+        given(inventoryItemRepository.countAvailableByProductIdGroupBySize(1L))
+                .willReturn(List.of((SizeStockCount) new StockCount(1L,
+                        ProductSize.M, 2)));
+        // When the index is rebuilt
+        productFacetIndex.rebuild();
+        // Then the restock is applied once the new index is in place
+        assertThat(productService.getFacetedProductPage(ProductFilter.builder()
+                .sizes(Set.of(ProductSize.M)).build(), null, 10).items())
+                .extracting(ProductResponse::id)
+                .containsExactly(1L);
+    }
+
+    @Test
+    void getFacetedProductPageAppliesStockChangesInBatches() {
+        // Given stock changes are refreshed every hour and two products have
+        // size M in stock
+        ProductFacetIndex index = new ProductFacetIndex(productRepository,
+                new ItemInventoryService(inventoryItemRepository,
+                        new InventoryMapper()),
+                new ProductMapper(), Duration.ofHours(1));
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                buildProduct(1L, "product 1"),
+                buildProduct(2L, "product 2")
+        ));
+        given(inventoryItemRepository.countAvailableByProductIdsGroupBySize(
+                any())).willReturn(List.of(
+                        new StockCount(1L, ProductSize.M, 3),
+                        new StockCount(2L, ProductSize.M, 1)),
+                List.of(new StockCount(2L, ProductSize.L, 1)));
+        index.rebuild();
+        ProductFilter sizeM = ProductFilter.builder()
+                .sizes(Set.of(ProductSize.M)).build();
+        try {
+            // When both products' stock changes several times
+            for (int i = 0; i < 3; i++) {
+                index.handleStockChanged(new StockChangedEvent(1L));
+                index.handleStockChanged(new StockChangedEvent(2L));
+            }
+            // Then nothing is read until the stock is refreshed
+            assertThat(index.query(sizeM, 0, 10).items()).hasSize(2);
+            index.refreshStock();
+            // And then the stock of both is read with one query
+            ArgumentCaptor<Collection<Long>> captor = ArgumentCaptor.forClass(
+                    Collection.class);
+            verify(inventoryItemRepository, times(2))
+                    .countAvailableByProductIdsGroupBySize(captor.capture());
+            assertThat(captor.getValue()).containsExactlyInAnyOrder(1L, 2L);
+            verify(productRepository, never()).findSnapshotById(any());
+            assertThat(index.query(sizeM, 0, 10).items()).isEmpty();
+            assertThat(index.query(ProductFilter.builder()
+                    .sizes(Set.of(ProductSize.L)).build(), 0, 10).items())
+                    .extracting(ProductResponse::id)
+                    .containsExactly(2L);
+        } finally {
+            index.shutdown();
+        }
+    }
+
+    @Test
+    void getFacetedProductPageReturnsACursorIfThereAreMoreProducts() {
+        // Given there are 3 active products
+        given(productRepository.findActiveProducts()).willReturn(List.of(
+                buildProduct(3L, "product 3"),
+                buildProduct(1L, "product 1"),
+                buildProduct(2L, "product 2")
+        ));
+        productFacetIndex.rebuild();
+        // When getFacetedProductPage() is called with a limit of 2
+        FacetedProductPage page = productService.getFacetedProductPage(
+                ProductFilter.builder().build(), null, 2);
+        // Then the first 2 products by ID are returned with a cursor
+        assertThat(page.items()).extracting(ProductResponse::id)
+                .containsExactly(1L, 2L);
+        assertThat(page.nextCursor()).isEqualTo(2L);
+        assertThat(page.total()).isEqualTo(3);
+    }
+
     @Test
     void getProductByIdReturnsTheProductIfItExists() {
         // Given a product with ID 1 exists
@@ -151,6 +647,12 @@ class ProductServiceTest {
         return product;
     }
 
+    private Product buildProductWithPrice(Long id, double price) {
+        Product product = buildProduct(id, "product " + id);
+        product.setPrice(price);
+        return product;
+    }
+
     private Product buildProduct(Long id, String name) {
         return Product.builder()
                 .id(id)
@@ -165,4 +667,67 @@ class ProductServiceTest {
                 .inventory(new ArrayList<>())
                 .build();
     }
-}
\ No newline at end of file
+
+    // Reads through to the product, so changes to it show in the snapshot
+    private ProductSnapshot snapshotOf(Product product) {
+        return new ProductSnapshot() {
+            @Override
+            public Long getId() {
+                return product.getId();
+            }
+
+            @Override
+            public String getBrand() {
+                return product.getBrand();
+            }
+
+            @Override
+            public String getName() {
+                return product.getName();
+            }
+
+            @Override
+            public String getDescription() {
+                return product.getDescription();
+            }
+
+            @Override
+            public ProductCategory getCategory() {
+                return product.getCategory();
+            }
+
+            @Override
+            public ProductGender getGender() {
+                return product.getGender();
+            }
+
+            @Override
+            public double getPrice() {
+                return product.getPrice();
+            }
+
+            @Override
+            public boolean isActive() {
+                return product.isActive();
+            }
+        };
+    }
+
+    private record StockCount(Long productId, ProductSize size, long stock)
+            implements ProductSizeStockCount, SizeStockCount {
+        @Override
+        public Long getProductId() {
+            return productId;
+        }
+
+        @Override
+        public ProductSize getSize() {
+            return size;
+        }
+
+        @Override
+        public long getStock() {
+            return stock;
+        }
+    }
+}
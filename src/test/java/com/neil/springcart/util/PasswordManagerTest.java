@@ -0,0 +1,112 @@
+package com.neil.springcart.util;
+
+import com.neil.springcart.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordManagerTest {
+    private PasswordManager passwordManager;
+
+    @AfterEach
+    void tearDown() {
+        if (passwordManager != null) {
+            passwordManager.shutdown();
+        }
+    }
+
+    @Test
+    void isPasswordValidChecksPasswordsHashedByEncryptPassword() {
+        // Given a password has been encrypted
+        passwordManager = new PasswordManager(new BCryptPasswordEncoder(4), 1,
+                1, Duration.ofSeconds(10));
+        String encryptedPassword = passwordManager.encryptPassword("password");
+        // Then only the same password is valid
+        assertThat(passwordManager.isPasswordValid("password",
+                encryptedPassword)).isTrue();
+        assertThat(passwordManager.isPasswordValid("incorrect",
+                encryptedPassword)).isFalse();
+    }
+
+    @Test
+    void needsRehashIsTrueWhenTheStrengthHasBeenRaised() {
+        // Given a password hashed with a lower strength
+        String encryptedPassword = new BCryptPasswordEncoder(4)
+                .encode("password");
+        // When the strength is raised
+        passwordManager = new PasswordManager(new BCryptPasswordEncoder(5), 1,
+                1, Duration.ofSeconds(10));
+        // Then the password should be hashed again
+        assertThat(passwordManager.needsRehash(encryptedPassword)).isTrue();
+        assertThat(passwordManager.needsRehash(
+                passwordManager.encryptPassword("password"))).isFalse();
+    }
+
+    @Test
+    void defaultPoolSizeLeavesHalfTheCoresFree() {
+        // Given the number of hashing threads isn't set
+        // When the default pool size is worked out
+        // Then it is half the cores, with at least one thread
+        assertThat(PasswordManager.defaultPoolSize(8)).isEqualTo(4);
+        assertThat(PasswordManager.defaultPoolSize(3)).isEqualTo(1);
+        assertThat(PasswordManager.defaultPoolSize(1)).isEqualTo(1);
+    }
+
+    @Test
+    void encryptPasswordThrowsServiceUnavailableWhenTheQueueIsFull()
+            throws Exception {
+        // Given the only hashing thread is busy
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        passwordManager = new PasswordManager(
+                blockingEncoder(started, release), 1, 1,
+                Duration.ofSeconds(10));
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(
+                () -> passwordManager.encryptPassword("first"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        // When two more passwords are encrypted with room for one in the queue
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(
+                () -> passwordManager.encryptPassword("second"));
+        CompletableFuture<String> third = CompletableFuture.supplyAsync(
+                () -> passwordManager.encryptPassword("third"));
+        // Then one is rejected straight away while the other waits
+        assertThatThrownBy(() -> CompletableFuture.anyOf(second, third)
+                .get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(ServiceUnavailableException.class);
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(second.isCompletedExceptionally()
+                ^ third.isCompletedExceptionally()).isTrue();
+    }
+
+    private PasswordEncoder blockingEncoder(CountDownLatch started,
+                                            CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword,
+                                   String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+    }
+}
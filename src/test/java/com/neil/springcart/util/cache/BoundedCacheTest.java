@@ -0,0 +1,95 @@
+package com.neil.springcart.util.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedCacheTest {
+    @Test
+    void getCountsHitsAndMisses() {
+        // Given a cache with one entry
+        BoundedCache<String, String> cache = new BoundedCache<>(2,
+                Duration.ZERO);
+        cache.put("a", "1");
+        // When one cached and one uncached key are read
+        cache.get("a");
+        cache.get("b");
+        // Then one hit and one miss are counted
+        CacheStats stats = cache.getStats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+        assertThat(stats.hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void putEvictsTheLeastRecentlyUsedEntryWhenTheCacheIsFull() {
+        // Given a full cache where "a" was used more recently than "b"
+        BoundedCache<String, String> cache = new BoundedCache<>(2,
+                Duration.ZERO);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        // When another entry is added
+        cache.put("c", "3");
+        // Then "b" is evicted
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo("1");
+        assertThat(cache.getStats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void getTreatsExpiredEntriesAsMisses() {
+        // Given an entry was cached longer ago than the TTL
+        MutableClock clock = new MutableClock();
+        BoundedCache<String, String> cache = new BoundedCache<>(2,
+                Duration.ofSeconds(10), clock);
+        cache.put("a", "1");
+        clock.advance(Duration.ofSeconds(10));
+        // When it is read
+        // Then it has expired
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.getStats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void getDoesNotCacheAValueLoadedBeforeAnInvalidation() {
+        // Given the cache is invalidated while a value is being loaded
+        BoundedCache<String, String> cache = new BoundedCache<>(2,
+                Duration.ZERO);
+        cache.get("a", key -> {
+            cache.invalidateAll();
+            return "stale";
+        });
+        // When the key is read again
+        // Then the stale value wasn't cached
+        assertThat(cache.get("a")).isNull();
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant instant = Instant.EPOCH;
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.neil.springcart.util.id;
+
+import com.neil.springcart.model.Product;
+import com.neil.springcart.model.ProductCategory;
+import com.neil.springcart.model.ProductGender;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.springcart.id.block_size=50")
+@ActiveProfiles("test")
+class PooledSequenceGeneratorTest {
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void idsAreAllocatedInBlocksFromASingleSequenceCall() {
+        // When several products are saved
+        long firstId = saveProduct();
+        long secondId = saveProduct();
+        long thirdId = saveProduct();
+        // Then they get consecutive IDs from the same block
+        assertThat(secondId).isEqualTo(firstId + 1);
+        assertThat(thirdId).isEqualTo(firstId + 2);
+        // And the sequence was only advanced once, to the start of the next
+        // block
+        Number nextValue = (Number) entityManager.getEntityManager()
+                .createNativeQuery("SELECT NEXT VALUE FOR product_sequence")
+                .getSingleResult();
+        assertThat(nextValue.longValue()).isEqualTo(firstId + 50);
+    }
+
+    private long saveProduct() {
+        return entityManager.persistAndFlush(Product.builder()
+                .brand("brand")
+                .name("name")
+                .description("description")
+                .category(ProductCategory.SPORTSWEAR)
+                .gender(ProductGender.MALE)
+                .price(50)
+                .isActive(true)
+                .inventory(new ArrayList<>())
+                .build()).getId();
+    }
+}